@@ -0,0 +1,73 @@
+package org.evensen.ants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares filling a band of terrain noise per sample with the bulk {@code getNoise}, at the sizes and settings
+ * {@code TerrainGenerator} uses by default. Run with {@code mvn -Pjmh test-compile exec:exec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FractalNoiseBenchmark {
+    private static final double FEATURE_SIZE = 256.0;
+    private static final double PERSISTENCE = 0.5;
+    private static final int FIRST_OCTAVE = 1;
+    private static final long SEED = 42;
+
+    @Param({"2000"})
+    private int width;
+    @Param({"64"})
+    private int height;
+    @Param({"5", "10"})
+    private int lastOctave;
+
+    private double[] xs;
+    private double[] ys;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        this.xs = new double[this.width];
+        this.ys = new double[this.height];
+        this.out = new double[this.width * this.height];
+        for (int x = 0; x < this.width; x++) {
+            this.xs[x] = x / FEATURE_SIZE;
+        }
+        for (int y = 0; y < this.height; y++) {
+            this.ys[y] = y / FEATURE_SIZE;
+        }
+    }
+
+    @Benchmark
+    public double[] perSample() {
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                this.out[y * this.width + x] = FractalNoise.getNoise(this.xs[x], this.ys[y], PERSISTENCE,
+                        FIRST_OCTAVE, this.lastOctave, SEED);
+            }
+        }
+        return this.out;
+    }
+
+    @Benchmark
+    public double[] bulk() {
+        FractalNoise.getNoise(this.out, this.xs, this.ys, PERSISTENCE, FIRST_OCTAVE, this.lastOctave, SEED);
+        return this.out;
+    }
+}
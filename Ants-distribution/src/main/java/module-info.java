@@ -3,6 +3,9 @@ module ants {
 	requires javafx.fxml;
 	requires transitive javafx.graphics;
     requires java.desktop;
+    requires java.management;
+    requires jdk.management;
+    requires transitive jdk.jfr;
 
     opens org.evensen.ants to javafx.fxml;
 	exports org.evensen.ants;
@@ -10,4 +13,5 @@ module ants {
     opens org.evensen.ants.render to javafx.fxml;
     exports org.evensen.ants.controller;
     opens org.evensen.ants.controller to javafx.fxml;
+    exports org.evensen.ants.metrics;
 }
\ No newline at end of file
@@ -1,35 +1,139 @@
 package org.evensen.ants;
 
+import org.evensen.ants.metrics.EpochEvent;
+import org.evensen.ants.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.SplittableRandom;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+/**
+ * The ants of one colony, moved together every epoch.
+ * <p>
+ * Ants that have died are taken out of the colony when it is next updated. If the colony respawns its dead, as many
+ * ants are born at the nest in the same update, and if it breeds on food, one more is born for every
+ * {@code foodPerBirth} units of food its ants deliver. Dead {@code PellAnt}s are kept in a pool and born again rather
+ * than new ones being created, so the size of a colony can change every epoch without garbage piling up.
+ * </p>
+ */
 public class AntColony {
     private final List<Ant> ants;
-    private long accTime;
-    private int epochs;
+    private final float pheromoneRate;
+    private final AntConfig config;
     private final Supplier<PellAnt> createAnt;
+    private final Position nest;
+    private final Konadare192RNG births; // Where ants born after the start are placed, part of the saved state
+    private final ArrayDeque<PellAnt> pool = new ArrayDeque<>();
+    private boolean respawn;
+    private int foodPerBirth;
 
     public AntColony(final int ants, final float pheromoneRate, final AntWorld w) {
-        this.ants = new ArrayList<>();
+        this(ants, pheromoneRate, w, AntConfig.DEFAULT);
+    }
+
+    public AntColony(final int ants, final float pheromoneRate, final AntWorld w, final AntConfig config) {
+        this(ants, pheromoneRate, getDefaultNest(w), config);
+    }
+
+    /**
+     * A colony whose ants start around {@code nest}, e.g. one of several in a {@code MyAntWorld}.
+     */
+    public AntColony(final int ants, final float pheromoneRate, final Position nest, final AntConfig config) {
+        this(new ArrayList<>(ants), pheromoneRate, nest, config);
+        for (int i = 0; i < ants; i++) {
+            this.ants.add(this.createAnt.get());
+        }
+    }
+
+    /**
+     * A colony of the given, already created, ants.
+     */
+    AntColony(final List<Ant> ants, final float pheromoneRate, final AntWorld w, final AntConfig config) {
+        this(ants, pheromoneRate, getDefaultNest(w), config);
+    }
+
+    AntColony(final List<Ant> ants, final float pheromoneRate, final Position nest, final AntConfig config) {
+        this(ants, pheromoneRate, nest, config, new Konadare192RNG(Hasher.hash(2)));
+    }
+
+    /**
+     * A colony of the given ants, that places those born later with {@code births}.
+     */
+    AntColony(final List<Ant> ants, final float pheromoneRate, final Position nest, final AntConfig config,
+              final Konadare192RNG births) {
+        this.ants = ants;
+        this.pheromoneRate = pheromoneRate;
+        this.config = config;
+        this.nest = nest;
+        this.births = births;
         final SplittableRandom rng = new SplittableRandom(Hasher.hash(1));
         this.createAnt = new Supplier<PellAnt>() {
             @Override
             public PellAnt get() {
-                return new PellAnt(new Position(
-                        w.getWidth() - 5, (float) (w.getHeight() / 2 + rng.nextGaussian())),
-                        pheromoneRate);
+                return new PellAnt(new Position(nest.getX(), (float) (nest.getY() + rng.nextGaussian())),
+                        pheromoneRate, config);
             }
         };
-        for (int i = 0; i < ants; i++) {
-            this.ants.add(this.createAnt.get());
-        }
+    }
+
+    private static Position getDefaultNest(final AntWorld w) {
+        return new Position(w.getWidth() - 5, w.getHeight() / 2);
+    }
+
+    float getPheromoneRate() {
+        return this.pheromoneRate;
+    }
+
+    public AntConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Sets whether every ant that dies is replaced by one born at the nest.
+     */
+    public void setRespawn(final boolean respawn) {
+        this.respawn = respawn;
+    }
+
+    public boolean isRespawn() {
+        return this.respawn;
+    }
+
+    /**
+     * Sets how much food the colony's ants deliver for every ant born, {@code 0} for none.
+     */
+    public void setFoodPerBirth(final int foodPerBirth) {
+        this.foodPerBirth = foodPerBirth;
+    }
+
+    public int getFoodPerBirth() {
+        return this.foodPerBirth;
+    }
+
+    /**
+     * Puts the state of the generator placing newborn ants, {@value Konadare192RNG#STATE_BYTES} bytes, at the
+     * position of {@code out} and advances it.
+     */
+    void writeBirthState(final ByteBuffer out) {
+        this.births.writeState(out);
     }
 
     public void updateAnts(final AntWorld w) {
+        final EpochEvent event = new EpochEvent();
+        event.begin();
         final long startTime = System.nanoTime();
+        final long startAllocated = Metrics.currentThreadAllocatedBytes();
+        int moved = 0;
+        int died = 0;
+        int born = 0;
+        final boolean breeding = 0 < this.foodPerBirth;
+        final long foodBefore = breeding ? w.getFoodCount() : 0;
         synchronized (this) {
             this.ants.sort((o1, o2) -> {
                 final float x1 = o1.getPosition().getY();
@@ -42,13 +146,82 @@ public class AntColony {
                     return 0;
                 }
             });
-            this.ants.forEach(a -> a.move(w));
+            //
+            // Dead ants are handed to the world and compacted out in the same pass, so that no later epoch, nor the
+            // renderer, visits them again.
+            //
+            final int size = this.ants.size();
+            int alive = 0;
+            for (int i = 0; i < size; i++) {
+                final Ant a = this.ants.get(i);
+                if (a.isDead()) {
+                    w.dropDeadAnt(a.getPosition());
+                    died++;
+                    if (a instanceof PellAnt dead && (this.respawn || breeding)) {
+                        this.pool.add(dead);
+                    }
+                    continue;
+                }
+                a.move(w);
+                moved++;
+                this.ants.set(alive, a);
+                alive++;
+            }
+            this.ants.subList(alive, size).clear();
+
+            if (this.respawn) {
+                born += died;
+            }
+            if (breeding) {
+                born += (int) (w.getFoodCount() / this.foodPerBirth - foodBefore / this.foodPerBirth);
+            }
+            for (int i = 0; i < born; i++) {
+                this.ants.add(bear());
+            }
         }
-        this.accTime += System.nanoTime() - startTime;
-        this.epochs++;
-        if (0 == this.epochs % 100) {
-            System.out.println("Time per epoch: " + (this.accTime / (double) this.epochs / 1_000_000_000) + " s");
+        Metrics.ANT_UPDATE.recordSince(startTime);
+        Metrics.ANTS_MOVED.add(moved);
+        Metrics.ANTS_DIED.add(died);
+        Metrics.ANTS_BORN.add(born);
+        event.end();
+        if (event.shouldCommit()) {
+            event.ants = this.ants.size();
+            event.movedAnts = moved;
+            event.worldWidth = w.getWidth();
+            event.worldHeight = w.getHeight();
+            event.commit();
         }
+        if (0 <= startAllocated) {
+            Metrics.MODEL_ALLOCATED_BYTES.add(Metrics.currentThreadAllocatedBytes() - startAllocated);
+        }
+    }
+
+    /**
+     * @return An ant just born at the nest, one from the pool if there is any.
+     */
+    private PellAnt bear() {
+        final Position p = new Position(this.nest.getX(), (float) (this.nest.getY() + this.births.nextGaussian()));
+        final PellAnt recycled = this.pool.poll();
+        if (null == recycled) {
+            return new PellAnt(p, this.pheromoneRate, this.config);
+        }
+        recycled.respawn(p, this.pheromoneRate);
+        return recycled;
+    }
+
+    /**
+     * Takes the ants matching {@code leaving} out of the colony.
+     *
+     * @return The ants taken out, in the order they were in.
+     */
+    synchronized List<Ant> removeAnts(final Predicate<Ant> leaving) {
+        final List<Ant> removed = new ArrayList<>();
+        this.ants.removeIf(ant -> leaving.test(ant) && removed.add(ant));
+        return removed;
+    }
+
+    synchronized void addAnts(final Collection<? extends Ant> arriving) {
+        this.ants.addAll(arriving);
     }
 
     public List<Ant> getAnts() {
@@ -0,0 +1,180 @@
+package org.evensen.ants;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.StringJoiner;
+
+import static org.evensen.ants.GraphicsMath.TAU;
+
+/**
+ * The tunables of {@code PellAnt}, shared by every ant of a colony. Immutable; {@code with} gives a copy with one
+ * parameter changed.
+ */
+public final class AntConfig {
+    public enum Parameter {
+        /**
+         * Width of the field of view scanned for scent, food and home, in radians.
+         */
+        SCAN_ANGLE(TAU / 2.5f),
+        /**
+         * Scan reach, in steps.
+         */
+        SCAN_RADIUS(30.0f),
+        MIN_SCAN_RADIUS(1.0f),
+        RADIUS_INCREMENT(5.0f),
+        /**
+         * Distance moved per epoch, every ant varies it by up to 10%.
+         */
+        MOVE_RATE(1.74f),
+        CARRYING_MOVE_SCALE(0.5f),
+        /**
+         * Share of an ant's pheromones left after every drop.
+         */
+        PHEROMONE_DROP_RATE(0.99f),
+        PHEROMONE_STRENGTH(0.001f),
+        NO_FOOD_WEIGHT(-4.0f),
+        SCENT_DEVIATION(0.01f),
+        WALL_REPULSION(0.2f),
+        WALL_DEVIATION(0.1f),
+        HIT_POINTS(10.0f);
+
+        private final float defaultValue;
+
+        Parameter(final float defaultValue) {
+            this.defaultValue = defaultValue;
+        }
+
+        public float getDefault() {
+            return this.defaultValue;
+        }
+
+        /**
+         * @return The name used for the parameter in properties, e.g. {@code scan_angle}.
+         */
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static final AntConfig DEFAULT = new AntConfig(defaults());
+
+    private final float[] values;
+    //
+    // Copies of the values and what is derived from them, read by ants on every move.
+    //
+    final float scanAngle;
+    final float scanIncrement;
+    final float scanRadius;
+    final float minScanRadius;
+    final float radiusIncrement;
+    final float moveRate;
+    final float carryingMoveScale;
+    final float pheromoneDropRate;
+    final float pheromoneStrength;
+    final float noFoodWeight;
+    final float scentDeviation;
+    final float wallRepulsion;
+    final float wallDeviation;
+    final int hitPoints;
+    final float[] radiiWeights;
+
+    private AntConfig(final float[] values) {
+        this.values = values;
+        this.scanAngle = get(Parameter.SCAN_ANGLE);
+        this.scanIncrement = this.scanAngle / 19.0f;
+        this.scanRadius = get(Parameter.SCAN_RADIUS);
+        this.minScanRadius = get(Parameter.MIN_SCAN_RADIUS);
+        this.radiusIncrement = get(Parameter.RADIUS_INCREMENT);
+        this.moveRate = get(Parameter.MOVE_RATE);
+        this.carryingMoveScale = get(Parameter.CARRYING_MOVE_SCALE);
+        this.pheromoneDropRate = get(Parameter.PHEROMONE_DROP_RATE);
+        this.pheromoneStrength = get(Parameter.PHEROMONE_STRENGTH);
+        this.noFoodWeight = get(Parameter.NO_FOOD_WEIGHT);
+        this.scentDeviation = get(Parameter.SCENT_DEVIATION);
+        this.wallRepulsion = get(Parameter.WALL_REPULSION);
+        this.wallDeviation = get(Parameter.WALL_DEVIATION);
+        this.hitPoints = (int) get(Parameter.HIT_POINTS);
+        if (0 >= this.radiusIncrement || this.minScanRadius >= this.scanRadius || 0 >= this.scanAngle) {
+            throw new IllegalArgumentException("Scan needs a positive angle, increment and extent, got " + this);
+        }
+
+        this.radiiWeights = new float[(int) ((this.scanRadius - this.minScanRadius) / this.radiusIncrement + 1)];
+        int i = 0;
+        for (float radius = this.minScanRadius; this.scanRadius > radius; radius += this.radiusIncrement) {
+            this.radiiWeights[i] = radius * radius;
+            i++;
+        }
+    }
+
+    private static float[] defaults() {
+        final Parameter[] parameters = Parameter.values();
+        final float[] values = new float[parameters.length];
+        for (final Parameter p : parameters) {
+            values[p.ordinal()] = p.getDefault();
+        }
+        return values;
+    }
+
+    public float get(final Parameter parameter) {
+        return this.values[parameter.ordinal()];
+    }
+
+    /**
+     * @return A copy of this config with {@code parameter} set to {@code value}.
+     */
+    public AntConfig with(final Parameter parameter, final float value) {
+        final float[] copy = this.values.clone();
+        copy[parameter.ordinal()] = value;
+        return new AntConfig(copy);
+    }
+
+    /**
+     * @return This config with every parameter whose key, after {@code prefix}, is in {@code properties} replaced.
+     */
+    public AntConfig with(final Properties properties, final String prefix) {
+        AntConfig config = this;
+        for (final Parameter p : Parameter.values()) {
+            final String value = properties.getProperty(prefix + p.getKey());
+            if (null != value) {
+                config = config.with(p, Float.parseFloat(value.trim()));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * @return The values in the order of {@code Parameter}, for storing.
+     */
+    float[] toArray() {
+        return this.values.clone();
+    }
+
+    /**
+     * @return The config stored by {@code toArray}, parameters missing at the end get their defaults.
+     */
+    static AntConfig fromArray(final float[] stored) {
+        final float[] values = defaults();
+        System.arraycopy(stored, 0, values, 0, Math.min(stored.length, values.length));
+        return new AntConfig(values);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || (o instanceof AntConfig other && Arrays.equals(this.values, other.values));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.values);
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (final Parameter p : Parameter.values()) {
+            joiner.add(p.getKey() + "=" + get(p));
+        }
+        return joiner.toString();
+    }
+}
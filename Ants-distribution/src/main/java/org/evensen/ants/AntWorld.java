@@ -29,6 +29,42 @@ public interface AntWorld {
      */
     boolean isObstacle(Position p);
 
+    /**
+     * Gives the approximate distance from {@code p} to the closest obstacle, negative if {@code p} is within an
+     * obstacle. Lets ants keep clear of and follow walls without probing for them. It is not a lower bound: it may
+     * overestimate the Euclidean distance by up to 8% + &radic;2/2 cells, so don't rely on it to rule out a collision.
+     * The default implementation knows nothing and returns {@code 0} everywhere.
+     *
+     * @param p The position to get the distance for.
+     * @return The distance to the closest obstacle, or to the closest free cell as a negative value within obstacles.
+     */
+    default float getObstacleDistance(Position p) {
+        return 0;
+    }
+
+    /**
+     * Follows a ray from {@code origin} in {@code direction} and gives the distance to the first obstacle on it.
+     * The default implementation checks {@code isObstacle} at every unit of distance; worlds knowing their obstacle
+     * grid can visit exactly the cells the ray passes instead.
+     *
+     * @param origin Where the ray starts.
+     * @param direction The direction of the ray, in radians.
+     * @param minDistance Obstacles closer than this to {@code origin} are ignored.
+     * @param maxDistance How far to look.
+     * @return The distance from {@code origin} to the first obstacle, or {@code Float.POSITIVE_INFINITY} if there is
+     * none within {@code [minDistance, maxDistance]}.
+     */
+    default float raycast(Position origin, float direction, float minDistance, float maxDistance) {
+        final float xOff = (float) Math.cos(direction);
+        final float yOff = (float) Math.sin(direction);
+        for (float radius = minDistance; radius <= maxDistance; radius++) {
+            if (isObstacle(origin.offset(xOff * radius, yOff * radius))) {
+                return radius;
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
     /**
      * Increases the foraging pheromone level at the cell closest to {@code p}.
      * Closest is in this case defined as "having the indices of {@code <(int) p.getX(), (int) p.getY()>}"
@@ -69,6 +105,15 @@ public interface AntWorld {
      */
     float getDeadAntCount(Position p);
 
+    /**
+     * Notifies the world that an ant has died at {@code p} and been taken out of its colony. Worlds that count dead
+     * ants for {@code getDeadAntCount} add it there; the default implementation ignores it.
+     *
+     * @param p The position where the ant died.
+     */
+    default void dropDeadAnt(Position p) {
+    }
+
     /**
      * Gives the current foraging pheromone level closest to {@code p}.
      * Closest is in this case defined as "having the indices of {@code <(int) p.getX(), (int) p.getY()>}"
@@ -87,6 +132,43 @@ public interface AntWorld {
      */
     float getFoodStrength(Position p);
 
+    /**
+     * Samples both pheromone levels at {@code count} points along a ray, stopping at the first obstacle.
+     * Point {@code i} is at {@code origin + (dirX, dirY) * (start + i * increment)}.
+     * <p>
+     * Worlds may answer with levels averaged over an area growing with the distance from {@code origin}. The default
+     * implementation samples {@code getForagingStrength} and {@code getFoodStrength} at each point.
+     * </p>
+     *
+     * @param origin Where the ray starts.
+     * @param dirX The x component of the ray direction, not necessarily normalized.
+     * @param dirY The y component of the ray direction, not necessarily normalized.
+     * @param start Distance from {@code origin} to the first point, in units of the direction.
+     * @param increment Distance between points, in units of the direction.
+     * @param count Number of points to sample.
+     * @param foraging Receives the foraging pheromone level of each point before the first obstacle, or {@code null}.
+     * @param food Receives the food pheromone level of each point before the first obstacle, or {@code null}.
+     * @return The number of points sampled, {@code count} if no obstacle was hit, otherwise the index of the point
+     * with the obstacle.
+     */
+    default int sampleAlongRay(Position origin, float dirX, float dirY, float start, float increment, int count,
+                               float[] foraging, float[] food) {
+        for (int i = 0; i < count; i++) {
+            final float r = start + i * increment;
+            final Position p = origin.offset(dirX * r, dirY * r);
+            if (isObstacle(p)) {
+                return i;
+            }
+            if (null != foraging) {
+                foraging[i] = getForagingStrength(p);
+            }
+            if (null != food) {
+                food[i] = getFoodStrength(p);
+            }
+        }
+        return count;
+    }
+
     /**
      * @param p The position to check for food.
      * @return {@code true} if the position contains food, {@code false} otherwise.
@@ -104,6 +186,18 @@ public interface AntWorld {
      */
     boolean isHome(Position p);
 
+    /**
+     * Gives the direction to head in from {@code p} to get home the shortest way around obstacles.
+     * The default implementation doesn't know and always returns {@code -1}, leaving ants to find home by themselves.
+     *
+     * @param p The position to find the way home from.
+     * @return An angle in radians on {@code [0, 2 * PI)}, or a negative value if {@code p} is home already, has no
+     * way home or the world doesn't know.
+     */
+    default float getHomeDirection(Position p) {
+        return -1;
+    }
+
     /**
      * Should let pheromones evaporate as well as spread over the world.
      */
@@ -116,10 +210,62 @@ public interface AntWorld {
      */
     void setObstacle(Position p, boolean add);
 
+    /**
+     * Adds/removes obstacles at every cell of {@code region} at once, e.g. a whole brush stroke.
+     * The default implementation calls {@code setObstacle} for each cell.
+     *
+     * @param region The cells to add/remove obstacles at. Cells off the map are ignored.
+     * @param add If {@code true}, adds obstacles, otherwise removes them.
+     */
+    default void setObstacles(Region region, boolean add) {
+        for (int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+            for (int x = region.getX(); x < region.getX() + region.getWidth(); x++) {
+                if (region.contains(x, y)) {
+                    setObstacle(new Position(x, y), add);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers {@code listener} to be told whenever obstacles are added or removed.
+     * Worlds that don't report obstacle changes ignore the listener, which is the default.
+     *
+     * @param listener The listener to add.
+     * @return {@code true} if {@code listener} will be told about changes, {@code false} if this world never reports
+     * them and listeners have to look at the obstacles themselves.
+     */
+    default boolean addObstacleListener(ObstacleListener listener) {
+        return false;
+    }
+
+    /**
+     * Stops telling {@code listener} about obstacle changes.
+     *
+     * @param listener The listener to remove.
+     */
+    default void removeObstacleListener(ObstacleListener listener) {
+    }
+
     /**
      * Could be used to handle obstacles that could wear down from ant interaction.
      * @param p The position to hit.
      * @param strength Could be used for anything.
      */
     void hitObstacle(Position p, float strength);
+
+    /**
+     * Hint for renderers of large, sparse worlds: gives {@code true} if the {@code width} x {@code height} region
+     * with its upper left corner at {@code <x, y>} is known to contain no pheromones, food, obstacles or home.
+     * The default implementation knows nothing and always returns {@code false}.
+     *
+     * @param x Leftmost column of the region.
+     * @param y Topmost row of the region.
+     * @param width Width of the region.
+     * @param height Height of the region.
+     * @return {@code true} if nothing in the region needs to be drawn, {@code false} if it might.
+     */
+    default boolean isRegionEmpty(int x, int y, int width, int height) {
+        return false;
+    }
 }
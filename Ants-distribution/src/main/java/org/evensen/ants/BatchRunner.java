@@ -0,0 +1,161 @@
+package org.evensen.ants;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a parameter sweep of headless simulations concurrently and writes how much food every config delivered to a
+ * CSV file.
+ * <p>
+ * Usage: {@code BatchRunner <sweep.properties> <out.csv>}. The sweep file holds {@code SimulationConfig} keys, each
+ * with one value or a comma separated list of them, and every combination of the values is run. Besides those,
+ * {@code epochs} (default {@value DEFAULT_EPOCHS}) is how long every run is, {@code repeats} (default 1) how many
+ * times every combination is run per {@code seed}, with the seed counting up from it, and {@code threads} (default
+ * one per processor) how many runs go at once. So {@code seed=1,100} with {@code repeats=3} runs every combination
+ * with the seeds 1, 2, 3, 100, 101 and 102. Rows are written in sweep order as soon as their run and all before it are
+ * done.
+ * </p>
+ */
+public final class BatchRunner {
+    private static final int DEFAULT_EPOCHS = 5000;
+    private static final String EPOCHS = "epochs";
+    private static final String REPEATS = "repeats";
+    private static final String THREADS = "threads";
+
+    /**
+     * The outcome of one run.
+     */
+    private static final class Run {
+        private final long foodDelivered;
+        private final long nanos;
+
+        private Run(final long foodDelivered, final long nanos) {
+            this.foodDelivered = foodDelivered;
+            this.nanos = nanos;
+        }
+    }
+
+    private BatchRunner() {
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (2 != args.length) {
+            System.err.println("Usage: BatchRunner <sweep.properties> <out.csv>");
+            System.exit(2);
+        }
+        final Properties sweep = new Properties();
+        try (BufferedReader in = Files.newBufferedReader(Path.of(args[0]))) {
+            sweep.load(in);
+        }
+        final int epochs = Integer.parseInt(sweep.getProperty(EPOCHS, Integer.toString(DEFAULT_EPOCHS)).trim());
+        final int repeats = Integer.parseInt(sweep.getProperty(REPEATS, "1").trim());
+        final int threads = Integer.parseInt(sweep.getProperty(THREADS,
+                Integer.toString(Runtime.getRuntime().availableProcessors())).trim());
+
+        //
+        // Sorted by key so that the columns, and the order of the rows, don't depend on the properties' hashing.
+        //
+        final TreeMap<String, String[]> axes = new TreeMap<>();
+        for (final String key : sweep.stringPropertyNames()) {
+            if (!EPOCHS.equals(key) && !REPEATS.equals(key) && !THREADS.equals(key)) {
+                axes.put(key, sweep.getProperty(key).split(","));
+            }
+        }
+        //
+        // Seeds are an axis of their own: every listed seed is where a series of repeats starts.
+        //
+        axes.remove("seed");
+        final String[] seedValues = sweep.getProperty("seed", "0").split(",");
+        final long[] firstSeeds = new long[seedValues.length];
+        for (int s = 0; s < seedValues.length; s++) {
+            firstSeeds[s] = Long.parseLong(seedValues[s].trim());
+        }
+        final int runsPerCombination = firstSeeds.length * repeats;
+
+        final List<Properties> combinations = expand(axes);
+        final List<SimulationConfig> configs = new ArrayList<>(combinations.size() * runsPerCombination);
+        for (final Properties combination : combinations) {
+            final SimulationConfig config = SimulationConfig.DEFAULT.with(combination, "");
+            for (final long firstSeed : firstSeeds) {
+                for (int r = 0; r < repeats; r++) {
+                    configs.add(config.withSeed(firstSeed + r));
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "Running %d simulations of %d epochs on %d threads%n", configs.size(), epochs,
+                threads);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(args[1])))) {
+            final List<Future<Run>> runs = new ArrayList<>(configs.size());
+            for (final SimulationConfig config : configs) {
+                runs.add(executor.submit(() -> run(config, epochs)));
+            }
+
+            out.println(String.join(",", axes.keySet()) + (axes.isEmpty() ? "" : ",")
+                    + "seed,epochs,food_delivered,food_per_epoch,food_per_second,wall_seconds");
+            for (int i = 0; i < runs.size(); i++) {
+                final Run run;
+                try {
+                    run = runs.get(i).get();
+                } catch (final ExecutionException e) {
+                    throw new IllegalStateException("Run " + i + " failed", e.getCause());
+                }
+                final Properties combination = combinations.get(i / runsPerCombination);
+                final StringBuilder row = new StringBuilder();
+                for (final String key : axes.keySet()) {
+                    row.append(combination.getProperty(key)).append(',');
+                }
+                final double seconds = run.nanos / 1.0e9;
+                row.append(String.format(Locale.ROOT, "%d,%d,%d,%.4f,%.1f,%.3f", configs.get(i).getSeed(), epochs,
+                        run.foodDelivered, run.foodDelivered / (double) epochs, run.foodDelivered / seconds,
+                        seconds));
+                out.println(row);
+                out.flush();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Every combination of one value per axis, the last axis varying fastest.
+     */
+    private static List<Properties> expand(final TreeMap<String, String[]> axes) {
+        List<Properties> combinations = List.of(new Properties());
+        for (final var axis : axes.entrySet()) {
+            final List<Properties> expanded = new ArrayList<>(combinations.size() * axis.getValue().length);
+            for (final Properties combination : combinations) {
+                for (final String value : axis.getValue()) {
+                    final Properties p = new Properties();
+                    p.putAll(combination);
+                    p.setProperty(axis.getKey(), value.trim());
+                    expanded.add(p);
+                }
+            }
+            combinations = expanded;
+        }
+        return combinations;
+    }
+
+    private static Run run(final SimulationConfig config, final int epochs) {
+        final long start = System.nanoTime();
+        final Simulation simulation = Simulation.create(config);
+        for (int i = 0; i < epochs; i++) {
+            simulation.step();
+        }
+        return new Run(simulation.getWorld().getFoodCount(), System.nanoTime() - start);
+    }
+}
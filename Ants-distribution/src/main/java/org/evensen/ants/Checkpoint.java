@@ -0,0 +1,192 @@
+package org.evensen.ants;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary snapshot of a {@code MyAntWorld} and its {@code AntColony}s, from which the simulation continues exactly
+ * as it would have, random numbers included.
+ * <p>
+ * Files are written and read through a memory mapping, with every grid copied in bulk straight between its array and
+ * the mapping. The layout, little endian, is a {@value HEADER_BYTES} byte header, the colonies' {@code AntConfig}, the
+ * world's state (random generator, food counters and sources, obstacle bitmap, obstacle and home distances, pheromone
+ * and dead ant levels as stored) and per colony the number of ants, the state of the generator placing newborn ants
+ * and {@value PellAnt#STATE_BYTES} bytes per ant. Distances are saved although they can be derived, recomputing them
+ * takes far longer than reading them. The pheromone pyramid, if on, is rebuilt from the saved levels, so it is only
+ * exact for snapshots taken right after a dispersal.
+ * </p>
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x53544E41; // "ANTS" in little endian.
+    private static final int VERSION = 6;
+    private static final int HEADER_BYTES = 64;
+
+    private final MyAntWorld world;
+    private final List<AntColony> colonies;
+
+    private Checkpoint(final MyAntWorld world, final List<AntColony> colonies) {
+        this.world = world;
+        this.colonies = colonies;
+    }
+
+    public MyAntWorld getWorld() {
+        return this.world;
+    }
+
+    /**
+     * @return The first colony, the only one unless the world has several.
+     */
+    public AntColony getColony() {
+        return this.colonies.get(0);
+    }
+
+    public List<AntColony> getColonies() {
+        return this.colonies;
+    }
+
+    /**
+     * Saves {@code world} and its only {@code colony} to {@code path}, see {@code write(Path, MyAntWorld, List)}.
+     */
+    public static void write(final Path path, final MyAntWorld world, final AntColony colony) throws IOException {
+        write(path, world, List.of(colony));
+    }
+
+    /**
+     * Saves {@code world} and {@code colonies}, one per colony of the world, to {@code path}, replacing whatever is
+     * there. Nothing may change while this runs; the colonies are locked but the world is not. The colonies must
+     * share their config, pheromone rate and births, those of the first are saved.
+     *
+     * @throws IllegalArgumentException If a colony holds ants other than {@code PellAnt}, the number of colonies
+     *                                  doesn't match the world or the snapshot would exceed 2 GB.
+     */
+    public static void write(final Path path, final MyAntWorld world, final List<AntColony> colonies)
+            throws IOException {
+        if (world.getColonies() != colonies.size()) {
+            throw new IllegalArgumentException("A world of " + world.getColonies() + " colonies can't be saved with "
+                    + colonies.size());
+        }
+        writeLocked(path, world, colonies, 0);
+    }
+
+    private static void writeLocked(final Path path, final MyAntWorld world, final List<AntColony> colonies,
+                                    final int locked) throws IOException {
+        if (locked < colonies.size()) {
+            synchronized (colonies.get(locked)) {
+                writeLocked(path, world, colonies, locked + 1);
+            }
+            return;
+        }
+
+        long antCount = 0;
+        for (final AntColony colony : colonies) {
+            for (final Ant ant : colony.getAnts()) {
+                if (!(ant instanceof PellAnt)) {
+                    throw new IllegalArgumentException("Can't checkpoint ants of " + ant.getClass());
+                }
+            }
+            antCount += colony.getAnts().size();
+        }
+        final AntColony first = colonies.get(0);
+        final float[] config = first.getConfig().toArray();
+        final long size = HEADER_BYTES + Integer.BYTES + (long) Float.BYTES * config.length
+                + world.getStateBytes() + (long) (Integer.BYTES + Konadare192RNG.STATE_BYTES) * colonies.size()
+                + PellAnt.STATE_BYTES * antCount;
+        if (Integer.MAX_VALUE < size) {
+            throw new IllegalArgumentException("Checkpoint of " + size + " bytes is too large to map");
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(world.getWidth())
+                    .putInt(world.getHeight())
+                    .putInt(world.getPheromoneStorage().ordinal())
+                    .putInt(world.getFoodSources())
+                    .putInt(world.isPheromonePyramidEnabled() ? 1 : 0)
+                    .putInt(colonies.size())
+                    .putFloat(first.getPheromoneRate())
+                    .putInt(first.isRespawn() ? 1 : 0)
+                    .putInt(first.getFoodPerBirth())
+                    .putInt(world.getObstacleDurability());
+            out.position(HEADER_BYTES);
+            out.putInt(config.length);
+            for (final float value : config) {
+                out.putFloat(value);
+            }
+            world.writeState(out);
+            for (final AntColony colony : colonies) {
+                out.putInt(colony.getAnts().size());
+                colony.writeBirthState(out);
+                for (final Ant ant : colony.getAnts()) {
+                    ((PellAnt) ant).writeState(out);
+                }
+            }
+            out.force();
+        }
+    }
+
+    /**
+     * Restores a world and colonies saved by {@code write}.
+     *
+     * @throws IOException If {@code path} can't be read or isn't a checkpoint of this version.
+     */
+    public static Checkpoint read(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (Integer.MAX_VALUE < channel.size()) {
+                throw new IOException(path + " is too large to be a checkpoint");
+            }
+            final MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            if (HEADER_BYTES > in.remaining() || MAGIC != in.getInt()) {
+                throw new IOException(path + " is not a checkpoint");
+            }
+            final int version = in.getInt();
+            if (VERSION != version) {
+                throw new IOException(path + " is a version " + version + " checkpoint, expected " + VERSION);
+            }
+            final int width = in.getInt();
+            final int height = in.getInt();
+            final PheromoneStorage storage = PheromoneStorage.values()[in.getInt()];
+            final int foodSources = in.getInt();
+            final boolean pyramid = 0 != in.getInt();
+            final int colonyCount = in.getInt();
+            final float pheromoneRate = in.getFloat();
+            final boolean respawn = 0 != in.getInt();
+            final int foodPerBirth = in.getInt();
+            final int obstacleDurability = in.getInt();
+            in.position(HEADER_BYTES);
+            final float[] stored = new float[in.getInt()];
+            for (int i = 0; i < stored.length; i++) {
+                stored[i] = in.getFloat();
+            }
+            final AntConfig config = AntConfig.fromArray(stored);
+
+            final MyAntWorld world = MyAntWorld.restore(width, height, foodSources, colonyCount, storage, in);
+            world.setPheromonePyramid(pyramid);
+            world.setObstacleDurability(obstacleDurability);
+            final List<AntColony> colonies = new ArrayList<>(colonyCount);
+            for (int c = 0; c < colonyCount; c++) {
+                final int antCount = in.getInt();
+                final Konadare192RNG births = Konadare192RNG.readState(in);
+                final List<Ant> ants = new ArrayList<>(antCount);
+                for (int i = 0; i < antCount; i++) {
+                    ants.add(PellAnt.readState(in, config));
+                }
+                final AntColony colony = new AntColony(ants, pheromoneRate, world.getNest(c), config, births);
+                colony.setRespawn(respawn);
+                colony.setFoodPerBirth(foodPerBirth);
+                colonies.add(colony);
+            }
+            return new Checkpoint(world, colonies);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@code PheromoneGrid} storing levels as {@code float}s.
+ */
+final class FloatPheromoneGrid extends PheromoneGrid {
+    private float[] levels;
+    private float[] next;
+    private final float[][] rows;
+
+    FloatPheromoneGrid(final int width, final int height, final int channels) {
+        super(width, height, channels);
+        this.rows = new float[3][(TILE_SIZE + 2) * channels];
+        this.levels = new float[width * height * channels];
+        this.next = new float[width * height * channels];
+    }
+
+    @Override
+    protected float load(final int index) {
+        return this.levels[index];
+    }
+
+    @Override
+    protected void store(final int index, final float level) {
+        this.levels[index] = level;
+    }
+
+    /**
+     * Copies row {@code y}, columns {@code [x0 - 1, x1]} with edges repeated, into {@code row}.
+     */
+    private void decodeRow(final float[] row, final int y, final int x0, final int x1) {
+        final int c = this.channels;
+        final int rowStart = Math.max(0, Math.min(this.height - 1, y)) * this.width;
+        int j = 0;
+        for (int x = x0 - 1; x <= x1; x++) {
+            final int from = (rowStart + Math.max(0, Math.min(this.width - 1, x))) * c;
+            for (int k = 0; k < c; k++) {
+                row[j++] = this.levels[from + k];
+            }
+        }
+    }
+
+    @Override
+    protected float disperseRegion(final int x0, final int y0, final int x1, final int y1,
+                                   final ObstacleGrid obstacles, final float keep, final float evaporation) {
+        final int c = this.channels;
+        final float neighbourWeight = (1 - keep) / 8.0f;
+        final float[] dst = this.next;
+        float[] up = this.rows[0];
+        float[] mid = this.rows[1];
+        float[] down = this.rows[2];
+        float max = 0;
+
+        //
+        // Rows are copied with their edges repeated, so the inner loop needs no clamping.
+        //
+        decodeRow(up, y0 - 1, x0, x1);
+        decodeRow(mid, y0, x0, x1);
+        for (int y = y0; y < y1; y++) {
+            decodeRow(down, y + 1, x0, x1);
+            final int row = y * this.width;
+            for (int x = x0; x < x1; x++) {
+                final int cell = row + x;
+                final int out = cell * c;
+                if (obstacles.isObstacleAt(cell)) {
+                    Arrays.fill(dst, out, out + c, 0);
+                    continue;
+                }
+                final int j = (x - x0 + 1) * c;
+                for (int k = 0; k < c; k++) {
+                    final int l = j - c + k;
+                    final int r = j + c + k;
+                    final float npl = up[l] + up[j + k] + up[r] + mid[l] + mid[r] + down[l] + down[j + k] + down[r];
+                    float level = (neighbourWeight * npl + keep * mid[j + k]) * evaporation;
+                    if (EPSILON > level) {
+                        level = 0;
+                    }
+                    dst[out + k] = level;
+                    max = Math.max(max, level);
+                }
+            }
+            final float[] tmp = up;
+            up = mid;
+            mid = down;
+            down = tmp;
+        }
+        return max;
+    }
+
+    @Override
+    protected void clearNext(final int from, final int to) {
+        Arrays.fill(this.next, from, to, 0);
+    }
+
+    @Override
+    protected void scale(final int from, final int to, final float factor) {
+        for (int i = from; i < to; i++) {
+            this.levels[i] *= factor;
+        }
+    }
+
+    @Override
+    protected void swapBuffers() {
+        final float[] tmp = this.levels;
+        this.levels = this.next;
+        this.next = tmp;
+    }
+
+    @Override
+    long getStorageBytes() {
+        return 2L * Float.BYTES * this.levels.length;
+    }
+
+    @Override
+    PheromoneStorage getStorage() {
+        return PheromoneStorage.FLOAT;
+    }
+
+    @Override
+    protected void writeLevels(final ByteBuffer out) {
+        out.asFloatBuffer().put(this.levels);
+        out.position(out.position() + Float.BYTES * this.levels.length);
+    }
+
+    @Override
+    protected void readLevels(final ByteBuffer in) {
+        in.asFloatBuffer().get(this.levels);
+        in.position(in.position() + Float.BYTES * this.levels.length);
+        Arrays.fill(this.next, 0);
+    }
+}
@@ -1,26 +1,42 @@
 package org.evensen.ants;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class FoodSource {
     private final Position position;
     private final int radius;
-    private int foodAmount;
+    private final AtomicInteger foodAmount;
 
     public FoodSource(Position position, int radius, int foodAmount) {
         this.position = position;
         this.radius = radius;
-        this.foodAmount = foodAmount;
+        this.foodAmount = new AtomicInteger(foodAmount);
     }
 
     public boolean containsFood(Position p) {
-        return this.foodAmount > 0 && this.position.isWithinRadius(p, this.radius);
+        return this.foodAmount.get() > 0 && this.position.isWithinRadius(p, this.radius);
     }
 
     public boolean takeFood() {
-        if (this.foodAmount > 0) {
-            this.foodAmount--;
-            return this.foodAmount > 0;
+        return tryTakeFood() > 0;
+    }
+
+    /**
+     * Takes one unit of food. Safe to call from several threads at once, every unit is handed out exactly once.
+     *
+     * @return The amount left after taking a unit, so {@code 0} for the caller that took the last one, or
+     * {@code -1} if there was nothing left to take.
+     */
+    public int tryTakeFood() {
+        int amount = this.foodAmount.get();
+        while (amount > 0) {
+            final int witness = this.foodAmount.compareAndExchange(amount, amount - 1);
+            if (witness == amount) {
+                return amount - 1;
+            }
+            amount = witness;
         }
-        return false;
+        return -1;
     }
 
     public Position getPosition() {
@@ -28,7 +44,7 @@ public class FoodSource {
     }
 
     public int getFoodAmount() {
-        return this.foodAmount;
+        return this.foodAmount.get();
     }
 
     public int getRadius() {
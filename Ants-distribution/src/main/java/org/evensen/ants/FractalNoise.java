@@ -1,5 +1,7 @@
 package org.evensen.ants;
 
+import java.util.Arrays;
+
 public enum FractalNoise {
     ;
 
@@ -16,25 +18,28 @@ public enum FractalNoise {
     }
 
     private static double interpolate(final double a0, final double a1, final double w) {
-        return (a1 - a0) * ((w * (w * 6.0 - 15.0) + 10.0) * w * w * w) + a0;
+        return (a1 - a0) * fade(w) + a0;
     }
 
-    /* Create pseudorandom direction vector
+    /* Create pseudorandom direction angle
      */
-    private static Vector2 randomGradient(final long ix, final long iy, final long seed) {
-        final double random = hash(ix, iy, seed) * GraphicsMath.TAU;
-        return new Vector2(Math.cos(random), Math.sin(random));
+    private static double randomGradientAngle(final long ix, final long iy, final long seed) {
+        return hash(ix, iy, seed) * GraphicsMath.TAU;
     }
 
     private static double dotGridGradient(final long ix, final long iy, final double x, final double y, final long seed) {
-        final Vector2 gradient = randomGradient(ix, iy, seed);
+        final double angle = randomGradientAngle(ix, iy, seed);
 
         // Compute the distance vector
         final double dx = x - ix;
         final double dy = y - iy;
 
         // Compute the dot-product
-        return dx * gradient.x + dy * gradient.y;
+        return dx * Math.cos(angle) + dy * Math.sin(angle);
+    }
+
+    private static double fade(final double w) {
+        return (w * (w * 6.0 - 15.0) + 10.0) * w * w * w;
     }
 
     private static double perlin(final double x, final double y, final long seed) {
@@ -80,13 +85,115 @@ public enum FractalNoise {
         return acc / ampSum;
     }
 
-    private static class Vector2 {
-        final double x;
-        final double y;
+    /**
+     * Fills {@code out} with the same values as {@code getNoise} gives for every combination of {@code xs} and
+     * {@code ys}, {@code out[j * xs.length + i] = getNoise(xs[i], ys[j], ...)}.
+     * <p>
+     * Much faster than calling {@code getNoise} per sample when samples are denser than the noise lattice: for each
+     * octave, the gradients of the lattice corners covering the samples are computed once into a table and shared by
+     * all samples around them, and per column and row terms are computed once per octave.
+     * </p>
+     * @param out Receives the noise values, at least {@code xs.length * ys.length} long.
+     * @param xs The x-values to get noise for, in non-decreasing order.
+     * @param ys The y-values to get noise for, in non-decreasing order.
+     * @param persistence How rapidly the amplitude should fall off for each octave.
+     * @param firstOctave The first octave.
+     * @param lastOctave The last octave.
+     * @param seed Gives rise to a unique noise map.
+     */
+    public static void getNoise(final double[] out, final double[] xs, final double[] ys,
+                                final double persistence, final int firstOctave, final int lastOctave, final long seed) {
+        final int w = xs.length;
+        final int h = ys.length;
+        if (0 == w || 0 == h) {
+            return;
+        }
+        Arrays.fill(out, 0, w * h, 0.0);
+        final long[] cx = new long[w];
+        final double[] dx0 = new double[w];
+        final double[] dx1 = new double[w];
+        final double[] fx = new double[w];
+        final long[] cy = new long[h];
+        final double[] dy0 = new double[h];
+        final double[] dy1 = new double[h];
+        final double[] fy = new double[h];
+        double[] gradientX = new double[0];
+        double[] gradientY = new double[0];
 
-        Vector2(double x, double y) {
-            this.x = x;
-            this.y = y;
+        double ampSum = 0.0;
+        double ampl = persistence;
+        for (int octave = firstOctave; octave <= lastOctave; octave++) {
+            final int scale = 1 << octave;
+            for (int i = 0; i < w; i++) {
+                final double x = xs[i] * scale;
+                cx[i] = (long) x;
+                dx0[i] = x - cx[i];
+                dx1[i] = x - (cx[i] + 1);
+                fx[i] = fade(x - cx[i]);
+            }
+            for (int j = 0; j < h; j++) {
+                final double y = ys[j] * scale;
+                cy[j] = (long) y;
+                dy0[j] = y - cy[j];
+                dy1[j] = y - (cy[j] + 1);
+                fy[j] = fade(y - cy[j]);
+            }
+
+            //
+            // Only tabulate gradients when there are fewer lattice corners than samples to share them.
+            //
+            final long lx0 = cx[0];
+            final long ly0 = cy[0];
+            final long latticeW = cx[w - 1] - lx0 + 2;
+            final long latticeH = cy[h - 1] - ly0 + 2;
+            final boolean tabulate = latticeW * latticeH <= (long) w * h;
+            if (tabulate) {
+                final int cells = (int) (latticeW * latticeH);
+                if (gradientX.length < cells) {
+                    gradientX = new double[cells];
+                    gradientY = new double[cells];
+                }
+                for (int j = 0; j < latticeH; j++) {
+                    for (int i = 0; i < latticeW; i++) {
+                        final double angle = randomGradientAngle(lx0 + i, ly0 + j, seed);
+                        gradientX[j * (int) latticeW + i] = Math.cos(angle);
+                        gradientY[j * (int) latticeW + i] = Math.sin(angle);
+                    }
+                }
+            }
+
+            for (int j = 0; j < h; j++) {
+                final int row = j * w;
+                for (int i = 0; i < w; i++) {
+                    final double n00;
+                    final double n01;
+                    final double n10;
+                    final double n11;
+                    if (tabulate) {
+                        final int g = (int) ((cy[j] - ly0) * latticeW + (cx[i] - lx0));
+                        final int gw = (int) latticeW;
+                        n00 = dx0[i] * gradientX[g] + dy0[j] * gradientY[g];
+                        n01 = dx1[i] * gradientX[g + 1] + dy0[j] * gradientY[g + 1];
+                        n10 = dx0[i] * gradientX[g + gw] + dy1[j] * gradientY[g + gw];
+                        n11 = dx1[i] * gradientX[g + gw + 1] + dy1[j] * gradientY[g + gw + 1];
+                    } else {
+                        final double x = xs[i] * scale;
+                        final double y = ys[j] * scale;
+                        n00 = dotGridGradient(cx[i], cy[j], x, y, seed);
+                        n01 = dotGridGradient(cx[i] + 1, cy[j], x, y, seed);
+                        n10 = dotGridGradient(cx[i], cy[j] + 1, x, y, seed);
+                        n11 = dotGridGradient(cx[i] + 1, cy[j] + 1, x, y, seed);
+                    }
+                    final double ix0 = (n01 - n00) * fx[i] + n00;
+                    final double ix1 = (n11 - n10) * fx[i] + n10;
+                    out[row + i] += (((ix1 - ix0) * fy[j] + ix0) * 0.5 + 0.5) * ampl;
+                }
+            }
+            ampSum += ampl;
+            ampl *= persistence;
+        }
+        for (int k = 0; k < w * h; k++) {
+            out[k] /= ampSum;
         }
     }
 }
@@ -0,0 +1,176 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@code PheromoneGrid} storing levels as half precision floats, see {@code PheromoneStorage.HALF}.
+ */
+final class HalfPheromoneGrid extends PheromoneGrid {
+    private static final long SQRT3 = 0xBB67AE8584CAA73BL;
+
+    private short[] levels;
+    private short[] next;
+    private final float[][] rows;
+
+    HalfPheromoneGrid(final int width, final int height, final int channels) {
+        super(width, height, channels);
+        this.rows = new float[3][(TILE_SIZE + 2) * channels];
+        this.levels = new short[width * height * channels];
+        this.next = new short[width * height * channels];
+    }
+
+    private static float half(final short bits) {
+        return Float.float16ToFloat(bits);
+    }
+
+    @Override
+    protected float load(final int index) {
+        return Float.float16ToFloat(this.levels[index]);
+    }
+
+    @Override
+    protected void store(final int index, final float level) {
+        this.levels[index] = Float.floatToFloat16(level);
+    }
+
+    /**
+     * Rounds stochastically instead of to nearest: the level is rounded up to the next half float with a probability
+     * in proportion to how close it is. Deposits too small to reach the next half float on their own would otherwise
+     * all be rounded away, this way they add up like they do in {@code FLOAT} on average. The random bits come from
+     * hashing the index and the exact level, so runs are still reproducible.
+     */
+    @Override
+    protected void storeAdded(final int index, final float level) {
+        final short nearest = Float.floatToFloat16(level);
+        final float rounded = half(nearest);
+        if (rounded == level) {
+            this.levels[index] = nearest;
+            return;
+        }
+        //
+        // Levels aren't negative, so the bit patterns of half floats order like their values.
+        //
+        final short below = rounded < level ? nearest : (short) (nearest - 1);
+        final short above = (short) (below + 1);
+        final float low = half(below);
+        final float up = (level - low) / (half(above) - low);
+        this.levels[index] = unitHash(index, level) < up ? above : below;
+    }
+
+    /**
+     * @return A number on {@code [0, 1)} that looks random but only depends on {@code index} and {@code level}.
+     */
+    private static float unitHash(final int index, final float level) {
+        long h = ((long) index << 32 | Float.floatToRawIntBits(level) & 0xFFFFFFFFL) * SQRT3;
+        h ^= h >>> 28;
+        h *= SQRT3;
+        h ^= h >>> 28;
+        h *= SQRT3;
+        return (h >>> 40) * 0x1.0p-24f;
+    }
+
+    /**
+     * Decodes row {@code y}, columns {@code [x0 - 1, x1]} with edges repeated, into {@code row}.
+     */
+    private void decodeRow(final float[] row, final int y, final int x0, final int x1) {
+        final int c = this.channels;
+        final int rowStart = Math.max(0, Math.min(this.height - 1, y)) * this.width;
+        int j = 0;
+        for (int x = x0 - 1; x <= x1; x++) {
+            final int from = (rowStart + Math.max(0, Math.min(this.width - 1, x))) * c;
+            for (int k = 0; k < c; k++) {
+                row[j++] = half(this.levels[from + k]);
+            }
+        }
+    }
+
+    @Override
+    protected float disperseRegion(final int x0, final int y0, final int x1, final int y1,
+                                   final ObstacleGrid obstacles, final float keep, final float evaporation) {
+        final int c = this.channels;
+        final float neighbourWeight = (1 - keep) / 8.0f;
+        final short[] dst = this.next;
+        float[] up = this.rows[0];
+        float[] mid = this.rows[1];
+        float[] down = this.rows[2];
+        float max = 0;
+
+        //
+        // Every level is decoded once per row into a float scratch row instead of once per neighbour.
+        //
+        decodeRow(up, y0 - 1, x0, x1);
+        decodeRow(mid, y0, x0, x1);
+        for (int y = y0; y < y1; y++) {
+            decodeRow(down, y + 1, x0, x1);
+            final int row = y * this.width;
+            for (int x = x0; x < x1; x++) {
+                final int cell = row + x;
+                final int out = cell * c;
+                if (obstacles.isObstacleAt(cell)) {
+                    Arrays.fill(dst, out, out + c, (short) 0);
+                    continue;
+                }
+                final int j = (x - x0 + 1) * c;
+                for (int k = 0; k < c; k++) {
+                    final int l = j - c + k;
+                    final int r = j + c + k;
+                    final float npl = up[l] + up[j + k] + up[r] + mid[l] + mid[r] + down[l] + down[j + k] + down[r];
+                    float level = (neighbourWeight * npl + keep * mid[j + k]) * evaporation;
+                    if (EPSILON > level) {
+                        level = 0;
+                    }
+                    dst[out + k] = Float.floatToFloat16(level);
+                    max = Math.max(max, level);
+                }
+            }
+            final float[] tmp = up;
+            up = mid;
+            mid = down;
+            down = tmp;
+        }
+        return max;
+    }
+
+    @Override
+    protected void clearNext(final int from, final int to) {
+        Arrays.fill(this.next, from, to, (short) 0);
+    }
+
+    @Override
+    protected void scale(final int from, final int to, final float factor) {
+        for (int i = from; i < to; i++) {
+            this.levels[i] = Float.floatToFloat16(half(this.levels[i]) * factor);
+        }
+    }
+
+    @Override
+    protected void swapBuffers() {
+        final short[] tmp = this.levels;
+        this.levels = this.next;
+        this.next = tmp;
+    }
+
+    @Override
+    long getStorageBytes() {
+        return 2L * Short.BYTES * this.levels.length;
+    }
+
+    @Override
+    PheromoneStorage getStorage() {
+        return PheromoneStorage.HALF;
+    }
+
+    @Override
+    protected void writeLevels(final ByteBuffer out) {
+        out.asShortBuffer().put(this.levels);
+        out.position(out.position() + Short.BYTES * this.levels.length);
+    }
+
+    @Override
+    protected void readLevels(final ByteBuffer in) {
+        in.asShortBuffer().get(this.levels);
+        in.position(in.position() + Short.BYTES * this.levels.length);
+        Arrays.fill(this.next, (short) 0);
+    }
+}
@@ -0,0 +1,384 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.evensen.ants.GraphicsMath.TAU;
+
+/**
+ * Shortest walking distance from every cell to the closest home cell, going around obstacles, together with the
+ * neighbour each cell's shortest path continues through.
+ * <p>
+ * Cells are connected to their eight neighbours, diagonals cost {@code sqrt(2)} and may not cut the corner of an
+ * obstacle. Obstacle changes are queued by {@code obstacleChanged}, from any thread, and applied incrementally by
+ * {@code update}: a new obstacle only invalidates the cells whose path went through it, and a removed one only
+ * relaxes the cells it gets closer to.
+ * </p>
+ * <p>
+ * A new field knows no way home until {@code recomputeAll} or {@code read} fills it in.
+ * </p>
+ */
+final class HomeDistanceField {
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final float[] COST = {1.0f, (float) Math.sqrt(2.0), 1.0f, (float) Math.sqrt(2.0),
+            1.0f, (float) Math.sqrt(2.0), 1.0f, (float) Math.sqrt(2.0)};
+    private static final byte NO_PARENT = -1;
+    /**
+     * How many steps along the path {@code getDirection} looks ahead, smoothing out the eight-way parent links, as
+     * long as it can see that far.
+     */
+    private static final int LOOKAHEAD = 4;
+    /**
+     * More queued changes than one in this many cells are applied by recomputing everything.
+     */
+    private static final int FULL_RECOMPUTE_FRACTION = 64;
+
+    private final int width;
+    private final int height;
+    private final float[] distance;
+    private final byte[] parent;
+    private final BitSet home;
+    private final IndexHeap heap = new IndexHeap();
+    private BitSet pending;
+    private BitSet processing;
+    private int[] stack = new int[64];
+
+    HomeDistanceField(final ObstacleGrid obstacles, final Position homeCenter, final float homeRadius) {
+        this.width = obstacles.getWidth();
+        this.height = obstacles.getHeight();
+        this.distance = new float[this.width * this.height];
+        this.parent = new byte[this.width * this.height];
+        this.home = new BitSet(this.width * this.height);
+        this.pending = new BitSet();
+        this.processing = new BitSet();
+
+        final int cx = (int) homeCenter.getX();
+        final int cy = (int) homeCenter.getY();
+        final int r = (int) Math.ceil(homeRadius);
+        for (int y = Math.max(0, cy - r); y <= Math.min(this.height - 1, cy + r); y++) {
+            for (int x = Math.max(0, cx - r); x <= Math.min(this.width - 1, cx + r); x++) {
+                if (homeCenter.isWithinRadius(new Position(x, y), homeRadius)) {
+                    this.home.set(y * this.width + x);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes every distance from scratch. Changes still queued are applied again by the next {@code update}, which
+     * is harmless.
+     */
+    void recomputeAll(final ObstacleGrid obstacles) {
+        this.heap.clear();
+        Arrays.fill(this.distance, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.parent, NO_PARENT);
+        for (int i = this.home.nextSetBit(0); i >= 0; i = this.home.nextSetBit(i + 1)) {
+            if (!obstacles.isObstacleAt(i)) {
+                this.distance[i] = 0;
+                this.heap.push(i, 0);
+            }
+        }
+        propagate(obstacles);
+    }
+
+    /**
+     * @return The number of bytes {@code write} puts.
+     */
+    long getBytes() {
+        return (long) (Float.BYTES + 1) * this.distance.length;
+    }
+
+    /**
+     * Puts distances and paths at the position of {@code out} and advances it. Queued changes should be applied
+     * first, they are not written.
+     */
+    void write(final ByteBuffer out) {
+        out.asFloatBuffer().put(this.distance);
+        out.position(out.position() + Float.BYTES * this.distance.length).put(this.parent);
+    }
+
+    /**
+     * Replaces distances and paths with ones written by {@code write} for the same map and home.
+     */
+    void read(final ByteBuffer in) {
+        in.asFloatBuffer().get(this.distance);
+        in.position(in.position() + Float.BYTES * this.distance.length).get(this.parent);
+    }
+
+    boolean isHome(final int x, final int y) {
+        return x >= 0 && x < this.width && y >= 0 && y < this.height && this.home.get(y * this.width + x);
+    }
+
+    /**
+     * @return The walking distance from {@code <x, y>} to home, or {@code Float.POSITIVE_INFINITY} if there is no way
+     * home from there.
+     */
+    float getDistance(final int x, final int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return this.distance[y * this.width + x];
+    }
+
+    /**
+     * @return The angle on {@code [0, TAU)} to head in from {@code p} to get home the shortest way, or {@code -1} if
+     * {@code p} is home already or has no way home. Never points through an obstacle.
+     */
+    float getDirection(final ObstacleGrid obstacles, final Position p) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            return -1;
+        }
+        int i = y * this.width + x;
+        if (this.parent[i] < 0) {
+            return -1;
+        }
+        //
+        // The first step is always clear, it can't cut a corner. Further ones only count while the straight line to
+        // them is, otherwise a path bending around a thin wall would point straight through it.
+        //
+        i += DY[this.parent[i]] * this.width + DX[this.parent[i]];
+        for (int step = 1; step < LOOKAHEAD; step++) {
+            final int d = this.parent[i];
+            if (d < 0) {
+                break;
+            }
+            final int next = i + DY[d] * this.width + DX[d];
+            if (!isInSight(obstacles, p.getX(), p.getY(), next % this.width, next / this.width)) {
+                break;
+            }
+            i = next;
+        }
+        final float dx = (i % this.width) + 0.5f - p.getX();
+        final float dy = (i / this.width) + 0.5f - p.getY();
+        final float angle = (float) Math.atan2(dy, dx);
+        return angle < 0 ? angle + TAU : angle;
+    }
+
+    /**
+     * @return {@code true} if no cell the line from {@code <x0, y0>} to the centre of cell {@code <x1, y1>} passes
+     * through is an obstacle. Passing exactly through a corner needs both cells beside it to be clear, like a diagonal
+     * step does.
+     */
+    private static boolean isInSight(final ObstacleGrid obstacles, final float x0, final float y0, final int x1,
+                                     final int y1) {
+        final float dx = x1 + 0.5f - x0;
+        final float dy = y1 + 0.5f - y0;
+        int x = (int) Math.floor(x0);
+        int y = (int) Math.floor(y0);
+        final int stepX = dx > 0 ? 1 : -1;
+        final int stepY = dy > 0 ? 1 : -1;
+        final float deltaX = 0 == dx ? Float.POSITIVE_INFINITY : Math.abs(1 / dx);
+        final float deltaY = 0 == dy ? Float.POSITIVE_INFINITY : Math.abs(1 / dy);
+        float nextX = 0 == dx ? Float.POSITIVE_INFINITY : (dx > 0 ? x + 1 - x0 : x0 - x) * deltaX;
+        float nextY = 0 == dy ? Float.POSITIVE_INFINITY : (dy > 0 ? y + 1 - y0 : y0 - y) * deltaY;
+        //
+        // Walk the cells crossed, in the order they are crossed, at most one per row and column between the ends.
+        //
+        for (int cells = Math.abs(x1 - x) + Math.abs(y1 - y); cells > 0 && (x != x1 || y != y1); cells--) {
+            if (nextX < nextY) {
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY < nextX) {
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                if (obstacles.isObstacle(x + stepX, y) || obstacles.isObstacle(x, y + stepY)) {
+                    return false;
+                }
+                x += stepX;
+                y += stepY;
+                nextX += deltaX;
+                nextY += deltaY;
+                cells--;
+            }
+            if (obstacles.isObstacle(x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues the cell at {@code <x, y>} for being re-evaluated on the next {@code update}.
+     */
+    synchronized void obstacleChanged(final int x, final int y) {
+        if (x >= 0 && x < this.width && y >= 0 && y < this.height) {
+            this.pending.set(y * this.width + x);
+        }
+    }
+
+    /**
+     * Applies all queued obstacle changes. Must not be called concurrently with itself.
+     */
+    void update(final ObstacleGrid obstacles) {
+        synchronized (this) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            final BitSet tmp = this.processing;
+            this.processing = this.pending;
+            this.pending = tmp;
+        }
+
+        //
+        // Past a point, e.g. after generating terrain, starting over is cheaper than invalidating piece by piece.
+        //
+        if (this.processing.cardinality() > this.distance.length / FULL_RECOMPUTE_FRACTION) {
+            this.processing.clear();
+            recomputeAll(obstacles);
+            return;
+        }
+
+        //
+        // Everything whose path went through a new obstacle loses its distance, so do the cells that just opened up.
+        //
+        final BitSet invalid = new BitSet();
+        final BitSet opened = new BitSet();
+        for (int c = this.processing.nextSetBit(0); c >= 0; c = this.processing.nextSetBit(c + 1)) {
+            if (obstacles.isObstacleAt(c)) {
+                invalidateSubtree(c, invalid);
+                //
+                // Diagonal steps past the new obstacle's corners are blocked as well.
+                //
+                final int x = c % this.width;
+                final int y = c / this.width;
+                for (int d = 0; d < DX.length; d++) {
+                    final int nx = x + DX[d];
+                    final int ny = y + DY[d];
+                    if (!obstacles.isObstacle(nx, ny)) {
+                        final int n = ny * this.width + nx;
+                        if (!invalid.get(n) && this.parent[n] >= 0 && !isPassable(obstacles, nx, ny, this.parent[n])) {
+                            invalidateSubtree(n, invalid);
+                        }
+                    }
+                }
+            } else {
+                invalid.set(c);
+                opened.set(c);
+                this.distance[c] = Float.POSITIVE_INFINITY;
+                this.parent[c] = NO_PARENT;
+            }
+        }
+        this.processing.clear();
+
+        //
+        // A removed obstacle may also open diagonal steps between its neighbours, so let them relax their neighbours
+        // again.
+        //
+        for (int c = opened.nextSetBit(0); c >= 0; c = opened.nextSetBit(c + 1)) {
+            final int x = c % this.width;
+            final int y = c / this.width;
+            for (int d = 0; d < DX.length; d++) {
+                final int nx = x + DX[d];
+                final int ny = y + DY[d];
+                if (!obstacles.isObstacle(nx, ny)) {
+                    final int n = ny * this.width + nx;
+                    if (!invalid.get(n) && Float.POSITIVE_INFINITY != this.distance[n]) {
+                        this.heap.push(n, this.distance[n]);
+                    }
+                }
+            }
+        }
+
+        //
+        // Seed the invalidated cells from whatever valid neighbours they have, then let Dijkstra fill in the rest.
+        //
+        for (int i = invalid.nextSetBit(0); i >= 0; i = invalid.nextSetBit(i + 1)) {
+            if (obstacles.isObstacleAt(i)) {
+                continue;
+            }
+            if (this.home.get(i)) {
+                this.distance[i] = 0;
+                this.parent[i] = NO_PARENT;
+                this.heap.push(i, 0);
+                continue;
+            }
+            final int x = i % this.width;
+            final int y = i / this.width;
+            for (int d = 0; d < DX.length; d++) {
+                final int n = i + DY[d] * this.width + DX[d];
+                if (isPassable(obstacles, x, y, d) && !invalid.get(n) &&
+                        this.distance[n] + COST[d] < this.distance[i]) {
+                    this.distance[i] = this.distance[n] + COST[d];
+                    this.parent[i] = (byte) d;
+                }
+            }
+            if (Float.POSITIVE_INFINITY != this.distance[i]) {
+                this.heap.push(i, this.distance[i]);
+            }
+        }
+        propagate(obstacles);
+    }
+
+    private void invalidateSubtree(final int root, final BitSet invalid) {
+        int top = 0;
+        this.stack[top++] = root;
+        invalid.set(root);
+        while (top > 0) {
+            final int i = this.stack[--top];
+            this.distance[i] = Float.POSITIVE_INFINITY;
+            this.parent[i] = NO_PARENT;
+            final int x = i % this.width;
+            final int y = i / this.width;
+            for (int d = 0; d < DX.length; d++) {
+                final int nx = x + DX[d];
+                final int ny = y + DY[d];
+                if (nx < 0 || nx >= this.width || ny < 0 || ny >= this.height) {
+                    continue;
+                }
+                final int n = ny * this.width + nx;
+                //
+                // n is a child of i if its parent link points back at i, i.e. in the opposite direction of d.
+                //
+                if (!invalid.get(n) && ((d + 4) & 7) == this.parent[n]) {
+                    invalid.set(n);
+                    if (top == this.stack.length) {
+                        this.stack = Arrays.copyOf(this.stack, top * 2);
+                    }
+                    this.stack[top++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a step in direction {@code d} from {@code <x, y>} stays on the map, doesn't end in an
+     * obstacle and, if diagonal, doesn't cut an obstacle's corner.
+     */
+    private boolean isPassable(final ObstacleGrid obstacles, final int x, final int y, final int d) {
+        final int nx = x + DX[d];
+        final int ny = y + DY[d];
+        if (obstacles.isObstacle(nx, ny)) {
+            return false;
+        }
+        return 0 == (d & 1) || !(obstacles.isObstacle(nx, y) || obstacles.isObstacle(x, ny));
+    }
+
+    private void propagate(final ObstacleGrid obstacles) {
+        while (!this.heap.isEmpty()) {
+            final float key = this.heap.peekKey();
+            final int i = this.heap.pop();
+            if (key > this.distance[i]) {
+                continue;
+            }
+            final int x = i % this.width;
+            final int y = i / this.width;
+            for (int d = 0; d < DX.length; d++) {
+                if (!isPassable(obstacles, x, y, d)) {
+                    continue;
+                }
+                final int n = i + DY[d] * this.width + DX[d];
+                final float candidate = key + COST[d];
+                if (candidate < this.distance[n]) {
+                    this.distance[n] = candidate;
+                    this.parent[n] = (byte) ((d + 4) & 7);
+                    this.heap.push(n, candidate);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.evensen.ants;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of cell indices keyed by distance, for Dijkstra style fills over a grid. Stale entries are skipped
+ * by the caller rather than removed.
+ */
+final class IndexHeap {
+    private int[] cells = new int[256];
+    private float[] keys = new float[256];
+    private int size;
+
+    void clear() {
+        this.size = 0;
+    }
+
+    boolean isEmpty() {
+        return 0 == this.size;
+    }
+
+    float peekKey() {
+        return this.keys[0];
+    }
+
+    void push(final int cell, final float key) {
+        if (this.size == this.cells.length) {
+            this.cells = Arrays.copyOf(this.cells, this.size * 2);
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+        }
+        int i = this.size++;
+        while (i > 0) {
+            final int up = (i - 1) >> 1;
+            if (this.keys[up] <= key) {
+                break;
+            }
+            this.cells[i] = this.cells[up];
+            this.keys[i] = this.keys[up];
+            i = up;
+        }
+        this.cells[i] = cell;
+        this.keys[i] = key;
+    }
+
+    int pop() {
+        final int top = this.cells[0];
+        final int cell = this.cells[--this.size];
+        final float key = this.keys[this.size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+                child++;
+            }
+            if (key <= this.keys[child]) {
+                break;
+            }
+            this.cells[i] = this.cells[child];
+            this.keys[i] = this.keys[child];
+            i = child;
+        }
+        this.cells[i] = cell;
+        this.keys[i] = key;
+        return top;
+    }
+}
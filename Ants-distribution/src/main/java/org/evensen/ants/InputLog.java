@@ -0,0 +1,174 @@
+package org.evensen.ants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Everything that goes into a run of the simulation: the config the world and colony are created from,
+ * and the obstacle strokes drawn during the run, each with the epoch it was applied in. Together they decide the run
+ * completely, so the log also carries state hashes taken along the way for a replay to check itself against.
+ * <p>
+ * Logs are stored as a short binary header followed by one record per stroke or hash, in the order they happened.
+ * </p>
+ */
+public final class InputLog {
+    private static final int MAGIC = 0x414E544C; // "ANTL"
+    private static final int VERSION = 5;
+    private static final byte STROKE = 1;
+    private static final byte HASH = 2;
+
+    /**
+     * Obstacles added or erased within {@code radius} of {@code position} at the start of {@code epoch}.
+     */
+    public static final class Stroke {
+        private final long epoch;
+        private final Position position;
+        private final float radius;
+        private final boolean add;
+
+        public Stroke(final long epoch, final Position position, final float radius, final boolean add) {
+            this.epoch = epoch;
+            this.position = position;
+            this.radius = radius;
+            this.add = add;
+        }
+
+        public long getEpoch() {
+            return this.epoch;
+        }
+
+        public Position getPosition() {
+            return this.position;
+        }
+
+        public float getRadius() {
+            return this.radius;
+        }
+
+        public boolean isAdd() {
+            return this.add;
+        }
+    }
+
+    private final SimulationConfig config;
+    private final List<Stroke> strokes = new ArrayList<>();
+    private final NavigableMap<Long, Long> hashes = new TreeMap<>();
+
+    public InputLog(final SimulationConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @return What the world and colony are created from, seed included.
+     */
+    public SimulationConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * @return The strokes in the order they were applied.
+     */
+    public List<Stroke> getStrokes() {
+        return Collections.unmodifiableList(this.strokes);
+    }
+
+    /**
+     * @return State hashes by the epoch after which they were taken.
+     */
+    public NavigableMap<Long, Long> getHashes() {
+        return Collections.unmodifiableNavigableMap(this.hashes);
+    }
+
+    /**
+     * @return The last epoch anything was logged for.
+     */
+    public long getLastEpoch() {
+        final long lastStroke = this.strokes.isEmpty() ? 0 : this.strokes.get(this.strokes.size() - 1).getEpoch();
+        return this.hashes.isEmpty() ? lastStroke : Math.max(lastStroke, this.hashes.lastKey());
+    }
+
+    public void addStroke(final Stroke stroke) {
+        this.strokes.add(stroke);
+    }
+
+    public void addHash(final long epoch, final long hash) {
+        this.hashes.put(epoch, hash);
+    }
+
+    public void write(final Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            this.config.write(out);
+
+            //
+            // Strokes and hashes are merged by epoch, strokes first since they are applied at the start of an epoch.
+            //
+            int s = 0;
+            for (final var hash : this.hashes.entrySet()) {
+                for (; s < this.strokes.size() && this.strokes.get(s).getEpoch() <= hash.getKey(); s++) {
+                    writeStroke(out, this.strokes.get(s));
+                }
+                out.writeByte(HASH);
+                out.writeLong(hash.getKey());
+                out.writeLong(hash.getValue());
+            }
+            for (; s < this.strokes.size(); s++) {
+                writeStroke(out, this.strokes.get(s));
+            }
+        }
+    }
+
+    private static void writeStroke(final DataOutputStream out, final Stroke stroke) throws IOException {
+        out.writeByte(STROKE);
+        out.writeLong(stroke.getEpoch());
+        out.writeFloat(stroke.getPosition().getX());
+        out.writeFloat(stroke.getPosition().getY());
+        out.writeFloat(stroke.getRadius());
+        out.writeBoolean(stroke.isAdd());
+    }
+
+    public static InputLog read(final Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (MAGIC != in.readInt()) {
+                throw new IOException(path + " is not an input log");
+            }
+            final int version = in.readInt();
+            if (VERSION != version) {
+                throw new IOException(path + " is a version " + version + " input log, expected " + VERSION);
+            }
+            final InputLog log = new InputLog(SimulationConfig.read(in));
+            while (true) {
+                final int type;
+                try {
+                    type = in.readByte();
+                } catch (final EOFException e) {
+                    return log;
+                }
+                final long epoch = in.readLong();
+                switch (type) {
+                    case STROKE:
+                        log.addStroke(new Stroke(epoch, new Position(in.readFloat(), in.readFloat()), in.readFloat(),
+                                in.readBoolean()));
+                        break;
+                    case HASH:
+                        log.addHash(epoch, in.readLong());
+                        break;
+                    default:
+                        throw new IOException("Unknown record " + type + " in " + path);
+                }
+            }
+        }
+    }
+}
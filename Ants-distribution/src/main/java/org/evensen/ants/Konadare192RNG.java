@@ -1,5 +1,6 @@
 package org.evensen.ants;
 
+import java.nio.ByteBuffer;
 import java.util.random.RandomGenerator.SplittableGenerator;
 import java.util.stream.Stream;
 
@@ -18,11 +19,19 @@ public class Konadare192RNG implements SplittableGenerator {
     private double nextGaussian;
 
     public Konadare192RNG(final long seed) {
+        reseed(seed);
+    }
+
+    /**
+     * Puts the generator in the state {@code new Konadare192RNG(seed)} starts in.
+     */
+    final void reseed(final long seed) {
         final long[] eSeed = {seed, seed + 1, seed + 2};
         mix(eSeed);
         this.a = eSeed[0];
         this.b = eSeed[1];
         this.c = eSeed[2];
+        this.hasNextGaussian = false;
     }
 
     private Konadare192RNG(final long a, final long b, final long c) {
@@ -31,6 +40,30 @@ public class Konadare192RNG implements SplittableGenerator {
         this.c = c;
     }
 
+    static final int STATE_BYTES = 4 * Long.BYTES;
+
+    /**
+     * Puts the generator state, {@value STATE_BYTES} bytes, at the position of {@code out} and advances it.
+     */
+    void writeState(final ByteBuffer out) {
+        out.putLong(this.a).putLong(this.b).putLong(this.c)
+                .putDouble(this.hasNextGaussian ? this.nextGaussian : Double.NaN);
+    }
+
+    /**
+     * @return A generator continuing exactly where the one whose state {@code writeState} wrote left off.
+     */
+    static Konadare192RNG readState(final ByteBuffer in) {
+        final long a = in.getLong();
+        final long b = in.getLong();
+        final long c = in.getLong();
+        final Konadare192RNG rng = new Konadare192RNG(a, b, c);
+        final double gaussian = in.getDouble();
+        rng.hasNextGaussian = !Double.isNaN(gaussian);
+        rng.nextGaussian = gaussian;
+        return rng;
+    }
+
     private static void mix(final long[] arr) {
         long acc = arr[arr.length - 1];
         for (int i = 1; i <= 3; i++) {
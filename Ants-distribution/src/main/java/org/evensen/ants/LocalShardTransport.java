@@ -0,0 +1,87 @@
+package org.evensen.ants;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Carries messages between shards running in the same process, as one queue per pair of shards. Messages are
+ * handed over as they are, never copied.
+ */
+public final class LocalShardTransport implements ShardTransport {
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+
+    private final int shard;
+    private final BlockingQueue<ByteBuffer>[][] queues;
+
+    private LocalShardTransport(final int shard, final BlockingQueue<ByteBuffer>[][] queues) {
+        this.shard = shard;
+        this.queues = queues;
+    }
+
+    /**
+     * @return Connected end points for {@code shards} shards, by shard index.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static List<ShardTransport> create(final int shards) {
+        final BlockingQueue<ByteBuffer>[][] queues = new BlockingQueue[shards][shards];
+        for (int from = 0; from < shards; from++) {
+            for (int to = 0; to < shards; to++) {
+                queues[from][to] = new LinkedBlockingQueue<>();
+            }
+        }
+        final List<ShardTransport> transports = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            transports.add(new LocalShardTransport(shard, queues));
+        }
+        return transports;
+    }
+
+    @Override
+    public int getShard() {
+        return this.shard;
+    }
+
+    @Override
+    public int getShards() {
+        return this.queues.length;
+    }
+
+    @Override
+    public void send(final int to, final ByteBuffer message) {
+        this.queues[this.shard][to].add(message);
+    }
+
+    @Override
+    public ByteBuffer receive(final int from) throws IOException {
+        final BlockingQueue<ByteBuffer> queue = this.queues[from][this.shard];
+        final ByteBuffer message;
+        try {
+            message = queue.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for shard " + from);
+        }
+        if (CLOSED == message) {
+            queue.add(CLOSED);
+            throw new IOException("Shard " + from + " closed the connection to shard " + this.shard);
+        }
+        return message;
+    }
+
+    /**
+     * Wakes every shard waiting for this one, which then fails instead of waiting forever.
+     */
+    @Override
+    public void close() {
+        for (int to = 0; to < this.queues.length; to++) {
+            if (to != this.shard) {
+                this.queues[this.shard][to].add(CLOSED);
+            }
+        }
+    }
+}
@@ -16,63 +16,94 @@ import javafx.stage.Stage;
 import org.evensen.ants.controller.Camera;
 import org.evensen.ants.controller.CameraController;
 import org.evensen.ants.controller.ResizeableCanvas;
+import org.evensen.ants.metrics.Metrics;
+import org.evensen.ants.metrics.MetricsReporter;
 import org.evensen.ants.render.AntColonyRenderer;
 import org.evensen.ants.render.AntWorldRenderer;
 import org.evensen.ants.render.FoodRenderer;
 import org.evensen.ants.render.ObstacleRenderer;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Main extends Application {
-    private static final int WORLD_WIDTH = 400;
-    private static final int WORLD_HEIGHT = 200;
-    private static final int ANTS = 10000;
-    private static final float PHEROMONE_RATE = 0.7f;
     private static final long MODEL_UPDATE_INTERVAL = 10_000_000L; // Update every 10 ms.
     private static final long VIEW_UPDATE_INTERVAL = 40_000_000L; // Update every 25 ms.
     private static final double MARGIN = 20.0;
-    private static final int FOOD_SOURCES = Math.max(2, (WORLD_WIDTH * WORLD_HEIGHT / 50000));
+    private static final long METRICS_REPORT_INTERVAL = 10_000L; // Dump metrics every 10 s.
+    private static final int RECORDER_QUEUE_CAPACITY = 4;
 
     private final AntWorld world;
     //
     // Pencil radius is 2% of the world size.
     //
-    private static final float PENCIL_RADIUS = ((WORLD_WIDTH * 0.02f) + (WORLD_HEIGHT * 0.02f)) / 4.0f;
+    private final float pencilRadius;
 
 
-    private final AntColony colony;
+    private final List<AntColony> colonies;
+    private final Simulation simulation;
     private final boolean drawAnts;
     private final ObstacleRenderer obstacleRenderer;
     private final FoodRenderer foodRenderer;
-    private long epochCounter;
     private long lastModelUpdate;
     private long lastViewUpdate;
     private int frame;
     private long lastFrameReset;
+    private long lastFoodCount;
     private final AtomicBoolean modelShouldBeRunning;
     private Collection<AntHazard> hazards;
-
+    private MetricsReporter metricsReporter;
+    private PheromoneRecorder pheromoneRecorder;
+    private final Path checkpointFile;
+    private final Path inputLogFile;
+    private final InputLog inputLog;
+
+    /**
+     * If the system property {@code ants.checkpoint} is set, the simulation continues from that file if it exists and
+     * is saved to it when the window closes. Otherwise a new world is created from the {@code SimulationConfig} given
+     * by the system properties prefixed {@code ants.}, e.g. {@code ants.seed} (random if not set), {@code ants.width}
+     * or {@code ants.move_rate}, and if {@code ants.log} is set the run is logged to that file for {@code Replay}.
+     * If {@code ants.shared.file} is set, the new world's pheromones and obstacles are kept in that file for other
+     * processes to read, see {@code WorldFile}.
+     */
     public Main() {
-        // Create a new world with size WORLD_WIDTH * WORLD_HEIGHT and 4 food sources.
-        this.world = new MyAntWorld(WORLD_WIDTH, WORLD_HEIGHT, 4);
-
-        this.colony = new AntColony(ANTS, PHEROMONE_RATE, this.world);
+        final String checkpoint = System.getProperty("ants.checkpoint");
+        this.checkpointFile = null == checkpoint ? null : Path.of(checkpoint);
+        final String log = System.getProperty("ants.log");
+        this.inputLogFile = null == log ? null : Path.of(log);
+        final Checkpoint restored = restoreCheckpoint();
+        if (null != restored) {
+            this.inputLog = null;
+            this.simulation = new Simulation(restored.getWorld(), restored.getColonies());
+        } else {
+            this.inputLog = new InputLog(SimulationConfig.DEFAULT.withSeed(SeedGenerator.nextSeed())
+                    .with(System.getProperties(), "ants."));
+            this.simulation = Simulation.create(this.inputLog, null != this.inputLogFile,
+                    createWorldFile(this.inputLog.getConfig()));
+        }
+        this.world = this.simulation.getWorld();
+        this.colonies = this.simulation.getColonies();
+        this.pencilRadius = ((this.world.getWidth() * 0.02f) + (this.world.getHeight() * 0.02f)) / 4.0f;
         this.drawAnts = true;
         this.obstacleRenderer = new ObstacleRenderer();
+        this.obstacleRenderer.listenTo(this.world);
         this.foodRenderer = new FoodRenderer();
-        this.epochCounter = 1;
         this.hazards = new LinkedList<>();
         this.hazards.add(new AntHazard() {
-            private int x = WORLD_WIDTH / 2;
-            private int y = WORLD_HEIGHT / 2;
+            private int x = Main.this.world.getWidth() / 2;
+            private int y = Main.this.world.getHeight() / 2;
 
             @Override
             public void update(final AntWorld w) {
-                // this.x = (this.x + 1) % WORLD_WIDTH;
+                // this.x = (this.x + 1) % w.getWidth();
             }
 
             @Override
@@ -108,18 +139,17 @@ public class Main extends Application {
                     final long now = System.nanoTime();
                     final long elapsedModelNanos = now - Main.this.lastModelUpdate;
                     if (MODEL_UPDATE_INTERVAL < elapsedModelNanos) {
-                        synchronized (Main.this.colony) {
-                            Main.this.colony.updateAnts(Main.this.world);
-                        }
-                        if (0 == Main.this.epochCounter % 5) {
-                            Main.this.world.dispersePheromones();
-//                            Main.this.obstacleRenderer.dirty();
-                        }
+                        Main.this.simulation.step();
                         //   updateHazards();
+                        Metrics.MODEL_TICK.recordSince(now);
                         Main.this.lastModelUpdate = now;
-                        Main.this.epochCounter++;
                     }
                 } else {
+                    //
+                    // Saved from the model thread, so that nothing changes the world while it's written.
+                    //
+                    saveCheckpoint();
+                    saveInputLog();
                     cancel();
                 }
             }
@@ -128,6 +158,83 @@ public class Main extends Application {
         timer.scheduleAtFixedRate(modelUpdate, 0, MODEL_UPDATE_INTERVAL / 1_000_000);
     }
 
+    private Checkpoint restoreCheckpoint() {
+        if (null == this.checkpointFile || !Files.exists(this.checkpointFile)) {
+            return null;
+        }
+        try {
+            final long start = System.nanoTime();
+            final Checkpoint checkpoint = Checkpoint.read(this.checkpointFile);
+            System.out.printf(Locale.ROOT, "Restored %s in %.1f ms%n", this.checkpointFile,
+                    (System.nanoTime() - start) / 1.0e6);
+            return checkpoint;
+        } catch (final IOException e) {
+            System.err.println("Starting afresh, can't restore " + this.checkpointFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static WorldFile createWorldFile(final SimulationConfig config) {
+        final String shared = System.getProperty("ants.shared.file");
+        if (null == shared) {
+            return null;
+        }
+        try {
+            return WorldFile.create(Path.of(shared), config.getWidth(), config.getHeight(), config.getColonies());
+        } catch (final IOException e) {
+            System.err.println("Keeping the world to ourselves, can't create " + shared + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveCheckpoint() {
+        if (null != this.checkpointFile && this.world instanceof MyAntWorld myWorld) {
+            try {
+                Checkpoint.write(this.checkpointFile, myWorld, this.simulation.getColonies());
+            } catch (final IOException e) {
+                System.err.println("Can't save " + this.checkpointFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void saveInputLog() {
+        if (null != this.inputLogFile && null != this.inputLog) {
+            this.simulation.logFinalHash();
+            try {
+                this.inputLog.write(this.inputLogFile);
+            } catch (final IOException e) {
+                System.err.println("Can't save " + this.inputLogFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Exposes the simulation metrics over JMX and, if the system property {@code ants.metrics.file} is set,
+     * periodically dumps them to that file (JSON lines if it ends with {@code .json}, CSV otherwise).
+     */
+    private void startMetrics() {
+        Metrics.REGISTRY.registerMBeans();
+        final String metricsFile = System.getProperty("ants.metrics.file");
+        if (null != metricsFile) {
+            final Path path = Path.of(metricsFile);
+            this.metricsReporter = new MetricsReporter(Metrics.REGISTRY, path, MetricsReporter.Format.forPath(path),
+                    METRICS_REPORT_INTERVAL);
+        }
+    }
+
+    /**
+     * If the system property {@code ants.pheromones.file} is set, records the pheromones to that file after every
+     * {@code ants.pheromones.interval}th dispersal, 10 by default.
+     */
+    private void startRecorder() throws IOException {
+        final String recordingFile = System.getProperty("ants.pheromones.file");
+        if (null != recordingFile && this.world instanceof MyAntWorld myWorld) {
+            this.pheromoneRecorder = new PheromoneRecorder(Path.of(recordingFile),
+                    Integer.getInteger("ants.pheromones.interval", 10), RECORDER_QUEUE_CAPACITY);
+            myWorld.setPheromoneRecorder(this.pheromoneRecorder);
+        }
+    }
+
     @Override
     public void start(final Stage stage) throws Exception {
         // Build a scene graph
@@ -143,6 +250,8 @@ public class Main extends Application {
         final Camera camera = canvas.getCamera();
         final CameraController cameraController = canvas.createCameraController();
 
+        startMetrics();
+        startRecorder();
         startModelTimer();
 
         final EventHandler<MouseEvent> mouseEventHandler = (event) -> {
@@ -150,25 +259,15 @@ public class Main extends Application {
             //
             // Transform into world coordinates.
             //
-            final float worldX = (float) canvas.canvasCoordinateX(event.getX()) * WORLD_WIDTH;
-            final float worldY = (float) canvas.canvasCoordinateY(event.getY()) * WORLD_HEIGHT;
+            final float worldX = (float) canvas.canvasCoordinateX(event.getX()) * Main.this.world.getWidth();
+            final float worldY = (float) canvas.canvasCoordinateY(event.getY()) * Main.this.world.getHeight();
             final Position p = new Position(worldX, worldY);
 
             //
-            // Add/erase points within the radius.
-            //
-            for (float x = -PENCIL_RADIUS; PENCIL_RADIUS > x; x += 1.0f) {
-                for (float y = -PENCIL_RADIUS; PENCIL_RADIUS > y; y += 1.0f) {
-                    if (PENCIL_RADIUS * PENCIL_RADIUS > x * x + y * y) {
-                        Main.this.world.setObstacle(p.offset(x, y), !event.isShiftDown());
-                    }
-                }
-            }
-
-            //
-            // Mark obstacle renderer as dirty.
+            // Add/erase points within the radius at the start of the next epoch, so that the stroke can be logged and
+            // replayed. The obstacle renderer is told what changed by the world.
             //
-            Main.this.obstacleRenderer.dirty();
+            Main.this.simulation.setObstacles(p, Main.this.pencilRadius, !event.isShiftDown());
         };
 
         canvas.setOnMouseDragged(mouseEventHandler);
@@ -182,14 +281,25 @@ public class Main extends Application {
                 final long elapsedModelNanos = now - Main.this.lastModelUpdate;
                 final long elapsedViewNanos = now - Main.this.lastViewUpdate;
                 if (VIEW_UPDATE_INTERVAL < elapsedViewNanos) {
+                    final long frameStart = System.nanoTime();
                     ++Main.this.frame;
                     if (1_000_000_000 < now - Main.this.lastFrameReset) {
+                        final long foodCount = Main.this.world.getFoodCount();
+                        int antCount = 0;
+                        for (final AntColony colony : Main.this.colonies) {
+                            antCount += colony.getAnts().size();
+                        }
                         final float antEfficiency = (float) (
-                                Main.this.world.getFoodCount() / (float) Main.this.epochCounter / ANTS *
+                                foodCount / (float) Main.this.simulation.getEpoch() / antCount *
                                         Math.hypot(Main.this.world.getWidth(), Main.this.world.getHeight()));
+                        final double foodRate =
+                                (foodCount - Main.this.lastFoodCount) * 1.0E9 / (now - Main.this.lastFrameReset);
                         System.out.println(
                                 "frames per second: " + Main.this.frame + ", ant efficiency: " + antEfficiency + " (" +
-                                        Main.this.epochCounter + " epochs)");
+                                        Main.this.simulation.getEpoch() + " epochs), food delivered per second: " +
+                                        String.format(Locale.ROOT, "%.1f", foodRate) + ", p99 tick: " +
+                                        Metrics.MODEL_TICK.getValueAtPercentile(99.0) / 1_000_000.0 + " ms");
+                        Main.this.lastFoodCount = foodCount;
                         Main.this.frame = 0;
                         Main.this.lastFrameReset = now;
                     }
@@ -207,17 +317,17 @@ public class Main extends Application {
                     camera.setCoordinateSpaceOf(g);
 
                     //
-                    // Remap the drawing coordinates from [0.0, 1.0] to the world coordinates [0, WORLD_WIDTH]
-                    // and [0.0, WORLD_HEIGHT].
+                    // Remap the drawing coordinates from [0.0, 1.0] to the world coordinates [0, width]
+                    // and [0.0, height].
                     //
-                    g.scale(1.0 / WORLD_WIDTH, 1.0 / WORLD_HEIGHT);
-                    // Main.this.camera.adjust(g, WORLD_WIDTH, WORLD_HEIGHT);
+                    g.scale(1.0 / Main.this.world.getWidth(), 1.0 / Main.this.world.getHeight());
+                    // Main.this.camera.adjust(g, width, height);
 
                     //
                     // Draw background.
                     //
                     g.setFill(javafx.scene.paint.Color.BEIGE.darker().saturate());
-                    g.fillRect(0, 0, WORLD_WIDTH, WORLD_HEIGHT);
+                    g.fillRect(0, 0, Main.this.world.getWidth(), Main.this.world.getHeight());
 
                     //
                     // Draw world and ants.
@@ -228,13 +338,19 @@ public class Main extends Application {
                     synchronized (Main.this.world) {
                         Main.this.obstacleRenderer.render(g, Main.this.world);
                         g.restore();
-                        AntWorldRenderer.render(g, Main.this.world);
+                        for (int c = 0; c < Main.this.colonies.size(); c++) {
+                            AntWorldRenderer.render(g, Main.this.simulation.getWorld().getColonyView(c));
+                        }
+                        AntWorldRenderer.renderDeadAnts(g, Main.this.world);
                         Main.this.foodRenderer.dirty();
                         Main.this.foodRenderer.render(g, Main.this.world);
-                        AntColonyRenderer.render(g, Main.this.colony);
+                        for (final AntColony colony : Main.this.colonies) {
+                            AntColonyRenderer.render(g, colony);
+                        }
                     }
 
                     g.restore();
+                    Metrics.RENDER_FRAME.recordSince(frameStart);
                     Main.this.lastViewUpdate = now;
                 }
             }
@@ -249,11 +365,23 @@ public class Main extends Application {
         stage.setScene(scene);
         stage.setTitle("Pelles & Felix myrfarm");
         Rectangle2D screenBounds = Screen.getPrimary().getBounds();
-        float scale = Math.min((float) (screenBounds.getWidth() - 2 * MARGIN) / WORLD_WIDTH,
-                (float) (screenBounds.getHeight() - 2 * MARGIN) / WORLD_HEIGHT) * 0.5f;
-        stage.setWidth(WORLD_WIDTH * scale + 2 * MARGIN);
-        stage.setHeight(WORLD_HEIGHT * scale + 2 * MARGIN);
-        stage.setOnCloseRequest(event -> this.modelShouldBeRunning.set(false));
+        float scale = Math.min((float) (screenBounds.getWidth() - 2 * MARGIN) / this.world.getWidth(),
+                (float) (screenBounds.getHeight() - 2 * MARGIN) / this.world.getHeight()) * 0.5f;
+        stage.setWidth(this.world.getWidth() * scale + 2 * MARGIN);
+        stage.setHeight(this.world.getHeight() * scale + 2 * MARGIN);
+        stage.setOnCloseRequest(event -> {
+            this.modelShouldBeRunning.set(false);
+            if (null != this.metricsReporter) {
+                this.metricsReporter.close();
+            }
+            if (null != this.pheromoneRecorder) {
+                try {
+                    this.pheromoneRecorder.close();
+                } catch (final IOException e) {
+                    System.err.println("Could not finish the pheromone recording: " + e.getMessage());
+                }
+            }
+        });
         stage.show();
 
         this.lastViewUpdate = System.nanoTime() + 500_000_000L;
@@ -262,13 +390,16 @@ public class Main extends Application {
     }
 
     private void updateHazards() {
-        synchronized (this.colony) {
-            for (AntHazard h : this.hazards) {
-                h.update(this.world);
-
-                for (Ant a : this.colony.getAnts()) {
-                    if (a.getPosition().isWithinRadius(h.getPosition(), h.getRadius())) {
-                        h.damage(a);
+        for (AntHazard h : this.hazards) {
+            h.update(this.world);
+        }
+        for (final AntColony colony : this.colonies) {
+            synchronized (colony) {
+                for (AntHazard h : this.hazards) {
+                    for (Ant a : colony.getAnts()) {
+                        if (a.getPosition().isWithinRadius(h.getPosition(), h.getRadius())) {
+                            h.damage(a);
+                        }
                     }
                 }
             }
@@ -1,42 +1,429 @@
 package org.evensen.ants;
 
+import org.evensen.ants.metrics.DisperseEvent;
+import org.evensen.ants.metrics.FoodPickupEvent;
+import org.evensen.ants.metrics.FoodRespawnEvent;
+import org.evensen.ants.metrics.Metrics;
+
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MyAntWorld implements AntWorld {
     private final int width;
     private final int height;
-    private final Set<Position> obstacles = new HashSet<>();
-    private final List<FoodSource> foodSourcesList = new ArrayList<>();
-    private final Position homeSource;
-    private final float[][] foragingPheromones;
-    private final float[][] foodPheromones;
-    private final boolean[][] foodMatrix;
-    private final float[][] tmP;
-    private final float[][][] pheromoneMatrices;
+    private static final int FORAGING = 0;
+    private static final int FOOD = 1;
+    static final int CHANNELS = 2; // Feromonkanaler per koloni, kolonin c har kanalerna 2c + FORAGING och 2c + FOOD
+    private static final float KEEP = 0.5f;
+    private static final float EVAPORATION = 0.95f;
+    private static final float DEAD_ANT_EVAPORATION = 0.99f; // Döda myror finns kvar längre än feromonerna
+    private static final int FOOD_RADIUS = 10;
+    private static final float HOME_RADIUS = 10;
+    // Avståndsfältet mäter mellan cellcentrum och överskattar med upp till 8%, så hoppen krymps med marginal
+    private static final float SPHERE_TRACE_SCALE = 0.92f;
+    private static final float SPHERE_TRACE_MARGIN = 1.5f;
+    private static final float SPHERE_TRACE_MIN_DISTANCE = 3.0f;
+    private static final int PYRAMID_DISTANCE = 8; // Avstånd där feromonpyramidens första grövre nivå tar över
+    private static final int WEAR_TILE = 32; // Nedslitna hinder samlas per ruta och räknas om vid nästa spridning
+
+    private final ObstacleGrid obstacles;
+    private final AtomicReferenceArray<FoodSource> foodSources;
+    private final Position[] homes; // Varje kolonis hem, koloni 0 är den som världens egna metoder gäller
+    private final boolean[] homeOutside; // Hemmet ligger utanför världen, som för en remsa av en delad värld
+    private final HomeDistanceField[] homeDistances; // Avstånd och riktning hem från varje cell, runt hinder
+    private final AntWorld[] colonyViews;
+    private final ObstacleDistanceField obstacleDistances; // Avstånd till närmaste hinder, negativt inuti hinder
+    private final byte[] wear; // Slag som varje hindercell har tagit, 0 för hinder som inte har slitits
+    private final boolean[] wornTiles; // Rutor där hinder har slitits bort sedan förra spridningen
+    private final int wearTilesX;
+    private int obstacleDurability; // Slag ett hinder tål innan det försvinner, 0 om hinder aldrig slits
+    private final List<ObstacleListener> obstacleListeners = new CopyOnWriteArrayList<>();
+    private final PheromoneGrid pheromones;
+    private final PheromoneGrid deadAnts; // Täthet av döda myror, sprids som feromonerna men i ett eget rutnät
+    private PheromonePyramid pheromonePyramid; // Grövre nivåer av feromonerna för avlägsna prover, null om avstängd
+    private volatile PheromoneRecorder pheromoneRecorder; // Spelar in feromonerna efter spridning, null om avstängd
+    private final AtomicIntegerArray foodOwner; // Index + 1 för matkällan som äger cellen, 0 om cellen saknar mat
+    private final int[] foodDisc; // (dx, dy)-par för alla celler inom en matkällas radie
+    private final Konadare192RNG random; // Slumptal för nya matkällor, del av tillståndet som sparas
     private final int foodConstant = 2000;
+    private final LongAdder remainingFood = new LongAdder(); // Summan av maten i alla källor, så vi slipper summera
+    private final LongAdder deliveredFood = new LongAdder();
+    private final LongAdder[] deliveredPerColony;
+    private final LongAdder pickedFood = new LongAdder();
+    private final LongAdder[] pickedPerSource; // Upplockad mat per plats i foodSources, över alla källor där
+    private final int foodTop; // Matkällor placeras bara på raderna [foodTop, foodBottom)
+    private final int foodBottom;
 
 
 
     public MyAntWorld(int width, int height, int foodSourcesCount) {
+        this(width, height, foodSourcesCount, PheromoneStorage.FLOAT);
+    }
+
+    /**
+     * @param storage How pheromone levels are stored, {@code PheromoneStorage.HALF} halves their memory use.
+     */
+    public MyAntWorld(int width, int height, int foodSourcesCount, PheromoneStorage storage) {
+        this(width, height, foodSourcesCount, storage, SeedGenerator.nextSeed());
+    }
+
+    /**
+     * @param seed Decides where food sources are placed, the same seed gives the same world every time.
+     */
+    public MyAntWorld(int width, int height, int foodSourcesCount, PheromoneStorage storage, long seed) {
+        this(width, height, foodSourcesCount, 1, storage, seed);
+    }
+
+    /**
+     * A world shared by {@code colonies} colonies, each with its own home and pair of pheromones. The world's own
+     * {@code AntWorld} methods are those of colony 0, see {@code getColonyView} for the others.
+     */
+    public MyAntWorld(int width, int height, int foodSourcesCount, int colonies, PheromoneStorage storage, long seed) {
+        this(width, height, foodSourcesCount, PheromoneGrid.create(storage, width, height, colonies * CHANNELS), seed,
+                null, homePositions(width, height, colonies), 0, height);
+    }
+
+    /**
+     * A world whose pheromone levels are kept in {@code pheromones}, see {@code WorldFile}. It has a colony for every
+     * {@value CHANNELS} channels of {@code pheromones}.
+     */
+    MyAntWorld(int width, int height, int foodSourcesCount, PheromoneGrid pheromones, long seed) {
+        this(width, height, foodSourcesCount, pheromones, seed, null,
+                homePositions(width, height, pheromones.getChannels() / CHANNELS), 0, height);
+    }
+
+    /**
+     * A world that is a strip of a larger one, see {@code Shard}.
+     *
+     * @param home Where home is in this world's coordinates, possibly outside it. Outside the reach of the home
+     *             distances, ants are then pointed straight towards it.
+     * @param foodTop First row food sources are placed in.
+     * @param foodBottom Row after the last one food sources are placed in.
+     */
+    MyAntWorld(int width, int height, int foodSourcesCount, PheromoneStorage storage, long seed, Position home,
+               int foodTop, int foodBottom) {
+        this(width, height, foodSourcesCount, PheromoneGrid.create(storage, width, height, CHANNELS), seed, null,
+                new Position[] {home}, foodTop, foodBottom);
+    }
+
+    /**
+     * @param state State written by {@code writeState} for a world of the same size, storage and number of food
+     *              sources to continue from, or {@code null} to start afresh from {@code seed}.
+     */
+    private MyAntWorld(int width, int height, int foodSourcesCount, PheromoneGrid pheromones, long seed,
+                       ByteBuffer state, Position[] homes, int foodTop, int foodBottom) {
         this.width = width;
         this.height = height;
-        this.homeSource = new Position(width - 10, height / 2); // Hemposition
+        this.homes = homes; // Hempositioner, en per koloni
+        this.foodTop = foodTop;
+        this.foodBottom = foodBottom;
+
+        this.obstacles = new ObstacleGrid(width, height);
+        this.homeOutside = new boolean[homes.length];
+        this.homeDistances = new HomeDistanceField[homes.length];
+        this.deliveredPerColony = new LongAdder[homes.length];
+        this.colonyViews = new AntWorld[homes.length];
+        for (int c = 0; c < homes.length; c++) {
+            this.homeOutside[c] = !this.obstacles.isWithinBounds((int) homes[c].getX(), (int) homes[c].getY());
+            this.homeDistances[c] = new HomeDistanceField(this.obstacles, homes[c], HOME_RADIUS);
+            this.deliveredPerColony[c] = new LongAdder();
+            // Med flera kolonier behöver även koloni 0 en vy, världens getFoodCount räknar allas mat
+            this.colonyViews[c] = 1 == homes.length ? this : new ColonyView(c);
+        }
+        this.obstacleDistances = new ObstacleDistanceField(this.obstacles);
+        this.wear = new byte[width * height];
+        this.wearTilesX = (width + WEAR_TILE - 1) / WEAR_TILE;
+        this.wornTiles = new boolean[this.wearTilesX * ((height + WEAR_TILE - 1) / WEAR_TILE)];
+        this.pheromones = pheromones;
+        this.deadAnts = PheromoneGrid.create(pheromones.getStorage(), width, height, 1);
+        this.foodOwner = new AtomicIntegerArray(width * height);
+        this.foodDisc = discOffsets(FOOD_RADIUS - 1);
+
+        this.foodSources = new AtomicReferenceArray<>(foodSourcesCount);
+        this.pickedPerSource = new LongAdder[foodSourcesCount];
+        for (int i = 0; i < foodSourcesCount; i++) {
+            this.pickedPerSource[i] = new LongAdder();
+        }
 
-        this.foragingPheromones = new float[width][height];
-        this.foodPheromones = new float[width][height];
-        this.foodMatrix = new boolean[width][height]; // Initiera matrisen
+        if (null != state) {
+            // Allt, även de härledda avståndsfälten, läses tillbaka i stället för att räknas om
+            this.random = Konadare192RNG.readState(state);
+            readState(state);
+            return;
+        }
+        this.random = new Konadare192RNG(seed);
+        for (HomeDistanceField field : this.homeDistances) {
+            field.recomputeAll(this.obstacles);
+        }
+        this.obstacleDistances.update(this.obstacles, 0, 0, width, height);
+        for (int i = 0; i < foodSourcesCount; i++) {
+            int x = this.random.nextInt(width);
+            int y = foodTop + this.random.nextInt(foodBottom - foodTop);
+            this.foodSources.set(i, new FoodSource(new Position(x, y), FOOD_RADIUS, this.foodConstant));
+            this.remainingFood.add(this.foodConstant);
+            stampFood(i); // Uppdatera ägarmatrisen med den nya matkällan
+        }
+    }
 
-        this.tmP = new float[width][height];
-        this.pheromoneMatrices = new float[2][this.width][this.height];
+    /**
+     * @return A world continuing from {@code state}, written by {@code writeState} for a world of the given size,
+     * storage and number of food sources.
+     */
+    static MyAntWorld restore(int width, int height, int foodSourcesCount, int colonies, PheromoneStorage storage,
+                              ByteBuffer state) {
+        return new MyAntWorld(width, height, foodSourcesCount,
+                PheromoneGrid.create(storage, width, height, colonies * CHANNELS), 0, state,
+                homePositions(width, height, colonies), 0, height);
+    }
 
-        Random random = new Random();
-        for (int i = 0; i < foodSourcesCount; i++) {
-            int x = random.nextInt(width);
-            int y = random.nextInt(height);
-            FoodSource foodSource = new FoodSource(new Position(x, y), 10, (this.foodConstant)); // Radie = 10, Mat = 50
-            this.foodSourcesList.add(foodSource);
-            updateFoodMatrix(foodSource, true); // Uppdatera matrisen med den nya matkällan
+    /**
+     * Spreads the homes of {@code colonies} colonies evenly around an ellipse inside the world, colony 0 in the
+     * middle of the right edge where a single colony has its home.
+     */
+    private static Position[] homePositions(int width, int height, int colonies) {
+        if (1 > colonies) {
+            throw new IllegalArgumentException("A world needs at least one colony, got " + colonies);
+        }
+        Position[] homes = new Position[colonies];
+        homes[0] = new Position(width - 10, height / 2);
+        for (int c = 1; c < colonies; c++) {
+            float angle = c * GraphicsMath.TAU / colonies;
+            homes[c] = new Position(Math.round(width - 10 - (width / 2f - 10) * (1 - (float) Math.cos(angle))),
+                    height / 2 + Math.round((height / 2f - 10) * (float) Math.sin(angle)));
+        }
+        return homes;
+    }
+
+    /**
+     * @return How many colonies share this world.
+     */
+    public int getColonies() {
+        return this.homes.length;
+    }
+
+    /**
+     * @return Where the home of {@code colony} is.
+     */
+    public Position getHome(int colony) {
+        return this.homes[colony];
+    }
+
+    /**
+     * @return Where the ants of {@code colony} start, just outside the middle of the world from its home.
+     */
+    public Position getNest(int colony) {
+        float angle = colony * GraphicsMath.TAU / this.homes.length;
+        return this.homes[colony].offset(5 * (float) Math.cos(angle), 5 * (float) Math.sin(angle));
+    }
+
+    /**
+     * @return The world as seen by the ants of {@code colony}: its own home and pheromones, and everything else
+     * shared with the other colonies. The only colony of a world sees the world itself.
+     */
+    public AntWorld getColonyView(int colony) {
+        return this.colonyViews[colony];
+    }
+
+    /**
+     * @return Whether {@code p} is within the home of any colony.
+     */
+    public boolean isAnyHome(Position p) {
+        for (HomeDistanceField field : this.homeDistances) {
+            if (field.isHome((int) p.getX(), (int) p.getY())) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * @return How much food the ants of {@code colony} have delivered.
+     */
+    public long getFoodCount(int colony) {
+        return this.deliveredPerColony[colony].sum();
+    }
+
+    ObstacleGrid getObstacleGrid() {
+        return this.obstacles;
+    }
+
+    PheromoneStorage getPheromoneStorage() {
+        return this.pheromones.getStorage();
+    }
+
+    /**
+     * Sets how many hits from ants an obstacle cell takes before it is worn away, at most 255, or {@code 0} for
+     * obstacles that never wear. Cells already hit keep their wear.
+     */
+    public void setObstacleDurability(int hits) {
+        if (hits < 0 || 255 < hits) {
+            throw new IllegalArgumentException("Obstacle durability must be within [0, 255], got " + hits);
+        }
+        this.obstacleDurability = hits;
+    }
+
+    public int getObstacleDurability() {
+        return this.obstacleDurability;
+    }
+
+    boolean isPheromonePyramidEnabled() {
+        return null != this.pheromonePyramid;
+    }
+
+    /**
+     * @return The number of bytes {@code writeState} puts.
+     */
+    long getStateBytes() {
+        return Konadare192RNG.STATE_BYTES + (2L + this.homes.length) * Long.BYTES +
+                (long) this.foodSources.length() * (2 * Float.BYTES + Integer.BYTES + Long.BYTES +
+                        Long.BYTES * getDiscWords()) +
+                this.obstacles.getBytes() + this.obstacleDistances.getBytes() +
+                this.homes.length * this.homeDistances[0].getBytes() + this.pheromones.getLevelBytes() +
+                this.deadAnts.getLevelBytes() + this.wear.length + this.wornTiles.length;
+    }
+
+    /**
+     * Puts everything needed to continue the simulation exactly, {@code getStateBytes()} bytes, at the position of
+     * {@code out} and advances it. Must not run concurrently with anything that changes the world.
+     */
+    void writeState(ByteBuffer out) {
+        for (HomeDistanceField field : this.homeDistances) {
+            field.update(this.obstacles); // Köade hinderändringar skrivs inte, så de tillämpas först
+        }
+        this.random.writeState(out);
+        out.putLong(this.deliveredFood.sum());
+        out.putLong(this.pickedFood.sum());
+        for (LongAdder delivered : this.deliveredPerColony) {
+            out.putLong(delivered.sum());
+        }
+        for (int i = 0; i < this.foodSources.length(); i++) {
+            FoodSource foodSource = this.foodSources.get(i);
+            out.putFloat(foodSource.getPosition().getX());
+            out.putFloat(foodSource.getPosition().getY());
+            out.putInt(foodSource.getFoodAmount());
+            out.putLong(this.pickedPerSource[i].sum());
+            writeOwnedCells(out, i, foodSource);
+        }
+        this.obstacles.write(out);
+        this.obstacleDistances.write(out);
+        for (HomeDistanceField field : this.homeDistances) {
+            field.write(out);
+        }
+        this.pheromones.write(out);
+        this.deadAnts.write(out);
+        out.put(this.wear);
+        for (boolean worn : this.wornTiles) {
+            out.put((byte) (worn ? 1 : 0)); // Omräkningen väntar till nästa spridning även efter återställning
+        }
+    }
+
+    private void readState(ByteBuffer in) {
+        this.deliveredFood.add(in.getLong());
+        this.pickedFood.add(in.getLong());
+        for (LongAdder delivered : this.deliveredPerColony) {
+            delivered.add(in.getLong());
+        }
+        for (int i = 0; i < this.foodSources.length(); i++) {
+            Position position = new Position(in.getFloat(), in.getFloat());
+            int amount = in.getInt();
+            this.foodSources.set(i, new FoodSource(position, FOOD_RADIUS, amount));
+            this.remainingFood.add(amount);
+            this.pickedPerSource[i].add(in.getLong());
+            readOwnedCells(in, i, position);
+        }
+        this.obstacles.read(in);
+        this.obstacleDistances.read(in);
+        for (HomeDistanceField field : this.homeDistances) {
+            field.read(in);
+        }
+        this.pheromones.read(in);
+        this.deadAnts.read(in);
+        in.get(this.wear);
+        for (int t = 0; t < this.wornTiles.length; t++) {
+            this.wornTiles[t] = 0 != in.get();
+        }
+    }
+
+    /**
+     * @return A checksum of everything in the world that changes as the simulation runs, equal for equal worlds.
+     */
+    long getStateChecksum() {
+        long sum = (this.pheromones.checksum() * 31 + this.deadAnts.checksum()) * 31 + this.obstacles.checksum();
+        sum = sum * 31 + Arrays.hashCode(this.wear);
+        for (int i = 0; i < this.foodSources.length(); i++) {
+            FoodSource foodSource = this.foodSources.get(i);
+            sum = sum * 31 + Float.floatToRawIntBits(foodSource.getPosition().getX());
+            sum = sum * 31 + Float.floatToRawIntBits(foodSource.getPosition().getY());
+            sum = sum * 31 + foodSource.getFoodAmount();
+        }
+        return Hasher.hash(sum, this.deliveredFood.sum(), this.pickedFood.sum());
+    }
+
+    private int getDiscWords() {
+        return (this.foodDisc.length / 2 + 63) / 64;
+    }
+
+    /**
+     * Puts a bit per cell in the disc of the food source in {@code slot}, set if the source owns the cell. Where
+     * sources overlap, ownership depends on the order they were stamped in, so it is saved rather than stamped anew.
+     */
+    private void writeOwnedCells(ByteBuffer out, int slot, FoodSource foodSource) {
+        int x = (int) foodSource.getPosition().getX();
+        int y = (int) foodSource.getPosition().getY();
+        long word = 0;
+        for (int i = 0; i < this.foodDisc.length; i += 2) {
+            int nx = x + this.foodDisc[i];
+            int ny = y + this.foodDisc[i + 1];
+            int bit = i / 2;
+            if (isWithinBounds(nx, ny) && slot + 1 == this.foodOwner.get(ny * this.width + nx)) {
+                word |= 1L << bit;
+            }
+            if (63 == (bit & 63) || i + 2 == this.foodDisc.length) {
+                out.putLong(word);
+                word = 0;
+            }
+        }
+    }
+
+    private void readOwnedCells(ByteBuffer in, int slot, Position position) {
+        int x = (int) position.getX();
+        int y = (int) position.getY();
+        long word = 0;
+        for (int i = 0; i < this.foodDisc.length; i += 2) {
+            int bit = i / 2;
+            if (0 == (bit & 63)) {
+                word = in.getLong();
+            }
+            if (0 != (word & (1L << bit))) {
+                this.foodOwner.set((y + this.foodDisc[i + 1]) * this.width + x + this.foodDisc[i], slot + 1);
+            }
+        }
+    }
+
+    private static int[] discOffsets(int radius) {
+        int count = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if (dx * dx + dy * dy <= radius * radius) {
+                    count++;
+                }
+            }
+        }
+        int[] offsets = new int[2 * count];
+        int i = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if (dx * dx + dy * dy <= radius * radius) {
+                    offsets[i++] = dx;
+                    offsets[i++] = dy;
+                }
+            }
+        }
+        return offsets;
     }
 
     @Override
@@ -51,7 +438,7 @@ public class MyAntWorld implements AntWorld {
 
     @Override
     public int getFoodSources() {
-        return this.foodSourcesList.size();
+        return this.foodSources.length();
     }
 
     @Override
@@ -59,70 +446,123 @@ public class MyAntWorld implements AntWorld {
         int x = (int) p.getX();
         int y = (int) p.getY();
         if (isWithinBounds(x, y)) {
-            return this.foodMatrix[x][y]; // Kontrollera direkt i matrisen
+            int owner = this.foodOwner.get(y * this.width + x); // Kontrollera direkt i matrisen
+            return 0 != owner && this.foodSources.get(owner - 1).containsFood(p);
         }
         return false;
     }
 
     @Override
     public void pickUpFood(Position p) {
-        List<FoodSource> copyList;
-
-        synchronized (this.foodSourcesList) {
-            copyList = new ArrayList<>(this.foodSourcesList); // Skapa en kopia för iteration
+        int x = (int) p.getX();
+        int y = (int) p.getY();
+        if (!isWithinBounds(x, y)) {
+            return;
         }
-
-        for (FoodSource foodSource : copyList) {
-            if (foodSource.containsFood(p)) {
-                boolean foodTaken = foodSource.takeFood();
-
-                if (!foodTaken) { // Om matkällan är tom
-                    synchronized (this.foodSourcesList) {
-                        this.foodSourcesList.remove(foodSource); // Ta bort från listan
-                    }
-                    updateFoodMatrix(foodSource, false); // Uppdatera matrisen
-                    addNewFoodSource(); // Skapa ny matkällan
-                } else {
-                    updateFoodMatrix(foodSource, true); // Uppdatera matrisen
-                }
-                return; // Avsluta direkt när mat plockats
-            }
+        int owner = this.foodOwner.get(y * this.width + x); // Slå upp matkällan direkt, ingen sökning
+        if (0 == owner) {
+            return;
+        }
+        int slot = owner - 1;
+        FoodSource foodSource = this.foodSources.get(slot);
+        if (!foodSource.containsFood(p)) {
+            return; // Källan har hunnit bytas ut eller tömmas av en annan tråd
+        }
+        int foodLeft = foodSource.tryTakeFood();
+        if (foodLeft < 0) {
+            return; // En annan tråd tog sista enheten
+        }
+        this.remainingFood.decrement();
+        this.pickedFood.increment();
+        this.pickedPerSource[slot].increment();
+        Metrics.FOOD_PICKED.increment();
+
+        final FoodPickupEvent event = new FoodPickupEvent();
+        if (event.shouldCommit()) {
+            event.x = x;
+            event.y = y;
+            event.foodLeft = foodLeft;
+            event.depleted = 0 == foodLeft;
+            event.commit();
         }
 
+        if (0 == foodLeft) { // Bara tråden som tog sista enheten byter ut källan
+            Metrics.FOOD_SOURCES_DEPLETED.increment();
+            clearFood(slot, foodSource); // Uppdatera matrisen, bara när källan tar slut
+            addNewFoodSource(slot); // Skapa ny matkälla på samma plats i arrayen
+        }
     }
 
+    /**
+     * @return How much food the ants of all colonies have delivered together.
+     */
     @Override
     public long getFoodCount() {
-        long totalFood = 0;
-        for (FoodSource foodSource : this.foodSourcesList) {
-            totalFood += foodSource.getFoodAmount();
-        }
-        return totalFood;
+        return this.deliveredFood.sum();
+    }
+
+    /**
+     * @return How much food is left in all food sources together.
+     */
+    public long getRemainingFood() {
+        return this.remainingFood.sum();
+    }
+
+    /**
+     * @return How much food has been picked up in total.
+     */
+    public long getPickedFood() {
+        return this.pickedFood.sum();
+    }
+
+    /**
+     * @return How much food has been picked up from food source {@code source}, counting every source that has
+     * been in that place since the world was created.
+     */
+    public long getPickedFood(int source) {
+        return this.pickedPerSource[source].sum();
     }
 
     @Override
     public boolean isHome(Position p) {
-        int homeRadius = 10;
-        return this.homeSource.isWithinRadius(p, homeRadius);
+        return isHome(0, p);
+    }
+
+    private boolean isHome(int colony, Position p) {
+        return this.homeDistances[colony].isHome((int) p.getX(), (int) p.getY());
     }
 
     @Override
-    public void dropForagingPheromone(Position p, float amount) {
-        int x = (int) p.getX();
-        int y = (int) p.getY();
-        if (isWithinBounds(x, y)) {
-            this.foragingPheromones[x][y] = Math.min(1.0f, this.foragingPheromones[x][y] + amount);
-            //System.out.println("foraging fermoner :" + getForagingStrength(p));
+    public float getHomeDirection(Position p) {
+        return getHomeDirection(0, p);
+    }
+
+    private float getHomeDirection(int colony, Position p) {
+        float direction = this.homeDistances[colony].getDirection(this.obstacles, p);
+        if (0 > direction && this.homeOutside[colony]) {
+            // Hemmet ligger i en annan remsa, gå rakt mot det tills avståndsfältet tar över
+            Position home = this.homes[colony];
+            float angle = (float) Math.atan2(home.getY() - p.getY(), home.getX() - p.getX());
+            return angle < 0 ? angle + GraphicsMath.TAU : angle;
         }
+        return direction;
+    }
+
+    @Override
+    public void dropForagingPheromone(Position p, float amount) {
+        dropPheromone(FORAGING, p, amount);
     }
 
     @Override
     public void dropFoodPheromone(Position p, float amount) {
+        dropPheromone(FOOD, p, amount);
+    }
+
+    private void dropPheromone(int channel, Position p, float amount) {
         int x = (int) p.getX();
         int y = (int) p.getY();
         if (isWithinBounds(x, y)) {
-            this.foodPheromones[x][y] = Math.min(1.0f, this.foodPheromones[x][y] + amount);
-            //System.out.println("foraging food :" + getFoodStrength(p));
+            this.pheromones.add(x, y, channel, amount);
         }
     }
 
@@ -132,197 +572,584 @@ public class MyAntWorld implements AntWorld {
 
     @Override
     public float getForagingStrength(Position p) {
-        int x = (int) p.getX();
-        int y = (int) p.getY();
-        if (isWithinBounds(x, y)) {
-            return this.foragingPheromones[x][y];
-        }
-        return 0;
+        return getStrength(FORAGING, p);
     }
 
     @Override
     public float getFoodStrength(Position p) {
+        return getStrength(FOOD, p);
+    }
+
+    private float getStrength(int channel, Position p) {
         int x = (int) p.getX();
         int y = (int) p.getY();
         if (isWithinBounds(x, y)) {
-            return this.foodPheromones[x][y];
+            return this.pheromones.get(x, y, channel);
         }
         return 0;
+    }
 
+
+    /**
+     * @return The number of bytes {@code writePheromoneRows} puts for {@code rows} rows.
+     */
+    long getPheromoneRowBytes(int rows) {
+        return this.pheromones.getRowBytes(rows);
     }
 
+    /**
+     * Puts the pheromone levels of rows {@code [y0, y1)} at the position of {@code out} and advances it.
+     */
+    void writePheromoneRows(ByteBuffer out, int y0, int y1) {
+        this.pheromones.writeRows(out, y0, y1);
+    }
+
+    /**
+     * Replaces the pheromone levels of rows {@code [y0, y1)} with ones put by {@code writePheromoneRows}.
+     */
+    void readPheromoneRows(ByteBuffer in, int y0, int y1) {
+        this.pheromones.readRows(in, y0, y1);
+    }
+
+    /**
+     * Turns the pheromone pyramid on or off. With it on, every dispersal also builds coarser levels of the
+     * pheromones, and {@code sampleAlongRay} reads distant points from them.
+     */
+    public void setPheromonePyramid(boolean enabled) {
+        if (enabled && null == this.pheromonePyramid) {
+            this.pheromonePyramid = new PheromonePyramid(this.width, this.height, this.pheromones.getChannels());
+            this.pheromonePyramid.build(this.pheromones);
+        } else if (!enabled) {
+            this.pheromonePyramid = null;
+        }
+    }
 
     @Override
-    public void dispersePheromones() {
-        float k = 0.5f;
-        float f = 0.95f;
-        // 1 Iterera över feromonarray
-        for (int t = 0; t < this.pheromoneMatrices.length; t++) {
-            // 2 Temporär feromonmatris
-            float[][] tmpP = new float[this.width][this.height];
-
-            ///3 Iterera över världens positioner
-            for (int x = 0; x < this.width; x++) {
-                for (int y = 0; y < this.height; y++) {
-                    // 4 Initiera NPL(summan av neighbors' pheromone levels)
-                    float npl = 0.0f;
-
-                    //5 Skapa ett positionsobjekt för nuvarande koordinater (x, y)
-                    Position p = new Position(x, y);
-
-                    // 6 Kolla efter obstacle
-                    if (!isObstacle(p)) {
-                        // 7 Iterera genom alla 8 grannceller, och repetera kantvärden
-                        for (int dx = -1; dx <= 1; dx++) {
-                            for (int dy = -1; dy <= 1; dy++) {
-                                if (dx == 0 && dy == 0) {
-                                    continue; // Skippa center av 3x3 grid
-                                }
-
-                                int nx = x + dx;
-                                int ny = y + dy;
-
-                                // Hantera kantfall, om utanför världen repetera kantvärdet
-                                if (nx < 0) nx = 0;
-                                if (ny < 0) ny = 0;
-                                if (nx >= this.width) nx = this.width - 1;
-                                if (ny >= this.height) ny = this.height - 1;
-
-                                // 8 Lägg till feromonnivån på grannposition npl
-                                npl += this.pheromoneMatrices[t][nx][ny];
-
-                            }
-                        }
-
-                        // 9 Updatera npl med keep-konstanten k=0.5 och feromonnivån på nuvarande position
-                        npl = (float) (((1 - k) * npl) / 8.0f + (k * this.pheromoneMatrices[t][x][y]));
-
-
-                        // 10 Lagra den uppdaterade feromonnivån i tmP
-                        tmpP[x][y] = npl * f;
-                    }
-                }
-            }
+    public int sampleAlongRay(Position origin, float dirX, float dirY, float start, float increment, int count,
+                              float[] foraging, float[] food) {
+        return sampleAlongRay(0, origin, dirX, dirY, start, increment, count, foraging, food);
+    }
 
-            //11 Kopiera tmPs innehåll och lägg in i pheromonematrices
-            for (int x = 0; x < this.width; x++) {
-                for (int y = 0; y < this.height; y++) {
-                    this.pheromoneMatrices[t][x][y] = tmpP[x][y];
+    private int sampleAlongRay(int colony, Position origin, float dirX, float dirY, float start, float increment,
+                               int count, float[] foraging, float[] food) {
+        int foragingChannel = colony * CHANNELS + FORAGING;
+        int foodChannel = colony * CHANNELS + FOOD;
+        PheromonePyramid pyramid = this.pheromonePyramid;
+        float length = (float) Math.sqrt(dirX * dirX + dirY * dirY);
+        for (int i = 0; i < count; i++) {
+            float r = start + i * increment;
+            int x = (int) (origin.getX() + dirX * r);
+            int y = (int) (origin.getY() + dirY * r);
+            if (this.obstacles.isObstacle(x, y)) {
+                return i;
+            }
+            // Nivå 0 närmast, sedan en nivå grövre för varje fördubbling av avståndet från PYRAMID_DISTANCE
+            int distance = (int) (r * length) / PYRAMID_DISTANCE;
+            int level = null == pyramid || 0 == distance ? 0 :
+                    Math.min(PheromonePyramid.LEVELS, 32 - Integer.numberOfLeadingZeros(distance));
+            if (0 == level) {
+                if (null != foraging) {
+                    foraging[i] = this.pheromones.get(x, y, foragingChannel);
+                }
+                if (null != food) {
+                    food[i] = this.pheromones.get(x, y, foodChannel);
+                }
+            } else {
+                if (null != foraging) {
+                    foraging[i] = pyramid.get(level, x, y, foragingChannel);
+                }
+                if (null != food) {
+                    food[i] = pyramid.get(level, x, y, foodChannel);
                 }
             }
         }
+        return count;
+    }
 
-        for (FoodSource foodSource : this.foodSourcesList) {
+    @Override
+    public void dispersePheromones() {
+        final DisperseEvent event = new DisperseEvent();
+        event.begin();
+        updateWornObstacles();
+        for (HomeDistanceField field : this.homeDistances) {
+            field.update(this.obstacles); // Räkna om vägen hem där hinder har ändrats
+        }
+        // Diffusion och förångning av alla kolonners feromoner i ett svep, bara där det finns doft
+        this.pheromones.disperse(this.obstacles, KEEP, EVAPORATION);
+        this.deadAnts.disperse(this.obstacles, KEEP, DEAD_ANT_EVAPORATION); // Går fort där inga myror har dött
 
+        dropFoodSourcePheromones();
+        if (null != this.pheromonePyramid) {
+            this.pheromonePyramid.build(this.pheromones);
+        }
+        recordPheromones();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = this.width;
+            event.height = this.height;
+            event.channels = this.pheromones.getChannels();
+            event.foodSources = this.foodSources.length();
+            event.commit();
+        }
+    }
+
+    private void dropFoodSourcePheromones() {
+        for (int i = 0; i < this.foodSources.length(); i++) {
+            FoodSource foodSource = this.foodSources.get(i);
             int mx = (int) foodSource.getPosition().getX();
             int my = (int) foodSource.getPosition().getY();
-
-            this.dropFoodPheromone(new Position(mx, my), 1);
-
-            //matkällans radie radius-1
-
-            //   System.out.println("Fermon droppad på matkälla" + (new Position(mx,my)));
-            //   System.out.println("Antal mat på" + this.getFoodStrength(new Position(mx,my)));
-        }
-        for (int x = 0; x < this.width; x++) {
-            for (int y = 0; y < this.height; y++) {
-                this.foragingPheromones[x][y] *= 0.95f; // Förångning av letarferomon
-                this.foodPheromones[x][y] *= 0.95f;     // Förångning av matferomon
+            if (isWithinBounds(mx, my)) {
+                for (int c = 0; c < this.homes.length; c++) {
+                    this.pheromones.add(mx, my, c * CHANNELS + FOOD, 1); // Alla kolonier känner doften av maten
+                }
             }
         }
-
     }
 
 
 
     public void selfContainedDisperse(){
-        for (FoodSource foodSource : this.foodSourcesList) {
+        updateWornObstacles();
+        for (HomeDistanceField field : this.homeDistances) {
+            field.update(this.obstacles);
+        }
+        dropFoodSourcePheromones();
+        this.pheromones.evaporate(EVAPORATION); // Förångning av båda feromontyperna
+        this.deadAnts.evaporate(DEAD_ANT_EVAPORATION);
+        if (null != this.pheromonePyramid) {
+            this.pheromonePyramid.build(this.pheromones);
+        }
+        recordPheromones();
+    }
 
-            int mx = (int) foodSource.getPosition().getX();
-            int my = (int) foodSource.getPosition().getY();
+    /**
+     * Hands the pheromone levels to {@code recorder} after every dispersal, or stops recording if {@code null}. The
+     * recorder is not closed by the world.
+     */
+    public void setPheromoneRecorder(PheromoneRecorder recorder) {
+        this.pheromoneRecorder = recorder;
+    }
 
-            this.dropFoodPheromone(new Position(mx, my), 1);
+    private void recordPheromones() {
+        PheromoneRecorder recorder = this.pheromoneRecorder;
+        if (null != recorder) {
+            recorder.record(this.pheromones);
+        }
+    }
+    @Override
+    public boolean isObstacle(Position p) {
+        int x = (int) p.getX();
+        int y = (int) p.getY();
+        return this.obstacles.isObstacle(x, y);
+    }
 
-            //matkällans radie radius-1
+    @Override
+    public float getObstacleDistance(Position p) {
+        return this.obstacleDistances.get((int) p.getX(), (int) p.getY());
+    }
 
-            //   System.out.println("Fermon droppad på matkälla" + (new Position(mx,my)));
-            //   System.out.println("Antal mat på" + this.getFoodStrength(new Position(mx,my)));
-        }
-        for (int x = 0; x < this.width; x++) {
-            for (int y = 0; y < this.height; y++) {
-                this.foragingPheromones[x][y] *= 0.95f; // Förångning av letarferomon
-                this.foodPheromones[x][y] *= 0.95f;     // Förångning av matferomon
+    @Override
+    public float raycast(Position origin, float direction, float minDistance, float maxDistance) {
+        float dx = (float) Math.cos(direction);
+        float dy = (float) Math.sin(direction);
+        float t = minDistance;
+        while (t <= maxDistance) {
+            float x = origin.getX() + dx * t;
+            float y = origin.getY() + dy * t;
+            int cx = (int) Math.floor(x);
+            int cy = (int) Math.floor(y);
+            if (this.obstacles.isObstacle(cx, cy)) {
+                return t;
+            }
+            float clearance = this.obstacleDistances.get(cx, cy);
+            if (clearance >= SPHERE_TRACE_MIN_DISTANCE) {
+                // Långt till närmaste hinder, hoppa så långt det säkert går
+                t += clearance * SPHERE_TRACE_SCALE - SPHERE_TRACE_MARGIN;
+            } else {
+                // Nära ett hinder, gå till nästa cell som strålen passerar (DDA)
+                float exitX = dx > 0 ? (cx + 1 - x) / dx : dx < 0 ? (cx - x) / dx : Float.POSITIVE_INFINITY;
+                float exitY = dy > 0 ? (cy + 1 - y) / dy : dy < 0 ? (cy - y) / dy : Float.POSITIVE_INFINITY;
+                t += Math.min(exitX, exitY) + 1.0E-4f;
             }
         }
+        return Float.POSITIVE_INFINITY;
     }
+
     @Override
-    public boolean isObstacle(Position p) {
+    public void setObstacle(Position p, boolean add) {
         int x = (int) p.getX();
         int y = (int) p.getY();
-        return x < 0 || y < 0 || x >= this.width || y >= this.height || this.obstacles.contains(p);
+        if (this.obstacles.set(x, y, add)) {
+            this.wear[y * this.width + x] = 0;
+            obstacleChanged(x, y);
+            this.obstacleDistances.update(this.obstacles, x, y, x + 1, y + 1);
+            for (ObstacleListener listener : this.obstacleListeners) {
+                listener.obstaclesChanged(x, y, 1, 1);
+            }
+        }
     }
 
     @Override
-    public void setObstacle(Position p, boolean add) {
-        if (add) {
-            this.obstacles.add(p);
-        } else {
-            this.obstacles.remove(p);
+    public void setObstacles(Region region, boolean add) {
+        // Hela penseldraget på en gång, lyssnarna får bara veta rektangeln som faktiskt ändrades
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int y0 = Math.max(0, region.getY());
+        int y1 = Math.min(this.height, region.getY() + region.getHeight());
+        int x0 = Math.max(0, region.getX());
+        int x1 = Math.min(this.width, region.getX() + region.getWidth());
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (region.contains(x, y) && this.obstacles.set(x, y, add)) {
+                    this.wear[y * this.width + x] = 0;
+                    obstacleChanged(x, y);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (minX <= maxX) {
+            this.obstacleDistances.update(this.obstacles, minX, minY, maxX + 1, maxY + 1);
+            for (ObstacleListener listener : this.obstacleListeners) {
+                listener.obstaclesChanged(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            }
+        }
+    }
+
+    private void obstacleChanged(int x, int y) {
+        for (HomeDistanceField field : this.homeDistances) {
+            field.obstacleChanged(x, y);
         }
     }
 
+    @Override
+    public boolean addObstacleListener(ObstacleListener listener) {
+        return this.obstacleListeners.add(listener);
+    }
+
+    @Override
+    public void removeObstacleListener(ObstacleListener listener) {
+        this.obstacleListeners.remove(listener);
+    }
+
+    /**
+     * Wears the obstacle at {@code p} down by {@code strength} hits, at least one, if obstacles wear. An obstacle
+     * worn away is gone at once, but obstacle distances and obstacle listeners only hear of it at the next dispersal,
+     * once for every run of {@value WEAR_TILE} x {@value WEAR_TILE} cell tiles with worn cells. The edge of the world
+     * never wears.
+     */
     @Override
     public void hitObstacle(Position p, float strength) {
-        // Ej implementerat
+        int x = (int) p.getX();
+        int y = (int) p.getY();
+        if (0 == this.obstacleDurability || !isWithinBounds(x, y) || !this.obstacles.isObstacle(x, y)) {
+            return;
+        }
+        int i = y * this.width + x;
+        int worn = (this.wear[i] & 0xFF) + Math.max(1, Math.round(strength));
+        if (worn < this.obstacleDurability) {
+            this.wear[i] = (byte) worn;
+            return;
+        }
+        this.wear[i] = 0;
+        this.obstacles.set(x, y, false);
+        obstacleChanged(x, y); // Köas, hemfälten räknas om vid spridningen
+        this.wornTiles[(y / WEAR_TILE) * this.wearTilesX + x / WEAR_TILE] = true;
+        Metrics.OBSTACLES_WORN.increment();
+    }
+
+    /**
+     * Updates the obstacle distances and tells the obstacle listeners about obstacles worn away since the last call,
+     * one rectangle per run of neighbouring tiles in a row of tiles. Distances that haven't caught up yet are too
+     * small, never too large, so ants stay clear of walls that are gone rather than walk into ones that aren't.
+     */
+    private void updateWornObstacles() {
+        for (int row = 0; row < this.wornTiles.length; row += this.wearTilesX) {
+            int tx = 0;
+            while (tx < this.wearTilesX) {
+                if (!this.wornTiles[row + tx]) {
+                    tx++;
+                    continue;
+                }
+                int first = tx;
+                while (tx < this.wearTilesX && this.wornTiles[row + tx]) {
+                    this.wornTiles[row + tx] = false;
+                    tx++;
+                }
+                int x0 = first * WEAR_TILE;
+                int y0 = row / this.wearTilesX * WEAR_TILE;
+                int x1 = Math.min(this.width, tx * WEAR_TILE);
+                int y1 = Math.min(this.height, y0 + WEAR_TILE);
+                this.obstacleDistances.update(this.obstacles, x0, y0, x1, y1);
+                for (ObstacleListener listener : this.obstacleListeners) {
+                    listener.obstaclesChanged(x0, y0, x1 - x0, y1 - y0);
+                }
+            }
+        }
     }
 
     @Override
     public void dropFood(Position p) {
-        // Ej implementerat
+        dropFood(0);
+    }
+
+    private void dropFood(int colony) {
+        this.deliveredFood.increment();
+        this.deliveredPerColony[colony].increment();
+        Metrics.FOOD_DELIVERED.increment();
     }
 
     @Override
     public float getDeadAntCount(Position p) {
-        return 0; // Ej implementerat
+        int x = (int) p.getX();
+        int y = (int) p.getY();
+        if (isWithinBounds(x, y)) {
+            return this.deadAnts.get(x, y, 0);
+        }
+        return 0;
+    }
+
+    @Override
+    public void dropDeadAnt(Position p) {
+        int x = (int) p.getX();
+        int y = (int) p.getY();
+        if (isWithinBounds(x, y)) {
+            this.deadAnts.add(x, y, 0, 1);
+        }
     }
 
-    private void addNewFoodSource() {
-        Random random = new Random();
+    /**
+     * Moves the food sources to {@code positions}, one source per position, refilling them. Sources beyond the
+     * number of positions stay where they are.
+     */
+    public void placeFoodSources(List<Position> positions) {
+        for (int slot = 0; slot < Math.min(positions.size(), this.foodSources.length()); slot++) {
+            FoodSource old = this.foodSources.get(slot);
+            clearFood(slot, old);
+            this.remainingFood.add(-old.getFoodAmount());
+            this.foodSources.set(slot, new FoodSource(positions.get(slot), FOOD_RADIUS, this.foodConstant));
+            this.remainingFood.add(this.foodConstant);
+            stampFood(slot);
+        }
+    }
+
+    private void addNewFoodSource(int slot) {
+        final FoodRespawnEvent event = new FoodRespawnEvent();
+        event.begin();
         Position newPosition;
         do {
-            int x = random.nextInt(this.width);
-            int y = random.nextInt(this.height);
+            int x = this.random.nextInt(this.width);
+            int y = this.foodTop + this.random.nextInt(this.foodBottom - this.foodTop);
             newPosition = new Position(x, y);
         } while (isObstacle(newPosition)); // Kontrollera att platsen inte är ett hinder
 
-        FoodSource newFoodSource = new FoodSource(newPosition, 10, this.foodConstant); // Radie = 10, Mat = 50
-        this.foodSourcesList.add(newFoodSource);
-        updateFoodMatrix(newFoodSource, true); // Uppdatera matrisen
-
-        // Ta bort koordinaterna på foodsource, och lägg nya koordinaten på newfoodsource.
-
-
+        FoodSource newFoodSource = new FoodSource(newPosition, FOOD_RADIUS, this.foodConstant);
+        this.remainingFood.add(this.foodConstant);
+        this.foodSources.set(slot, newFoodSource); // Publicera källan innan cellerna pekar på den
+        stampFood(slot); // Uppdatera matrisen
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.x = (int) newPosition.getX();
+            event.y = (int) newPosition.getY();
+            event.foodAmount = newFoodSource.getFoodAmount();
+            event.foodSources = this.foodSources.length();
+            event.commit();
+        }
     }
 
-    private void updateFoodMatrix(FoodSource foodSource, boolean hasFood) {
-        int x = (int) foodSource.getPosition().getX();
-        int y = (int) foodSource.getPosition().getY();
-        int radius = foodSource.getRadius();
-
-        for (int dx = -radius; dx <= radius; dx++) {
-            for (int dy = -radius; dy <= radius; dy++) {
-                int nx = x + dx;
-                int ny = y + dy;
-                if (isWithinBounds(nx, ny) && Math.sqrt(dx * dx + dy * dy) <= radius-1) {
-                    this.foodMatrix[nx][ny] = hasFood;
-                }
+    /**
+     * Marks every free cell within the radius of the food source in {@code slot} as owned by it.
+     * Cells already owned by an overlapping source are left alone. Cells are claimed with compare-and-set, so
+     * sources in different slots can be stamped and cleared concurrently.
+     */
+    private void stampFood(int slot) {
+        Position position = this.foodSources.get(slot).getPosition();
+        int x = (int) position.getX();
+        int y = (int) position.getY();
+        for (int i = 0; i < this.foodDisc.length; i += 2) {
+            int nx = x + this.foodDisc[i];
+            int ny = y + this.foodDisc[i + 1];
+            if (isWithinBounds(nx, ny)) {
+                this.foodOwner.compareAndSet(ny * this.width + nx, 0, slot + 1);
+            }
+        }
+    }
 
+    /**
+     * Releases the cells owned by the depleted {@code foodSource} in {@code slot} and hands them over to any other
+     * source that overlaps it.
+     */
+    private void clearFood(int slot, FoodSource foodSource) {
+        Position position = foodSource.getPosition();
+        int x = (int) position.getX();
+        int y = (int) position.getY();
+        for (int i = 0; i < this.foodDisc.length; i += 2) {
+            int nx = x + this.foodDisc[i];
+            int ny = y + this.foodDisc[i + 1];
+            if (isWithinBounds(nx, ny)) {
+                this.foodOwner.compareAndSet(ny * this.width + nx, slot + 1, 0);
+            }
+        }
+        for (int other = 0; other < this.foodSources.length(); other++) {
+            FoodSource otherSource = this.foodSources.get(other);
+            if (other != slot && 0 < otherSource.getFoodAmount() &&
+                    otherSource.getPosition().isWithinRadius(position, 2 * FOOD_RADIUS)) {
+                stampFood(other);
             }
         }
     }
 
     private boolean isWithinBounds(int x, int y) {
-        return x >= 0 && x < this.width && y >= 0 && y < this.height;
+        return this.obstacles.isWithinBounds(x, y);
+    }
+
+    /**
+     * The world as seen by one of several colonies: its own home, pheromone channels and delivered food, everything
+     * else goes straight to the world.
+     */
+    private final class ColonyView implements AntWorld {
+        private final int colony;
+        private final int foraging;
+        private final int food;
+
+        private ColonyView(int colony) {
+            this.colony = colony;
+            this.foraging = colony * CHANNELS + FORAGING;
+            this.food = colony * CHANNELS + FOOD;
+        }
+
+        @Override
+        public boolean isHome(Position p) {
+            return MyAntWorld.this.isHome(this.colony, p);
+        }
+
+        @Override
+        public float getHomeDirection(Position p) {
+            return MyAntWorld.this.getHomeDirection(this.colony, p);
+        }
+
+        @Override
+        public void dropForagingPheromone(Position p, float amount) {
+            dropPheromone(this.foraging, p, amount);
+        }
+
+        @Override
+        public void dropFoodPheromone(Position p, float amount) {
+            dropPheromone(this.food, p, amount);
+        }
+
+        @Override
+        public float getForagingStrength(Position p) {
+            return getStrength(this.foraging, p);
+        }
+
+        @Override
+        public float getFoodStrength(Position p) {
+            return getStrength(this.food, p);
+        }
+
+        @Override
+        public int sampleAlongRay(Position origin, float dirX, float dirY, float start, float increment, int count,
+                                  float[] foraging, float[] food) {
+            return MyAntWorld.this.sampleAlongRay(this.colony, origin, dirX, dirY, start, increment, count, foraging,
+                    food);
+        }
+
+        @Override
+        public void dropFood(Position p) {
+            MyAntWorld.this.dropFood(this.colony);
+        }
+
+        @Override
+        public long getFoodCount() {
+            return MyAntWorld.this.getFoodCount(this.colony);
+        }
+
+        @Override
+        public int getWidth() {
+            return MyAntWorld.this.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return MyAntWorld.this.getHeight();
+        }
+
+        @Override
+        public int getFoodSources() {
+            return MyAntWorld.this.getFoodSources();
+        }
+
+        @Override
+        public boolean isObstacle(Position p) {
+            return MyAntWorld.this.isObstacle(p);
+        }
+
+        @Override
+        public float getObstacleDistance(Position p) {
+            return MyAntWorld.this.getObstacleDistance(p);
+        }
+
+        @Override
+        public float raycast(Position origin, float direction, float minDistance, float maxDistance) {
+            return MyAntWorld.this.raycast(origin, direction, minDistance, maxDistance);
+        }
+
+        @Override
+        public void pickUpFood(Position p) {
+            MyAntWorld.this.pickUpFood(p);
+        }
+
+        @Override
+        public boolean containsFood(Position p) {
+            return MyAntWorld.this.containsFood(p);
+        }
+
+        @Override
+        public float getDeadAntCount(Position p) {
+            return MyAntWorld.this.getDeadAntCount(p);
+        }
+
+        @Override
+        public void dropDeadAnt(Position p) {
+            MyAntWorld.this.dropDeadAnt(p);
+        }
+
+        @Override
+        public void dispersePheromones() {
+            MyAntWorld.this.dispersePheromones();
+        }
+
+        @Override
+        public void setObstacle(Position p, boolean add) {
+            MyAntWorld.this.setObstacle(p, add);
+        }
+
+        @Override
+        public void setObstacles(Region region, boolean add) {
+            MyAntWorld.this.setObstacles(region, add);
+        }
+
+        @Override
+        public boolean addObstacleListener(ObstacleListener listener) {
+            return MyAntWorld.this.addObstacleListener(listener);
+        }
+
+        @Override
+        public void removeObstacleListener(ObstacleListener listener) {
+            MyAntWorld.this.removeObstacleListener(listener);
+        }
+
+        @Override
+        public void hitObstacle(Position p, float strength) {
+            MyAntWorld.this.hitObstacle(p, strength);
+        }
     }
 }
 
@@ -0,0 +1,141 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Signed distance from every cell to the closest cell on the other side of an obstacle edge: positive for free
+ * cells, measured to the nearest obstacle, and negative for obstacle cells, measured to the nearest free cell.
+ * Everything off the map counts as an obstacle.
+ * <p>
+ * Distances are between cell centres along eight-connected paths (a chamfer distance, within 8% of the Euclidean
+ * one) and capped at {@value MAX_DISTANCE}. The cap is what makes updates local: a change only affects cells within
+ * {@value MAX_DISTANCE} of it, and those only depend on obstacles within another {@value MAX_DISTANCE}.
+ * </p>
+ * <p>
+ * A new field is all zeroes until {@code update} covers the whole map or {@code read} fills it in.
+ * </p>
+ */
+final class ObstacleDistanceField {
+    static final float MAX_DISTANCE = 16.0f;
+    private static final int REACH = (int) MAX_DISTANCE;
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final float[] COST = {1.0f, (float) Math.sqrt(2.0), 1.0f, (float) Math.sqrt(2.0),
+            1.0f, (float) Math.sqrt(2.0), 1.0f, (float) Math.sqrt(2.0)};
+
+    private final int width;
+    private final int height;
+    private final float[] distance;
+    private final IndexHeap heap = new IndexHeap();
+
+    ObstacleDistanceField(final ObstacleGrid obstacles) {
+        this.width = obstacles.getWidth();
+        this.height = obstacles.getHeight();
+        this.distance = new float[this.width * this.height];
+    }
+
+    /**
+     * @return The number of bytes {@code write} puts.
+     */
+    long getBytes() {
+        return (long) Float.BYTES * this.distance.length;
+    }
+
+    /**
+     * Puts the distances at the position of {@code out} and advances it.
+     */
+    void write(final ByteBuffer out) {
+        out.asFloatBuffer().put(this.distance);
+        out.position(out.position() + Float.BYTES * this.distance.length);
+    }
+
+    /**
+     * Replaces the distances with ones written by {@code write} for a map of the same size.
+     */
+    void read(final ByteBuffer in) {
+        in.asFloatBuffer().get(this.distance);
+        in.position(in.position() + Float.BYTES * this.distance.length);
+    }
+
+    /**
+     * @return The signed distance at the cell {@code <x, y>}, {@code -MAX_DISTANCE} off the map.
+     */
+    float get(final int x, final int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            return -MAX_DISTANCE;
+        }
+        return this.distance[y * this.width + x];
+    }
+
+    /**
+     * Recomputes the distances affected by obstacle changes within cells {@code [x0, x1) x [y0, y1)}.
+     */
+    synchronized void update(final ObstacleGrid obstacles, final int x0, final int y0, final int x1, final int y1) {
+        //
+        // Cells within REACH of the change may get new distances, which in turn depend on cells within another REACH.
+        //
+        final int wx0 = Math.max(0, x0 - REACH);
+        final int wy0 = Math.max(0, y0 - REACH);
+        final int wx1 = Math.min(this.width, x1 + REACH);
+        final int wy1 = Math.min(this.height, y1 + REACH);
+        final int sx0 = Math.max(0, wx0 - REACH);
+        final int sy0 = Math.max(0, wy0 - REACH);
+        final int sx1 = Math.min(this.width, wx1 + REACH);
+        final int sy1 = Math.min(this.height, wy1 + REACH);
+        final int sw = sx1 - sx0;
+        final int sh = sy1 - sy0;
+        final float[] local = new float[sw * sh];
+
+        //
+        // Seed cells next to an edge with the step across it, then spread within each side.
+        //
+        this.heap.clear();
+        for (int y = sy0; y < sy1; y++) {
+            for (int x = sx0; x < sx1; x++) {
+                final boolean inside = obstacles.isObstacle(x, y);
+                float d = MAX_DISTANCE;
+                for (int k = 0; k < DX.length; k++) {
+                    if (inside != obstacles.isObstacle(x + DX[k], y + DY[k]) && COST[k] < d) {
+                        d = COST[k];
+                    }
+                }
+                final int i = (y - sy0) * sw + x - sx0;
+                local[i] = d;
+                if (d < MAX_DISTANCE) {
+                    this.heap.push(i, d);
+                }
+            }
+        }
+        while (!this.heap.isEmpty()) {
+            final float key = this.heap.peekKey();
+            final int i = this.heap.pop();
+            if (key > local[i]) {
+                continue;
+            }
+            final int x = i % sw;
+            final int y = i / sw;
+            final boolean inside = obstacles.isObstacle(sx0 + x, sy0 + y);
+            for (int k = 0; k < DX.length; k++) {
+                final int nx = x + DX[k];
+                final int ny = y + DY[k];
+                if (nx < 0 || nx >= sw || ny < 0 || ny >= sh ||
+                        inside != obstacles.isObstacle(sx0 + nx, sy0 + ny)) {
+                    continue;
+                }
+                final int n = ny * sw + nx;
+                final float candidate = key + COST[k];
+                if (candidate < local[n]) {
+                    local[n] = candidate;
+                    this.heap.push(n, candidate);
+                }
+            }
+        }
+
+        for (int y = wy0; y < wy1; y++) {
+            for (int x = wx0; x < wx1; x++) {
+                final float d = local[(y - sy0) * sw + x - sx0];
+                this.distance[y * this.width + x] = obstacles.isObstacle(x, y) ? -d : d;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * One bit per cell telling whether there's an obstacle there. Everything off the map counts as an obstacle.
+ */
+final class ObstacleGrid {
+    private final int width;
+    private final int height;
+    private final long[] bits;
+
+    ObstacleGrid(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.bits = new long[(int) (((long) width * height + 63) >>> 6)];
+    }
+
+    int getWidth() {
+        return this.width;
+    }
+
+    int getHeight() {
+        return this.height;
+    }
+
+    boolean isWithinBounds(final int x, final int y) {
+        return x >= 0 && x < this.width && y >= 0 && y < this.height;
+    }
+
+    boolean isObstacle(final int x, final int y) {
+        if (!isWithinBounds(x, y)) {
+            return true;
+        }
+        final int i = y * this.width + x;
+        return 0 != (this.bits[i >>> 6] & (1L << i));
+    }
+
+    /**
+     * Same as {@code isObstacle} for cell index {@code y * width + x}, without bounds checks.
+     */
+    boolean isObstacleAt(final int index) {
+        return 0 != (this.bits[index >>> 6] & (1L << index));
+    }
+
+    /**
+     * @return A checksum of the bitmap, equal for equal obstacles.
+     */
+    long checksum() {
+        return Arrays.hashCode(this.bits);
+    }
+
+    /**
+     * @return The number of bytes {@code write} puts.
+     */
+    long getBytes() {
+        return (long) Long.BYTES * this.bits.length;
+    }
+
+    /**
+     * Puts the bitmap at the position of {@code out} and advances it.
+     */
+    void write(final ByteBuffer out) {
+        out.asLongBuffer().put(this.bits);
+        out.position(out.position() + Long.BYTES * this.bits.length);
+    }
+
+    /**
+     * Replaces the bitmap with one written by {@code write} for a grid of the same size.
+     */
+    void read(final ByteBuffer in) {
+        in.asLongBuffer().get(this.bits);
+        in.position(in.position() + Long.BYTES * this.bits.length);
+    }
+
+    /**
+     * Copies the words of the bitmap holding cells {@code [from, to)}, cell index {@code y * width + x}, to the same
+     * places in {@code out}.
+     */
+    void copyWords(final LongBuffer out, final int from, final int to) {
+        out.put(from >>> 6, this.bits, from >>> 6, ((to - 1) >>> 6) - (from >>> 6) + 1);
+    }
+
+    /**
+     * @return {@code true} if the cell changed.
+     */
+    boolean set(final int x, final int y, final boolean add) {
+        if (!isWithinBounds(x, y)) {
+            return false;
+        }
+        final int i = y * this.width + x;
+        final long mask = 1L << i;
+        final long old = this.bits[i >>> 6];
+        this.bits[i >>> 6] = add ? old | mask : old & ~mask;
+        return old != this.bits[i >>> 6];
+    }
+}
@@ -0,0 +1,18 @@
+package org.evensen.ants;
+
+/**
+ * Gets told about obstacles being added or removed, so that anything derived from them only needs to be updated
+ * where they changed.
+ */
+public interface ObstacleListener {
+    /**
+     * Called after obstacles changed somewhere within the {@code width} x {@code height} rectangle with its upper left
+     * corner at {@code <x, y>}. Might be called from any thread that changes obstacles.
+     *
+     * @param x Leftmost changed column.
+     * @param y Topmost changed row.
+     * @param width Width of the changed rectangle.
+     * @param height Height of the changed rectangle.
+     */
+    void obstaclesChanged(int x, int y, int width, int height);
+}
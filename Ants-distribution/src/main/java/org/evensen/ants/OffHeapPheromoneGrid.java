@@ -0,0 +1,184 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@code PheromoneGrid} storing levels as {@code float}s in two byte buffers outside the Java heap, either direct
+ * buffers of its own or regions of a memory mapped file shared with other processes, see {@code WorldFile}.
+ * <p>
+ * Each buffer holds at most 2 GB, i.e. {@code width * height * channels} may not exceed {@code 2^29}.
+ * </p>
+ */
+final class OffHeapPheromoneGrid extends PheromoneGrid {
+    private final FloatBuffer[] buffers;
+    private final IntConsumer swapListener;
+    private int current;
+    private FloatBuffer levels;
+    private FloatBuffer next;
+    private final float[][] rows;
+
+    /**
+     * A grid in direct buffers of its own.
+     */
+    OffHeapPheromoneGrid(final int width, final int height, final int channels) {
+        this(width, height, channels, allocate(width, height, channels), allocate(width, height, channels), null);
+    }
+
+    /**
+     * A grid in the given buffers, of {@code Float.BYTES * width * height * channels} bytes each from their
+     * positions, starting out with the levels in {@code first}.
+     *
+     * @param swapListener Told the index, 0 for {@code first} and 1 for {@code second}, of the buffer holding the
+     *                     current levels after every dispersal. May be {@code null}.
+     */
+    OffHeapPheromoneGrid(final int width, final int height, final int channels, final ByteBuffer first,
+                         final ByteBuffer second, final IntConsumer swapListener) {
+        super(width, height, channels);
+        this.rows = new float[3][(TILE_SIZE + 2) * channels];
+        this.buffers = new FloatBuffer[]{view(first, width, height, channels), view(second, width, height, channels)};
+        this.swapListener = swapListener;
+        this.levels = this.buffers[0];
+        this.next = this.buffers[1];
+    }
+
+    private static ByteBuffer allocate(final int width, final int height, final int channels) {
+        final long bytes = (long) Float.BYTES * width * height * channels;
+        if (Integer.MAX_VALUE < bytes) {
+            throw new IllegalArgumentException("Pheromone buffers of " + bytes + " bytes are too large");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static FloatBuffer view(final ByteBuffer buffer, final int width, final int height, final int channels) {
+        return buffer.slice().order(buffer.order()).asFloatBuffer().limit(width * height * channels).slice();
+    }
+
+    @Override
+    protected float load(final int index) {
+        return this.levels.get(index);
+    }
+
+    @Override
+    protected void store(final int index, final float level) {
+        this.levels.put(index, level);
+    }
+
+    /**
+     * Copies row {@code y}, columns {@code [x0 - 1, x1]} with edges repeated, into {@code row}.
+     */
+    private void decodeRow(final float[] row, final int y, final int x0, final int x1) {
+        final int c = this.channels;
+        final int rowStart = Math.max(0, Math.min(this.height - 1, y)) * this.width;
+        final int first = Math.max(0, x0 - 1);
+        final int last = Math.min(this.width - 1, x1);
+        int j = 0;
+        if (x0 - 1 < first) {
+            this.levels.get((rowStart + first) * c, row, j, c);
+            j += c;
+        }
+        this.levels.get((rowStart + first) * c, row, j, (last - first + 1) * c);
+        j += (last - first + 1) * c;
+        if (x1 > last) {
+            this.levels.get((rowStart + last) * c, row, j, c);
+        }
+    }
+
+    @Override
+    protected float disperseRegion(final int x0, final int y0, final int x1, final int y1,
+                                   final ObstacleGrid obstacles, final float keep, final float evaporation) {
+        final int c = this.channels;
+        final float neighbourWeight = (1 - keep) / 8.0f;
+        final FloatBuffer dst = this.next;
+        float[] up = this.rows[0];
+        float[] mid = this.rows[1];
+        float[] down = this.rows[2];
+        float max = 0;
+
+        //
+        // Rows are copied in bulk to the heap with their edges repeated, so the inner loop reads plain arrays.
+        //
+        decodeRow(up, y0 - 1, x0, x1);
+        decodeRow(mid, y0, x0, x1);
+        for (int y = y0; y < y1; y++) {
+            decodeRow(down, y + 1, x0, x1);
+            final int row = y * this.width;
+            for (int x = x0; x < x1; x++) {
+                final int cell = row + x;
+                final int out = cell * c;
+                if (obstacles.isObstacleAt(cell)) {
+                    for (int k = 0; k < c; k++) {
+                        dst.put(out + k, 0);
+                    }
+                    continue;
+                }
+                final int j = (x - x0 + 1) * c;
+                for (int k = 0; k < c; k++) {
+                    final int l = j - c + k;
+                    final int r = j + c + k;
+                    final float npl = up[l] + up[j + k] + up[r] + mid[l] + mid[r] + down[l] + down[j + k] + down[r];
+                    float level = (neighbourWeight * npl + keep * mid[j + k]) * evaporation;
+                    if (EPSILON > level) {
+                        level = 0;
+                    }
+                    dst.put(out + k, level);
+                    max = Math.max(max, level);
+                }
+            }
+            final float[] tmp = up;
+            up = mid;
+            mid = down;
+            down = tmp;
+        }
+        return max;
+    }
+
+    @Override
+    protected void clearNext(final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            this.next.put(i, 0);
+        }
+    }
+
+    @Override
+    protected void scale(final int from, final int to, final float factor) {
+        for (int i = from; i < to; i++) {
+            this.levels.put(i, this.levels.get(i) * factor);
+        }
+    }
+
+    @Override
+    protected void swapBuffers() {
+        this.current ^= 1;
+        this.levels = this.buffers[this.current];
+        this.next = this.buffers[this.current ^ 1];
+        if (null != this.swapListener) {
+            this.swapListener.accept(this.current);
+        }
+    }
+
+    @Override
+    long getStorageBytes() {
+        return 2L * Float.BYTES * this.levels.capacity();
+    }
+
+    @Override
+    PheromoneStorage getStorage() {
+        return PheromoneStorage.OFF_HEAP;
+    }
+
+    @Override
+    protected void writeLevels(final ByteBuffer out) {
+        out.asFloatBuffer().put(0, this.levels, 0, this.levels.capacity());
+        out.position(out.position() + Float.BYTES * this.levels.capacity());
+    }
+
+    @Override
+    protected void readLevels(final ByteBuffer in) {
+        this.levels.put(0, in.asFloatBuffer(), 0, this.levels.capacity());
+        in.position(in.position() + Float.BYTES * this.levels.capacity());
+        clearNext(0, this.next.capacity());
+    }
+}
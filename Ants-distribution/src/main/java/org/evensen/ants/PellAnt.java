@@ -1,5 +1,6 @@
 package org.evensen.ants;
 
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Objects;
 import java.util.SortedSet;
@@ -13,29 +14,7 @@ import static org.evensen.ants.GraphicsMath.TAU;
 
 public class PellAnt implements Ant {
     private static final float PI = (float) Math.PI;
-    private static final float SCAN_ANGLE = TAU / 2.5f;
-    private static final float SCAN_INCREMENT = (float) (SCAN_ANGLE / 19.0f);
-    private static final float NO_FOOD_WEIGHT = -4.0f;
-    private static final float SCAN_RADIUS = 30.0f;
-    private static final float MIN_SCAN_RADIUS = 1.0f;
-    private static final float RADIUS_INCREMENT = 5.0f;
-    private static final float MOVE_RATE = 1.74f;
-    private static final float CARRYING_MOVE_SCALE = 0.5f;
-    private static final float PHEROMONE_DROP_RATE = 0.99f;
     private static final float TURN_RATE = 0.9f;
-    private static final float SCENT_DEVIATION = 0.01f;
-    private static final float[] RADII_WEIGHTS;
-    private static final int DEFAULT_HIT_POINTS = 10;
-    private static final float PHEROMONE_STRENGTH = 0.001f;
-
-    static {
-        RADII_WEIGHTS = new float[(int) ((SCAN_RADIUS - MIN_SCAN_RADIUS) / RADIUS_INCREMENT + 1)];
-        int i = 0;
-        for (float radius = MIN_SCAN_RADIUS; SCAN_RADIUS > radius; radius += RADIUS_INCREMENT) {
-            RADII_WEIGHTS[i] = radius * radius;
-            i++;
-        }
-    }
 
     private static final class BehaviourState {
         public final Function<AntWorld, Float> goalAngleScan;
@@ -63,12 +42,14 @@ public class PellAnt implements Ant {
 
     private final BehaviourState getCarryingState() {
         return new BehaviourState(
-                (x -> scanForTypeAngle(x, x::isHome)),
+                (x -> {
+                    final float homeDirection = x.getHomeDirection(this.position);
+                    return 0 <= homeDirection ? homeDirection : scanForTypeAngle(x, x::isHome);
+                }),
                 (x -> scanForTypeAngle(x, x::containsFood)),
                 (x -> x.dropFoodPheromone(this.position,
-                        this.pheromonesLeft * PHEROMONE_STRENGTH)),
-                ((x, p) -> scanForScentAngle(x, p ?
-                        x::getForagingStrength : x::getFoodStrength, null, 1).direction),
+                        this.pheromonesLeft * this.config.pheromoneStrength)),
+                ((x, p) -> scanForScentAngle(x, p ? Scan.FORAGING : Scan.FOOD, null, 1).direction),
                 (x -> {
                     if (this.carriesFood && x.isHome(this.position)) {
                         x.dropFood(this.position);
@@ -85,9 +66,8 @@ public class PellAnt implements Ant {
                 (x -> scanForTypeAngle(x, x::containsFood)),
                 (x -> scanForTypeAngle(x, x::isHome)),
                 (x -> x.dropForagingPheromone(this.position,
-                        this.pheromonesLeft * PHEROMONE_STRENGTH)),
-                ((x, p) -> scanForScentAngle(x, x::getFoodStrength, x::getForagingStrength,
-                        NO_FOOD_WEIGHT).direction),
+                        this.pheromonesLeft * this.config.pheromoneStrength)),
+                ((x, p) -> scanForScentAngle(x, Scan.FOOD, Scan.FORAGING, this.config.noFoodWeight).direction),
                 (x -> {
                     if (x.containsFood(this.position)) {
                         x.pickUpFood(this.position);
@@ -103,10 +83,11 @@ public class PellAnt implements Ant {
     private final BehaviourState foragingState;
     private BehaviourState currentState;
 
-    private final float pheromoneRate;
+    private final AntConfig config;
+    private float pheromoneRate;
     private final SplittableGenerator rng;
-    private final float moveRate;
-    private final float carryingMoveRate;
+    private float moveRate;
+    private float carryingMoveRate;
     private final Action currentGoal;
     private Position position;
     private boolean carriesFood;
@@ -114,20 +95,111 @@ public class PellAnt implements Ant {
     private float direction;
 
     private int hitPoints;
+    private final float[] foragingSamples;
+    private final float[] foodSamples;
 
     public PellAnt(final Position startingPosition, final float pheromoneRate) {
+        this(startingPosition, pheromoneRate, AntConfig.DEFAULT);
+    }
+
+    public PellAnt(final Position startingPosition, final float pheromoneRate, final AntConfig config) {
+        this.config = config;
+        this.foragingSamples = new float[config.radiiWeights.length];
+        this.foodSamples = new float[config.radiiWeights.length];
+        this.rng = new Konadare192RNG(getSeed(startingPosition, pheromoneRate));
+        this.currentGoal = Action.FORAGING;
+        this.carryingState = getCarryingState();
+        this.foragingState = getForagingState();
+        init(startingPosition, pheromoneRate);
+    }
+
+    private static long getSeed(final Position startingPosition, final float pheromoneRate) {
+        return startingPosition.hashCode() * 9999L + Float.hashCode(pheromoneRate);
+    }
+
+    private void init(final Position startingPosition, final float pheromoneRate) {
         this.position = startingPosition;
-        this.rng = new Konadare192RNG(startingPosition.hashCode() * 9999L + Float.hashCode(pheromoneRate));
         this.pheromoneRate = pheromoneRate + this.rng.nextFloat() * pheromoneRate * 0.1f;
         this.direction = this.rng.nextFloat() * TAU;
-        this.moveRate = MOVE_RATE + this.rng.nextFloat() * MOVE_RATE * 0.1f;
-        this.carryingMoveRate = this.moveRate * CARRYING_MOVE_SCALE;
-        this.currentGoal = Action.FORAGING;
-        this.hitPoints = DEFAULT_HIT_POINTS;
+        this.moveRate = this.config.moveRate + this.rng.nextFloat() * this.config.moveRate * 0.1f;
+        this.carryingMoveRate = this.moveRate * this.config.carryingMoveScale;
+        this.hitPoints = this.config.hitPoints;
+        this.pheromonesLeft = 0;
         this.carriesFood = false;
+        this.currentState = this.foragingState;
+    }
+
+    /**
+     * Brings this, possibly dead, ant back as if it were {@code new PellAnt(startingPosition, pheromoneRate, config)},
+     * reusing its random generator, behaviours and sample buffers.
+     */
+    void respawn(final Position startingPosition, final float pheromoneRate) {
+        ((Konadare192RNG) this.rng).reseed(getSeed(startingPosition, pheromoneRate));
+        init(startingPosition, pheromoneRate);
+    }
+
+    private PellAnt(final Position position, final float direction, final float pheromonesLeft,
+                    final float pheromoneRate, final float moveRate, final int hitPoints, final boolean carriesFood,
+                    final Konadare192RNG rng, final AntConfig config) {
+        this.config = config;
+        this.foragingSamples = new float[config.radiiWeights.length];
+        this.foodSamples = new float[config.radiiWeights.length];
+        this.position = position;
+        this.rng = rng;
+        this.pheromoneRate = pheromoneRate;
+        this.direction = direction;
+        this.moveRate = moveRate;
+        this.carryingMoveRate = this.moveRate * config.carryingMoveScale;
+        this.currentGoal = Action.FORAGING;
+        this.hitPoints = hitPoints;
+        this.pheromonesLeft = pheromonesLeft;
+        this.carriesFood = carriesFood;
         this.carryingState = getCarryingState();
         this.foragingState = getForagingState();
-        this.currentState = this.foragingState;
+        this.currentState = carriesFood ? this.carryingState : this.foragingState;
+    }
+
+    /**
+     * Moves the ant by {@code <dx, dy>} without it doing anything, e.g. into the coordinates of another world.
+     */
+    void translate(final float dx, final float dy) {
+        this.position = this.position.offset(dx, dy);
+    }
+
+    /**
+     * Bytes per ant put by {@code writeState}.
+     */
+    static final int STATE_BYTES = 6 * Float.BYTES + 2 * Integer.BYTES + Konadare192RNG.STATE_BYTES;
+
+    /**
+     * Puts everything that decides how this ant moves on, {@value STATE_BYTES} bytes, at the position of
+     * {@code out} and advances it.
+     */
+    void writeState(final ByteBuffer out) {
+        out.putFloat(this.position.getX())
+                .putFloat(this.position.getY())
+                .putFloat(this.direction)
+                .putFloat(this.pheromonesLeft)
+                .putFloat(this.pheromoneRate)
+                .putFloat(this.moveRate)
+                .putInt(this.hitPoints)
+                .putInt(this.carriesFood ? 1 : 0);
+        ((Konadare192RNG) this.rng).writeState(out);
+    }
+
+    /**
+     * @return An ant that moves on exactly like the one whose state {@code writeState} wrote, given the same config.
+     */
+    static PellAnt readState(final ByteBuffer in, final AntConfig config) {
+        final Position position = new Position(in.getFloat(), in.getFloat());
+        final float direction = in.getFloat();
+        final float pheromonesLeft = in.getFloat();
+        final float pheromoneRate = in.getFloat();
+        final float moveRate = in.getFloat();
+        final int hitPoints = in.getInt();
+        final boolean carriesFood = 0 != in.getInt();
+        return new PellAnt(position, direction, pheromonesLeft, pheromoneRate, moveRate, hitPoints, carriesFood,
+                Konadare192RNG.readState(in), config);
     }
 
     @Override
@@ -148,42 +220,45 @@ public class PellAnt implements Ant {
         return Objects.hash(this.pheromoneRate, this.position, this.direction);
     }
 
-    private Scent scanForScentAngle(final AntWorld w, final Function<Position, Float> primaryScentFunction,
-                                    Function<Position, Float> secondaryScentFunction,
+    private Scent scanForScentAngle(final AntWorld w, final Scan primaryScent, final Scan secondaryScent,
                                     final float noFoodWeight) {
-        if (null == secondaryScentFunction) {
-            secondaryScentFunction = p -> w.isObstacle(p) ? 0.1f : 0f;
-        }
         final float strongestScent = 0;
         final float strongestAngle = this.direction;
         final SortedSet<Scent> bestScents = new TreeSet<>();
+        final float[] primary = Scan.FORAGING == primaryScent ? this.foragingSamples : this.foodSamples;
+        final float[] secondary = null == secondaryScent ? null :
+                Scan.FORAGING == secondaryScent ? this.foragingSamples : this.foodSamples;
 
-        for (float i = -SCAN_ANGLE / 2.0f; SCAN_ANGLE / 2.0 >= i; i += SCAN_INCREMENT) {
+        final float[] radiiWeights = this.config.radiiWeights;
+        for (float i = -this.config.scanAngle / 2.0f; this.config.scanAngle / 2.0 >= i;
+             i += this.config.scanIncrement) {
             final float theta = this.direction + i;
             float scentAcc = 0.0f;
             float negativeScentAcc = 0.0f;
             final float xOff = (float) Math.cos(theta) * this.moveRate;
             final float yOff = (float) Math.sin(theta) * this.moveRate;
-            int radiusIndex = 0;
-            for (float radius = MIN_SCAN_RADIUS; SCAN_RADIUS > radius; radius += RADIUS_INCREMENT) {
-                final Position offset = this.position.offset(xOff * radius, yOff * radius);
-                if (w.isObstacle(offset)) {
-                    scentAcc -= RADII_WEIGHTS[radiusIndex];
-                    break;
+            final int samples = w.sampleAlongRay(this.position, xOff, yOff, this.config.minScanRadius,
+                    this.config.radiusIncrement, radiiWeights.length,
+                    Scan.FORAGING == primaryScent || Scan.FORAGING == secondaryScent ? this.foragingSamples : null,
+                    Scan.FOOD == primaryScent || Scan.FOOD == secondaryScent ? this.foodSamples : null);
+            for (int radiusIndex = 0; radiusIndex < samples; radiusIndex++) {
+                scentAcc += primary[radiusIndex] * radiiWeights[radiusIndex];
+                if (null != secondary) {
+                    negativeScentAcc += secondary[radiusIndex] * radiiWeights[radiusIndex];
                 }
-                scentAcc += primaryScentFunction.apply(offset) * RADII_WEIGHTS[radiusIndex];
-                negativeScentAcc += secondaryScentFunction.apply(offset) * RADII_WEIGHTS[radiusIndex];
-                radiusIndex++;
+            }
+            if (samples < radiiWeights.length) {
+                scentAcc -= radiiWeights[samples];
             }
             scentAcc -= negativeScentAcc;
-            scentAcc *= ((float) this.rng.nextGaussian() * SCENT_DEVIATION + 2.0f);
+            scentAcc *= ((float) this.rng.nextGaussian() * this.config.scentDeviation + 2.0f);
             if (scentAcc > 0) {
                 bestScents.add(new Scent(theta, scentAcc));
             }
         }
 
         for (final Scent s : bestScents) {
-            if (isPathClear(w, s.direction, 2.0f, this.moveRate * SCAN_RADIUS)) {
+            if (isPathClear(w, s.direction, 2.0f, this.moveRate * this.config.scanRadius)) {
                 return s;
             }
         }
@@ -193,31 +268,25 @@ public class PellAnt implements Ant {
 
     private boolean isPathClear(final AntWorld w, final float direction, final float baseRadius,
                                 final float maxRadius) {
-        final float xOff = (float) Math.cos(direction);
-        final float yOff = (float) Math.sin(direction);
-        for (float radius = baseRadius; radius <= maxRadius; radius++) {
-            if (w.isObstacle(this.position.offset(xOff * radius, yOff * radius))) {
-                return false;
-            }
-        }
-        return true;
+        return maxRadius < w.raycast(this.position, direction, baseRadius, maxRadius);
     }
 
     private float scanForTypeAngle(final AntWorld w, final Function<Position, Boolean> typeMapping) {
         float typeDistance = 1.0E10f;
         float strongestAngle = this.direction;
-        for (float i = -SCAN_ANGLE / 2.0f; SCAN_ANGLE / 2.0f >= i; i += SCAN_INCREMENT) {
+        for (float i = -this.config.scanAngle / 2.0f; this.config.scanAngle / 2.0f >= i;
+             i += this.config.scanIncrement) {
             final float theta = this.direction + i;
             final float xOff = (float) Math.cos(theta) * this.moveRate;
             final float yOff = (float) Math.sin(theta) * this.moveRate;
-            for (float radius = MIN_SCAN_RADIUS;
-                 SCAN_RADIUS > radius && radius < typeDistance; radius += RADIUS_INCREMENT) {
+            for (float radius = this.config.minScanRadius;
+                 this.config.scanRadius > radius && radius < typeDistance; radius += this.config.radiusIncrement) {
                 final Position offset = this.position.offset(xOff * radius, yOff * radius);
                 if (w.isObstacle(offset)) {
                     break;
                 }
                 if (typeMapping.apply(offset)) {
-                    if (isPathClear(w, theta, MIN_SCAN_RADIUS, radius * this.moveRate)) {
+                    if (isPathClear(w, theta, this.config.minScanRadius, radius * this.moveRate)) {
                         strongestAngle = (theta + TAU) % TAU;
                         typeDistance = radius;
                     }
@@ -255,12 +324,41 @@ public class PellAnt implements Ant {
                     this.direction = TAU - this.direction;
                 }
             } else {
-                this.direction = this.direction + (float) (this.rng.nextGaussian() * 0.5);
+                final float wallDirection = getWallFollowingDirection(w);
+                if (!Float.isNaN(wallDirection)) {
+                    this.direction = wallDirection + (float) (this.rng.nextGaussian() * this.config.wallDeviation);
+                } else {
+                    this.direction = this.direction + (float) (this.rng.nextGaussian() * 0.5);
+                }
             }
             w.hitObstacle(newPosition, 1.0f);
         }
     }
 
+    /**
+     * Uses the world's obstacle distances to find the direction along the wall the ant just bumped into, the one
+     * closest to where it was heading, turned slightly away from the wall.
+     *
+     * @return The direction to follow in {@code [0, TAU)}, or {@code NaN} if the world doesn't tell obstacle distances.
+     */
+    private float getWallFollowingDirection(final AntWorld w) {
+        final float gradientX = w.getObstacleDistance(this.position.offset(1, 0)) -
+                w.getObstacleDistance(this.position.offset(-1, 0));
+        final float gradientY = w.getObstacleDistance(this.position.offset(0, 1)) -
+                w.getObstacleDistance(this.position.offset(0, -1));
+        if (0 == gradientX && 0 == gradientY) {
+            return Float.NaN;
+        }
+        final float away = (float) Math.atan2(gradientY, gradientX);
+        final float left = (away + PI / 2 + TAU) % TAU;
+        final float right = (away - PI / 2 + TAU) % TAU;
+        final float heading = ((this.direction % TAU) + TAU) % TAU;
+        final float wallDirection = GraphicsMath.angularDifference(left, heading) <
+                GraphicsMath.angularDifference(right, heading) ?
+                left - this.config.wallRepulsion : right + this.config.wallRepulsion;
+        return (wallDirection + TAU) % TAU;
+    }
+
     public void move(final AntWorld w) {
         if (isDead()) {
             return;
@@ -272,7 +370,7 @@ public class PellAnt implements Ant {
         if (hasPheromones) {
             if (this.rng.nextFloat() < this.pheromoneRate) {
                 this.currentState.dropPheromone.accept(w);
-                this.pheromonesLeft *= PHEROMONE_DROP_RATE;
+                this.pheromonesLeft *= this.config.pheromoneDropRate;
             }
         } else {
             if (bestDirection < 0) {
@@ -310,6 +408,14 @@ public class PellAnt implements Ant {
         CARRYING
     }
 
+    /**
+     * The pheromone a scan looks for.
+     */
+    private enum Scan {
+        FORAGING,
+        FOOD
+    }
+
     private static class Scent implements Comparable<Scent> {
         private final float direction;
         private final float strength;
@@ -0,0 +1,341 @@
+package org.evensen.ants;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Pheromone levels on {@code [0, 1]} for a number of channels, stored interleaved per cell so that all channels
+ * are dispersed in one sweep over memory.
+ * <p>
+ * The grid also keeps the highest level of each {@value TILE_SIZE} x {@value TILE_SIZE} tile up to date.
+ * Scent only spreads one cell per dispersal, so tiles whose own and neighbours' levels are below
+ * {@value EPSILON} can't change and are skipped altogether. Levels below that threshold are snapped to zero.
+ * </p>
+ * <p>
+ * Subclasses decide how levels are stored, see {@code PheromoneStorage}.
+ * </p>
+ */
+abstract class PheromoneGrid {
+    static final int TILE_SHIFT = 6;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    static final float EPSILON = 1.0E-6f;
+
+    protected final int width;
+    protected final int height;
+    protected final int channels;
+    private final int tilesX;
+    private final int tilesY;
+    private final float[] tileMax;
+    private final BitSet active;
+    /**
+     * Tiles that may hold non-zero levels in the current and the next buffer respectively.
+     */
+    private BitSet dirtyLevels;
+    private BitSet dirtyNext;
+
+    protected PheromoneGrid(final int width, final int height, final int channels) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.tilesX = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.tilesY = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+        this.tileMax = new float[this.tilesX * this.tilesY];
+        this.active = new BitSet(this.tileMax.length);
+        this.dirtyLevels = new BitSet(this.tileMax.length);
+        this.dirtyNext = new BitSet(this.tileMax.length);
+    }
+
+    static PheromoneGrid create(final PheromoneStorage storage, final int width, final int height,
+                                final int channels) {
+        switch (storage) {
+            case HALF:
+                return new HalfPheromoneGrid(width, height, channels);
+            case OFF_HEAP:
+                return new OffHeapPheromoneGrid(width, height, channels);
+            case FLOAT:
+            default:
+                return new FloatPheromoneGrid(width, height, channels);
+        }
+    }
+
+    /**
+     * @return The level at {@code index = (y * width + x) * channels + channel}.
+     */
+    protected abstract float load(int index);
+
+    /**
+     * Sets the level at {@code index = (y * width + x) * channels + channel}.
+     */
+    protected abstract void store(int index, float level);
+
+    /**
+     * Sets the level at {@code index} to {@code level} after something was added to it. The default is {@code store};
+     * storage that rounds levels can round differently here, so that small additions aren't lost.
+     */
+    protected void storeAdded(final int index, final float level) {
+        store(index, level);
+    }
+
+    /**
+     * Computes the dispersed levels of cells {@code [x0, x1) x [y0, y1)} from the current buffer into the next.
+     *
+     * @return The highest new level.
+     */
+    protected abstract float disperseRegion(int x0, int y0, int x1, int y1, ObstacleGrid obstacles,
+                                            float keep, float evaporation);
+
+    /**
+     * Zeroes {@code [from, to)} in the next buffer.
+     */
+    protected abstract void clearNext(int from, int to);
+
+    /**
+     * Multiplies {@code [from, to)} in the current buffer by {@code factor}.
+     */
+    protected abstract void scale(int from, int to, float factor);
+
+    /**
+     * Makes the next buffer current and vice versa.
+     */
+    protected abstract void swapBuffers();
+
+    /**
+     * @return Bytes used for storing levels, both buffers included.
+     */
+    abstract long getStorageBytes();
+
+    abstract PheromoneStorage getStorage();
+
+    /**
+     * Puts the current levels, as stored, at the position of {@code out} and advances it past them.
+     */
+    protected abstract void writeLevels(ByteBuffer out);
+
+    /**
+     * Replaces the current levels with ones written by {@code writeLevels}, advancing {@code in} past them.
+     */
+    protected abstract void readLevels(ByteBuffer in);
+
+    /**
+     * @return The number of bytes {@code write} puts.
+     */
+    long getLevelBytes() {
+        return getStorageBytes() / 2;
+    }
+
+    void write(final ByteBuffer out) {
+        writeLevels(out);
+    }
+
+    /**
+     * Reads levels written by {@code write} from a grid of the same size, storage and channels, and works out which
+     * tiles carry scent.
+     */
+    void read(final ByteBuffer in) {
+        readLevels(in);
+        this.dirtyNext.clear();
+        this.dirtyLevels.clear();
+        for (int t = 0; t < this.tileMax.length; t++) {
+            updateTileMax(t);
+        }
+    }
+
+    /**
+     * @return The number of bytes {@code writeRows} puts for {@code rows} rows.
+     */
+    long getRowBytes(final int rows) {
+        return (long) rows * this.width * this.channels * Float.BYTES;
+    }
+
+    /**
+     * Puts the levels of rows {@code [y0, y1)} as floats at the position of {@code out} and advances it past them.
+     */
+    void writeRows(final ByteBuffer out, final int y0, final int y1) {
+        for (int i = y0 * this.width * this.channels; i < y1 * this.width * this.channels; i++) {
+            out.putFloat(load(i));
+        }
+    }
+
+    /**
+     * Replaces the levels of rows {@code [y0, y1)} with ones written by {@code writeRows}, typically by another grid
+     * covering the same rows of a larger map, and works out which of the tiles they cross carry scent.
+     */
+    void readRows(final ByteBuffer in, final int y0, final int y1) {
+        for (int i = y0 * this.width * this.channels; i < y1 * this.width * this.channels; i++) {
+            store(i, in.getFloat());
+        }
+        for (int ty = y0 >> TILE_SHIFT; ty <= (y1 - 1) >> TILE_SHIFT; ty++) {
+            for (int tx = 0; tx < this.tilesX; tx++) {
+                updateTileMax(ty * this.tilesX + tx);
+            }
+        }
+    }
+
+    private void updateTileMax(final int tile) {
+        final float[] max = {0};
+        forEachTileRow(tile, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                max[0] = Math.max(max[0], load(i));
+            }
+        });
+        this.tileMax[tile] = max[0];
+        if (0 < max[0]) {
+            this.dirtyLevels.set(tile);
+        }
+    }
+
+    /**
+     * Stores {@code round(level * scale)} of every level in {@code out}, in the grid's order. Quiet tiles are simply
+     * zeroed.
+     */
+    void quantise(final short[] out, final float scale) {
+        for (int t = 0; t < this.tileMax.length; t++) {
+            if (0 < this.tileMax[t]) {
+                forEachTileRow(t, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = (short) Math.round(load(i) * scale);
+                    }
+                });
+            } else {
+                forEachTileRow(t, (from, to) -> Arrays.fill(out, from, to, (short) 0));
+            }
+        }
+    }
+
+    /**
+     * @return A checksum of the exact levels, as stored.
+     */
+    long checksum() {
+        long sum = 0;
+        for (int i = 0; i < this.width * this.height * this.channels; i++) {
+            sum = sum * 31 + Float.floatToRawIntBits(load(i));
+        }
+        return sum;
+    }
+
+    int getChannels() {
+        return this.channels;
+    }
+
+    int getTilesX() {
+        return this.tilesX;
+    }
+
+    int getTileCount() {
+        return this.tileMax.length;
+    }
+
+    /**
+     * @return The highest level in {@code tile} after the last dispersal or drop, zero if the tile is quiet.
+     */
+    float getTileMax(final int tile) {
+        return this.tileMax[tile];
+    }
+
+    private int tileOf(final int x, final int y) {
+        return (y >> TILE_SHIFT) * this.tilesX + (x >> TILE_SHIFT);
+    }
+
+    float get(final int x, final int y, final int channel) {
+        return load((y * this.width + x) * this.channels + channel);
+    }
+
+    /**
+     * Increases the level of {@code channel} at {@code <x, y>}, saturating at 1.
+     */
+    void add(final int x, final int y, final int channel, final float amount) {
+        final int i = (y * this.width + x) * this.channels + channel;
+        final float level = Math.min(1.0f, load(i) + amount);
+        storeAdded(i, level);
+        final int tile = tileOf(x, y);
+        if (level > this.tileMax[tile]) {
+            this.tileMax[tile] = level;
+        }
+        this.dirtyLevels.set(tile);
+    }
+
+    /**
+     * @return The fraction of tiles that were visited by the last call to {@code disperse}.
+     */
+    float getActiveFraction() {
+        return this.active.cardinality() / (float) this.tileMax.length;
+    }
+
+    /**
+     * Lets every channel diffuse to the eight neighbouring cells and evaporate. Edge cells see themselves
+     * repeated outside the map and obstacle cells are cleared.
+     *
+     * @param obstacles Obstacles of the same size as this grid.
+     * @param keep The share of a cell's level that stays in the cell, the rest is averaged from its neighbours.
+     * @param evaporation Factor applied to every level after diffusion.
+     */
+    void disperse(final ObstacleGrid obstacles, final float keep, final float evaporation) {
+        this.active.clear();
+        for (int ty = 0; ty < this.tilesY; ty++) {
+            for (int tx = 0; tx < this.tilesX; tx++) {
+                if (EPSILON <= this.tileMax[ty * this.tilesX + tx]) {
+                    for (int ny = Math.max(0, ty - 1); ny <= Math.min(this.tilesY - 1, ty + 1); ny++) {
+                        this.active.set(ny * this.tilesX + Math.max(0, tx - 1),
+                                ny * this.tilesX + Math.min(this.tilesX - 1, tx + 1) + 1);
+                    }
+                }
+            }
+        }
+
+        //
+        // Whatever is left in quiet tiles of the buffer about to be swapped in must not come back to life.
+        //
+        for (int t = this.dirtyNext.nextSetBit(0); t >= 0; t = this.dirtyNext.nextSetBit(t + 1)) {
+            if (!this.active.get(t)) {
+                forEachTileRow(t, this::clearNext);
+            }
+        }
+        this.dirtyNext.clear();
+
+        for (int t = 0; t < this.tileMax.length; t++) {
+            if (this.active.get(t)) {
+                final int x0 = (t % this.tilesX) << TILE_SHIFT;
+                final int y0 = (t / this.tilesX) << TILE_SHIFT;
+                this.tileMax[t] = disperseRegion(x0, y0, Math.min(this.width, x0 + TILE_SIZE),
+                        Math.min(this.height, y0 + TILE_SIZE), obstacles, keep, evaporation);
+                if (0 < this.tileMax[t]) {
+                    this.dirtyNext.set(t);
+                }
+            } else {
+                this.tileMax[t] = 0;
+            }
+        }
+
+        swapBuffers();
+        final BitSet tmpDirty = this.dirtyLevels;
+        this.dirtyLevels = this.dirtyNext;
+        this.dirtyNext = tmpDirty;
+    }
+
+    /**
+     * Multiplies every level by {@code evaporation} without any diffusion.
+     */
+    void evaporate(final float evaporation) {
+        for (int t = 0; t < this.tileMax.length; t++) {
+            if (0 < this.tileMax[t]) {
+                forEachTileRow(t, (from, to) -> scale(from, to, evaporation));
+                this.tileMax[t] *= evaporation;
+            }
+        }
+    }
+
+    private interface RowRange {
+        void apply(int from, int to);
+    }
+
+    private void forEachTileRow(final int tile, final RowRange range) {
+        final int x0 = (tile % this.tilesX) << TILE_SHIFT;
+        final int y0 = (tile / this.tilesX) << TILE_SHIFT;
+        final int x1 = Math.min(this.width, x0 + TILE_SIZE);
+        final int y1 = Math.min(this.height, y0 + TILE_SIZE);
+        for (int y = y0; y < y1; y++) {
+            range.apply((y * this.width + x0) * this.channels, (y * this.width + x1) * this.channels);
+        }
+    }
+}
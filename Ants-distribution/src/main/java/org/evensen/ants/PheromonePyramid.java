@@ -0,0 +1,108 @@
+package org.evensen.ants;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Coarser copies of a {@code PheromoneGrid}, each level averaging 2 x 2 cells of the one below, for sampling scent
+ * far away from an ant where a single cell says little anyway.
+ * <p>
+ * Levels are rebuilt by {@code build} after each dispersal, tile by tile, skipping tiles that were quiet both now and
+ * at the previous build. Drops between builds only show up at level 0.
+ * </p>
+ */
+final class PheromonePyramid {
+    /**
+     * Number of levels above the grid itself, level {@code l} has cells of {@code 2^l} x {@code 2^l} grid cells.
+     */
+    static final int LEVELS = 3;
+
+    private final int channels;
+    private final int[] widths;
+    private final int[] heights;
+    private final float[][] levels;
+    private final BitSet written;
+
+    PheromonePyramid(final int width, final int height, final int channels) {
+        this.channels = channels;
+        this.widths = new int[LEVELS + 1];
+        this.heights = new int[LEVELS + 1];
+        this.levels = new float[LEVELS + 1][];
+        this.widths[0] = width;
+        this.heights[0] = height;
+        for (int l = 1; l <= LEVELS; l++) {
+            this.widths[l] = (this.widths[l - 1] + 1) >> 1;
+            this.heights[l] = (this.heights[l - 1] + 1) >> 1;
+            this.levels[l] = new float[this.widths[l] * this.heights[l] * channels];
+        }
+        this.written = new BitSet();
+    }
+
+    /**
+     * @return The level of {@code channel} in the level {@code level} cell covering grid cell {@code <x, y>}, which
+     * must be on the map.
+     */
+    float get(final int level, final int x, final int y, final int channel) {
+        return this.levels[level][((y >> level) * this.widths[level] + (x >> level)) * this.channels + channel];
+    }
+
+    void build(final PheromoneGrid grid) {
+        final int tilesX = grid.getTilesX();
+        for (int t = 0; t < grid.getTileCount(); t++) {
+            final boolean active = 0 < grid.getTileMax(t);
+            if (!active && !this.written.get(t)) {
+                continue;
+            }
+            final int x0 = (t % tilesX) << PheromoneGrid.TILE_SHIFT;
+            final int y0 = (t / tilesX) << PheromoneGrid.TILE_SHIFT;
+            final int x1 = Math.min(this.widths[0], x0 + PheromoneGrid.TILE_SIZE);
+            final int y1 = Math.min(this.heights[0], y0 + PheromoneGrid.TILE_SIZE);
+            for (int l = 1; l <= LEVELS; l++) {
+                final int lx0 = x0 >> l;
+                final int ly0 = y0 >> l;
+                final int lx1 = (x1 + (1 << l) - 1) >> l;
+                final int ly1 = (y1 + (1 << l) - 1) >> l;
+                if (active) {
+                    downsample(grid, l, lx0, ly0, lx1, ly1);
+                } else {
+                    for (int y = ly0; y < ly1; y++) {
+                        final int row = y * this.widths[l];
+                        Arrays.fill(this.levels[l], (row + lx0) * this.channels, (row + lx1) * this.channels, 0);
+                    }
+                }
+            }
+            this.written.set(t, active);
+        }
+    }
+
+    /**
+     * Fills cells {@code [x0, x1) x [y0, y1)} of {@code level} with averages of the level below.
+     */
+    private void downsample(final PheromoneGrid grid, final int level, final int x0, final int y0, final int x1,
+                            final int y1) {
+        final int c = this.channels;
+        final int belowWidth = this.widths[level - 1];
+        final int belowHeight = this.heights[level - 1];
+        final float[] below = this.levels[level - 1];
+        final float[] dst = this.levels[level];
+        for (int y = y0; y < y1; y++) {
+            final int by0 = 2 * y;
+            final int by1 = Math.min(belowHeight, by0 + 2);
+            for (int x = x0; x < x1; x++) {
+                final int bx0 = 2 * x;
+                final int bx1 = Math.min(belowWidth, bx0 + 2);
+                final float scale = 1.0f / ((by1 - by0) * (bx1 - bx0));
+                final int to = (y * this.widths[level] + x) * c;
+                for (int k = 0; k < c; k++) {
+                    float sum = 0;
+                    for (int by = by0; by < by1; by++) {
+                        for (int bx = bx0; bx < bx1; bx++) {
+                            sum += null == below ? grid.get(bx, by, k) : below[(by * belowWidth + bx) * c + k];
+                        }
+                    }
+                    dst[to + k] = sum * scale;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.Metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Streams the pheromone levels of every {@code interval}th dispersal to a file, for reading back with
+ * {@code PheromoneRecording}.
+ * <p>
+ * The simulation thread only quantises levels to 16 bits into a pooled buffer and hands it over; a daemon thread
+ * XORs each frame with the one written before it, so unchanged cells become zero, and deflates the result. At most
+ * {@code queueCapacity} frames wait for the writer. When it falls behind, frames are dropped rather than making the
+ * simulation wait, and counted in {@code Metrics.RECORDER_FRAMES_DROPPED}.
+ * </p>
+ * <p>
+ * File layout: {@code MAGIC, VERSION, width, height, channels} as big endian ints, then per frame the number of the
+ * dispersal it was taken after, the compressed length and the compressed XOR delta. Levels are stored as
+ * {@code round(level * QUANTUM)}, little endian, in the grid's own cell and channel order.
+ * </p>
+ */
+public final class PheromoneRecorder implements AutoCloseable {
+    static final int MAGIC = 0x414E5448; // "ANTH"
+    static final int VERSION = 1;
+    static final float QUANTUM = 65535.0f;
+
+    private static final Frame END = new Frame(-1, null);
+
+    private static final class Frame {
+        private final long index;
+        private final short[] levels;
+
+        private Frame(final long index, final short[] levels) {
+            this.index = index;
+            this.levels = levels;
+        }
+    }
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final int interval;
+    private final int poolSize;
+    private final BlockingQueue<Frame> queue;
+    private final BlockingQueue<short[]> free;
+    private final Thread writer;
+    private int allocated;
+    private long dispersals;
+    private int width;
+    private int height;
+    private int channels;
+    private volatile boolean closed;
+    private volatile boolean failed;
+
+    /**
+     * Starts recording to {@code path}, replacing whatever is there.
+     *
+     * @param interval Record after every {@code interval}th dispersal.
+     * @param queueCapacity Frames that may wait to be written before new ones are dropped.
+     */
+    public PheromoneRecorder(final Path path, final int interval, final int queueCapacity) throws IOException {
+        if (1 > interval || 1 > queueCapacity) {
+            throw new IllegalArgumentException("Interval and queue capacity must be positive");
+        }
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.interval = interval;
+        //
+        // Besides the queued frames, one buffer is filled by the simulation and one held by the writer to diff with.
+        //
+        this.poolSize = queueCapacity + 2;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity + 1);
+        this.free = new ArrayBlockingQueue<>(this.poolSize);
+        this.writer = new Thread(this::writeFrames, "pheromone-recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Called by the world after every dispersal. Never blocks.
+     */
+    void record(final PheromoneGrid grid) {
+        this.dispersals++;
+        if (this.closed || this.failed || 0 != this.dispersals % this.interval) {
+            return;
+        }
+        final int cells = grid.width * grid.height * grid.channels;
+        short[] levels = this.free.poll();
+        if (null == levels && this.allocated < this.poolSize) {
+            levels = new short[cells];
+            this.allocated++;
+        }
+        if (null == levels || levels.length != cells) {
+            Metrics.RECORDER_FRAMES_DROPPED.increment();
+            return;
+        }
+        grid.quantise(levels, QUANTUM);
+        this.width = grid.width;
+        this.height = grid.height;
+        this.channels = grid.channels;
+        if (!this.queue.offer(new Frame(this.dispersals, levels))) {
+            this.free.offer(levels);
+            Metrics.RECORDER_FRAMES_DROPPED.increment();
+        }
+    }
+
+    private void writeFrames() {
+        short[] previous = null;
+        ByteBuffer delta = null;
+        byte[] compressed = new byte[0];
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            for (Frame frame = this.queue.take(); END != frame; frame = this.queue.take()) {
+                final short[] levels = frame.levels;
+                if (null == previous) {
+                    previous = new short[levels.length];
+                    delta = ByteBuffer.allocate(Short.BYTES * levels.length).order(ByteOrder.LITTLE_ENDIAN);
+                    compressed = new byte[delta.capacity() / 4 + 64];
+                    this.out.writeInt(MAGIC);
+                    this.out.writeInt(VERSION);
+                    this.out.writeInt(this.width);
+                    this.out.writeInt(this.height);
+                    this.out.writeInt(this.channels);
+                }
+                delta.clear();
+                for (int i = 0; i < levels.length; i++) {
+                    delta.putShort((short) (levels[i] ^ previous[i]));
+                }
+                delta.flip();
+
+                deflater.reset();
+                deflater.setInput(delta);
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, 2 * compressed.length);
+                    }
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                this.out.writeLong(frame.index);
+                this.out.writeInt(length);
+                this.out.write(compressed, 0, length);
+                Metrics.RECORDER_FRAMES_WRITTEN.increment();
+
+                //
+                // The frame just written is what the next one is diffed with, the one before goes back to the pool.
+                //
+                this.free.offer(previous);
+                previous = levels;
+            }
+            this.out.flush();
+        } catch (final IOException e) {
+            System.err.println("Could not record pheromones to " + this.path + ": " + e.getMessage());
+            this.failed = true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the frames still queued and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            while (this.writer.isAlive() && !this.queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // The writer is still busy with a full queue.
+            }
+            this.writer.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.out.close();
+        }
+    }
+}
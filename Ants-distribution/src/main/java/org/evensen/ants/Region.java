@@ -0,0 +1,115 @@
+package org.evensen.ants;
+
+import java.util.BitSet;
+
+/**
+ * A set of cells given by a bounding box and a mask telling which cells within the box are included.
+ */
+public final class Region {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final BitSet mask;
+
+    private Region(final int x, final int y, final int width, final int height, final BitSet mask) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.mask = mask;
+    }
+
+    /**
+     * @return A region holding every cell of the {@code width} x {@code height} rectangle with its upper left corner
+     * at {@code <x, y>}.
+     */
+    public static Region rectangle(final int x, final int y, final int width, final int height) {
+        final BitSet mask = new BitSet(width * height);
+        mask.set(0, width * height);
+        return new Region(x, y, width, height, mask);
+    }
+
+    /**
+     * @return A region holding the cells of the {@code width} x {@code height} rectangle with its upper left corner
+     * at {@code <x, y>} whose bit, row by row, is set in {@code mask}. The mask is used as is, not copied.
+     */
+    public static Region mask(final int x, final int y, final int width, final int height, final BitSet mask) {
+        return new Region(x, y, width, height, mask);
+    }
+
+    /**
+     * @return A region holding the cells closest to the points on a unit grid around {@code center} that are
+     * strictly within {@code radius} from it, the same cells a brush of that radius would paint.
+     */
+    public static Region disc(final Position center, final float radius) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (float dx = -radius; radius > dx; dx += 1.0f) {
+            for (float dy = -radius; radius > dy; dy += 1.0f) {
+                if (radius * radius > dx * dx + dy * dy) {
+                    final int cx = (int) (center.getX() + dx);
+                    final int cy = (int) (center.getY() + dy);
+                    minX = Math.min(minX, cx);
+                    minY = Math.min(minY, cy);
+                    maxX = Math.max(maxX, cx);
+                    maxY = Math.max(maxY, cy);
+                }
+            }
+        }
+        if (minX > maxX) {
+            return new Region(0, 0, 0, 0, new BitSet());
+        }
+
+        final int width = maxX - minX + 1;
+        final int height = maxY - minY + 1;
+        final BitSet mask = new BitSet(width * height);
+        for (float dx = -radius; radius > dx; dx += 1.0f) {
+            for (float dy = -radius; radius > dy; dy += 1.0f) {
+                if (radius * radius > dx * dx + dy * dy) {
+                    final int cx = (int) (center.getX() + dx);
+                    final int cy = (int) (center.getY() + dy);
+                    mask.set((cy - minY) * width + cx - minX);
+                }
+            }
+        }
+        return new Region(minX, minY, width, height, mask);
+    }
+
+    /**
+     * @return Leftmost column of the bounding box.
+     */
+    public int getX() {
+        return this.x;
+    }
+
+    /**
+     * @return Topmost row of the bounding box.
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public boolean isEmpty() {
+        return this.mask.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if the cell at {@code <x, y>} is part of this region.
+     */
+    public boolean contains(final int x, final int y) {
+        final int rx = x - this.x;
+        final int ry = y - this.y;
+        return rx >= 0 && rx < this.width && ry >= 0 && ry < this.height && this.mask.get(ry * this.width + rx);
+    }
+}
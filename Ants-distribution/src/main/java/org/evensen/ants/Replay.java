@@ -0,0 +1,108 @@
+package org.evensen.ants;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Re-runs an {@code InputLog} headless, as fast as the simulation goes, and checks the state hashes in the log.
+ * Since a replay does the same work as the run it replays, minus drawing, it doubles as a regression benchmark.
+ * <p>
+ * Usage: {@code Replay <log> [runs]}. Exits with status 1 if any hash differs.
+ * </p>
+ */
+public final class Replay {
+    /**
+     * The outcome of one replay.
+     */
+    public static final class Result {
+        private final long epochs;
+        private final int hashesChecked;
+        private final List<Long> mismatches;
+        private final long nanos;
+
+        private Result(final long epochs, final int hashesChecked, final List<Long> mismatches, final long nanos) {
+            this.epochs = epochs;
+            this.hashesChecked = hashesChecked;
+            this.mismatches = Collections.unmodifiableList(mismatches);
+            this.nanos = nanos;
+        }
+
+        public long getEpochs() {
+            return this.epochs;
+        }
+
+        public int getHashesChecked() {
+            return this.hashesChecked;
+        }
+
+        /**
+         * @return The epochs after which the state differed from the log, empty if the replay was faithful.
+         */
+        public List<Long> getMismatches() {
+            return this.mismatches;
+        }
+
+        /**
+         * @return Time spent stepping, setting up the world and colony excluded.
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+    }
+
+    private Replay() {
+    }
+
+    public static Result run(final InputLog log) {
+        final Simulation simulation = Simulation.create(log, false);
+        final List<InputLog.Stroke> strokes = log.getStrokes();
+        final Map<Long, Long> hashes = log.getHashes();
+        final long lastEpoch = log.getLastEpoch();
+        final List<Long> mismatches = new ArrayList<>();
+        int checked = 0;
+        int s = 0;
+
+        final long start = System.nanoTime();
+        while (simulation.getEpoch() <= lastEpoch) {
+            final long epoch = simulation.getEpoch();
+            for (; s < strokes.size() && strokes.get(s).getEpoch() == epoch; s++) {
+                final InputLog.Stroke stroke = strokes.get(s);
+                simulation.setObstacles(stroke.getPosition(), stroke.getRadius(), stroke.isAdd());
+            }
+            simulation.step();
+            final Long expected = hashes.get(epoch);
+            if (null != expected) {
+                checked++;
+                if (expected != simulation.getStateHash()) {
+                    mismatches.add(epoch);
+                }
+            }
+        }
+        return new Result(lastEpoch, checked, mismatches, System.nanoTime() - start);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (1 > args.length) {
+            System.err.println("Usage: Replay <log> [runs]");
+            System.exit(2);
+        }
+        final InputLog log = InputLog.read(Path.of(args[0]));
+        final int runs = 1 < args.length ? Integer.parseInt(args[1]) : 1;
+        boolean faithful = true;
+        for (int run = 1; run <= runs; run++) {
+            final Result result = run(log);
+            System.out.printf(Locale.ROOT, "Run %d: %d epochs in %.3f s (%.1f epochs/s), %d of %d hashes differ%s%n",
+                    run, result.getEpochs(), result.getNanos() / 1.0e9,
+                    result.getEpochs() / (result.getNanos() / 1.0e9), result.getMismatches().size(),
+                    result.getHashesChecked(),
+                    result.getMismatches().isEmpty() ? "" : ", first after epoch " + result.getMismatches().get(0));
+            faithful &= result.getMismatches().isEmpty();
+        }
+        System.exit(faithful ? 0 : 1);
+    }
+}
@@ -0,0 +1,246 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+/**
+ * One horizontal strip of a world too large for a single process, stepped in lock step with the strips above and
+ * below it, which it talks to over a {@code ShardTransport}.
+ * <p>
+ * Of a world {@code height} rows high split into {@code n} shards, shard {@code i} owns rows
+ * {@code [i * height / n, (i + 1) * height / n)}. Its {@code MyAntWorld} also holds a halo of the neighbouring
+ * strips' rows, as deep as an ant senses. Ants only ever stand on owned rows: after every epoch, ants that stepped
+ * onto the halo are sent to the neighbour owning it, random state and all. After every dispersal, the owned rows
+ * next to each neighbour are sent to it to replace its halo, so ants near a border smell the scent across it as it
+ * was after the last dispersal.
+ * </p>
+ * <p>
+ * Home is where it is in an unsharded world; shards that don't hold it point their ants straight at it. Food sources
+ * are divided among the shards and stay on their rows. Terrain generated from the seed lines up across strips.
+ * Every shard only stores its own rows and halo, so memory use grows with the strip rather than the world.
+ * </p>
+ */
+public final class Shard {
+    /**
+     * Rows of halo beyond the ants' scan radius, covering the last step before an ant is migrated.
+     */
+    private static final int HALO_MARGIN = 2;
+    private static final long CONNECT_TIMEOUT_MILLIS = 60_000;
+
+    private final ShardTransport transport;
+    private final int shard;
+    private final int shards;
+    private final int height;
+    private final int halo;
+    private final int originY;
+    private final int ownTop;
+    private final int ownBottom;
+    private final MyAntWorld world;
+    private final AntColony colony;
+    private long epoch = 1;
+
+    /**
+     * Creates shard {@code transport.getShard()} of the world described by {@code config}.
+     *
+     * @throws IllegalArgumentException If any strip would have fewer rows than the halo, or {@code config} has more
+     *                                  than one colony, which sharded worlds don't support.
+     */
+    public Shard(final SimulationConfig config, final ShardTransport transport) {
+        this.transport = transport;
+        this.shard = transport.getShard();
+        this.shards = transport.getShards();
+        this.height = config.getHeight();
+        this.halo = getHalo(config.getAntConfig());
+        if (1 != config.getColonies()) {
+            throw new IllegalArgumentException("Sharded worlds hold one colony, not " + config.getColonies());
+        }
+        if (this.height / this.shards < this.halo) {
+            throw new IllegalArgumentException("Strips of " + this.height + " rows split " + this.shards +
+                    " ways are narrower than the halo of " + this.halo + " rows");
+        }
+
+        final int top = getFirstRow(this.shard);
+        final int bottom = getFirstRow(this.shard + 1);
+        this.originY = getOriginY(this.shard);
+        this.ownTop = top - this.originY;
+        this.ownBottom = bottom - this.originY;
+
+        final int foodSources = splitPoint(this.shard + 1, this.shards, config.getFoodSources()) -
+                splitPoint(this.shard, this.shards, config.getFoodSources());
+        final long seed = Hasher.hash(config.getSeed(), this.shard);
+        this.world = new MyAntWorld(config.getWidth(), Math.min(this.height, bottom + this.halo) - this.originY,
+                foodSources, config.getStorage(), seed,
+                new Position(config.getWidth() - 10, this.height / 2 - this.originY), this.ownTop, this.ownBottom);
+        this.world.setPheromonePyramid(config.hasPheromonePyramid());
+        if (config.hasTerrain()) {
+            new TerrainGenerator(config.getSeed()).apply(this.world, this.originY);
+            this.world.placeFoodSources(new TerrainGenerator(seed).findFoodPositions(this.world, foodSources,
+                    this.ownTop, this.ownBottom));
+        }
+
+        //
+        // The whole colony starts in the shard holding home, where AntColony puts it in an unsharded world.
+        //
+        final List<Ant> ants = new ArrayList<>();
+        if (top <= this.height / 2 && this.height / 2 < bottom) {
+            final SplittableRandom rng = new SplittableRandom(Hasher.hash(1));
+            for (int i = 0; i < config.getAntCount(); i++) {
+                ants.add(new PellAnt(new Position(config.getWidth() - 5,
+                        (float) (this.height / 2 + rng.nextGaussian()) - this.originY), config.getPheromoneRate(),
+                        config.getAntConfig()));
+            }
+        }
+        this.colony = new AntColony(ants, config.getPheromoneRate(), this.world, config.getAntConfig());
+    }
+
+    /**
+     * @return The rows of halo every shard keeps of its neighbours for ants configured by {@code config}.
+     */
+    static int getHalo(final AntConfig config) {
+        return (int) Math.ceil(config.scanRadius) + HALO_MARGIN;
+    }
+
+    /**
+     * @return The first of the {@code count} rows, or food sources, that {@code shard} of {@code shards} gets.
+     */
+    static int splitPoint(final int shard, final int shards, final int count) {
+        return (int) ((long) count * shard / shards);
+    }
+
+    private int getFirstRow(final int shard) {
+        return splitPoint(shard, this.shards, this.height);
+    }
+
+    private int getOriginY(final int shard) {
+        return Math.max(0, getFirstRow(shard) - this.halo);
+    }
+
+    public MyAntWorld getWorld() {
+        return this.world;
+    }
+
+    public AntColony getColony() {
+        return this.colony;
+    }
+
+    /**
+     * @return The row of the whole world that is row 0 of this shard's world.
+     */
+    public int getOriginY() {
+        return this.originY;
+    }
+
+    /**
+     * @return The epoch the next call to {@code step} runs, counting from 1.
+     */
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Moves every ant of this shard and, every {@value Simulation#DISPERSE_INTERVAL} epochs, disperses pheromones,
+     * then trades migrating ants and halo rows with the neighbours. Waits for the neighbours to get as far.
+     *
+     * @throws IOException If a neighbour can't be reached.
+     */
+    public void step() throws IOException {
+        this.colony.updateAnts(this.world);
+        final boolean disperse = 0 == this.epoch % Simulation.DISPERSE_INTERVAL;
+        if (disperse) {
+            final long disperseStart = System.nanoTime();
+            this.world.dispersePheromones();
+            Metrics.DISPERSE.recordSince(disperseStart);
+        }
+
+        if (0 < this.shard) {
+            send(this.shard - 1, ant -> ant.getPosition().getY() < this.ownTop, this.ownTop,
+                    this.ownTop + this.halo, disperse);
+        }
+        if (this.shard + 1 < this.shards) {
+            send(this.shard + 1, ant -> ant.getPosition().getY() >= this.ownBottom, this.ownBottom - this.halo,
+                    this.ownBottom, disperse);
+        }
+        if (0 < this.shard) {
+            receive(this.shard - 1, 0, this.ownTop, disperse);
+        }
+        if (this.shard + 1 < this.shards) {
+            receive(this.shard + 1, this.ownBottom, this.world.getHeight(), disperse);
+        }
+        this.epoch++;
+    }
+
+    /**
+     * Sends the ants matching {@code leaving}, and if {@code rows} is set the pheromones of rows {@code [y0, y1)}, to
+     * {@code neighbour}.
+     */
+    private void send(final int neighbour, final Predicate<Ant> leaving, final int y0, final int y1,
+                      final boolean rows) throws IOException {
+        final List<Ant> ants = this.colony.removeAnts(leaving);
+        final ByteBuffer message = ByteBuffer.allocate(Integer.BYTES + ants.size() * PellAnt.STATE_BYTES +
+                (rows ? (int) this.world.getPheromoneRowBytes(y1 - y0) : 0));
+        message.putInt(ants.size());
+        final float dy = this.originY - getOriginY(neighbour);
+        for (final Ant ant : ants) {
+            final PellAnt pellAnt = (PellAnt) ant;
+            pellAnt.translate(0, dy);
+            pellAnt.writeState(message);
+        }
+        if (rows) {
+            this.world.writePheromoneRows(message, y0, y1);
+        }
+        this.transport.send(neighbour, message.flip());
+    }
+
+    private void receive(final int neighbour, final int y0, final int y1, final boolean rows) throws IOException {
+        final ByteBuffer message = this.transport.receive(neighbour);
+        final int count = message.getInt();
+        final List<Ant> ants = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ants.add(PellAnt.readState(message, this.colony.getConfig()));
+        }
+        this.colony.addAnts(ants);
+        if (rows) {
+            this.world.readPheromoneRows(message, y0, y1);
+        }
+    }
+
+    /**
+     * Runs one shard of a world described by the system properties prefixed {@code ants.}, see
+     * {@code SimulationConfig}, connecting to its neighbours over TCP.
+     * <p>
+     * Usage: {@code Shard <shard> <shards> <epochs> [host:]<base port>}.
+     * </p>
+     */
+    public static void main(final String[] args) throws IOException {
+        if (4 != args.length) {
+            System.err.println("Usage: Shard <shard> <shards> <epochs> [host:]<base port>");
+            System.exit(2);
+        }
+        final int shard = Integer.parseInt(args[0]);
+        final int shards = Integer.parseInt(args[1]);
+        final long epochs = Long.parseLong(args[2]);
+        final int colon = args[3].lastIndexOf(':');
+        final String host = 0 > colon ? "localhost" : args[3].substring(0, colon);
+        final int basePort = Integer.parseInt(args[3].substring(colon + 1));
+        final SimulationConfig config = SimulationConfig.DEFAULT.with(System.getProperties(), "ants.");
+
+        try (ShardTransport transport = SocketShardTransport.connect(shard, shards, host, basePort,
+                CONNECT_TIMEOUT_MILLIS)) {
+            final Shard worker = new Shard(config, transport);
+            final long start = System.nanoTime();
+            while (worker.getEpoch() <= epochs) {
+                worker.step();
+            }
+            System.out.printf(Locale.ROOT, "Shard %d: %d epochs in %.3f s, %d ants, %d food delivered%n", shard,
+                    epochs, (System.nanoTime() - start) / 1.0e9, worker.getColony().getAnts().size(),
+                    worker.getWorld().getFoodCount());
+        }
+    }
+}
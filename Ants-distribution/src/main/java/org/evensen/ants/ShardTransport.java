@@ -0,0 +1,30 @@
+package org.evensen.ants;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries messages between the shards of a sharded simulation, see {@code Shard}. Every transport is the end point
+ * of one shard, and messages between two shards arrive in the order they were sent.
+ */
+public interface ShardTransport extends Closeable {
+    /**
+     * @return The index of the shard this is the end point of.
+     */
+    int getShard();
+
+    int getShards();
+
+    /**
+     * Hands the bytes of {@code message} from its position to its limit over for delivery to shard {@code to},
+     * without waiting for them to be received. {@code message} must not be changed afterwards.
+     */
+    void send(int to, ByteBuffer message) throws IOException;
+
+    /**
+     * @return The next message from shard {@code from}, waiting for it if none has arrived.
+     * @throws IOException If the message can't arrive anymore, or the wait is interrupted.
+     */
+    ByteBuffer receive(int from) throws IOException;
+}
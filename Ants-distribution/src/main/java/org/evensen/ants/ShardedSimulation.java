@@ -0,0 +1,107 @@
+package org.evensen.ants;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs every shard of a sharded world in this process, one thread per shard, for trying out sharding and its
+ * transports on one machine. For shards in separate processes, see {@code Shard.main}.
+ * <p>
+ * Usage: {@code ShardedSimulation <shards> <epochs> [local | socket <base port>]}. The world is described by the
+ * system properties prefixed {@code ants.}, see {@code SimulationConfig}. With {@code local} shards talk through
+ * queues, with {@code socket} through TCP on this machine.
+ * </p>
+ */
+public final class ShardedSimulation {
+    private static final long CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Creates the end point of one shard. Called on the thread that runs the shard.
+     */
+    public interface TransportFactory {
+        ShardTransport create(int shard) throws IOException;
+    }
+
+    private ShardedSimulation() {
+    }
+
+    /**
+     * Runs {@code shards} shards of the world described by {@code config} for {@code epochs} epochs.
+     *
+     * @return The shards after the run, by index.
+     * @throws IOException If any shard failed.
+     */
+    public static List<Shard> run(final SimulationConfig config, final int shards, final long epochs,
+                                  final TransportFactory transports) throws IOException, InterruptedException {
+        //
+        // Shards wait for each other every epoch, so each needs a thread of its own.
+        //
+        final ExecutorService executor = Executors.newFixedThreadPool(shards);
+        try {
+            final List<Future<Shard>> futures = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                final int shard = i;
+                futures.add(executor.submit(() -> {
+                    try (ShardTransport transport = transports.create(shard)) {
+                        final Shard worker = new Shard(config, transport);
+                        while (worker.getEpoch() <= epochs) {
+                            worker.step();
+                        }
+                        return worker;
+                    }
+                }));
+            }
+            final List<Shard> done = new ArrayList<>(shards);
+            for (final Future<Shard> future : futures) {
+                try {
+                    done.add(future.get());
+                } catch (final ExecutionException e) {
+                    throw new IOException("Shard " + done.size() + " failed", e.getCause());
+                }
+            }
+            return done;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (2 > args.length || (2 < args.length && !"local".equals(args[2]) &&
+                !("socket".equals(args[2]) && 4 == args.length))) {
+            System.err.println("Usage: ShardedSimulation <shards> <epochs> [local | socket <base port>]");
+            System.exit(2);
+        }
+        final int shards = Integer.parseInt(args[0]);
+        final long epochs = Long.parseLong(args[1]);
+        final SimulationConfig config = SimulationConfig.DEFAULT.with(System.getProperties(), "ants.");
+        final TransportFactory transports;
+        if (4 == args.length) {
+            final int basePort = Integer.parseInt(args[3]);
+            transports = shard -> SocketShardTransport.connect(shard, shards, "localhost", basePort,
+                    CONNECT_TIMEOUT_MILLIS);
+        } else {
+            transports = LocalShardTransport.create(shards)::get;
+        }
+
+        final long start = System.nanoTime();
+        final List<Shard> done = run(config, shards, epochs, transports);
+        final double seconds = (System.nanoTime() - start) / 1.0e9;
+        long ants = 0;
+        long food = 0;
+        for (int shard = 0; shard < done.size(); shard++) {
+            final Shard worker = done.get(shard);
+            System.out.printf(Locale.ROOT, "Shard %d: %d ants, %d food delivered%n", shard,
+                    worker.getColony().getAnts().size(), worker.getWorld().getFoodCount());
+            ants += worker.getColony().getAnts().size();
+            food += worker.getWorld().getFoodCount();
+        }
+        System.out.printf(Locale.ROOT, "%d shards: %d epochs in %.3f s (%.1f epochs/s), %d ants, %d food delivered%n",
+                shards, epochs, seconds, epochs / seconds, ants, food);
+    }
+}
@@ -0,0 +1,194 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Steps a world and its colonies one epoch at a time, the same way whether driven by the window or replayed from an
+ * {@code InputLog}.
+ * <p>
+ * Obstacle strokes may come from any thread but are only applied at the start of the next epoch, on the stepping
+ * thread, which is what makes a run reproducible from its log. A recording simulation adds every stroke it applies
+ * to its log, and a state hash every {@value HASH_INTERVAL} epochs.
+ * </p>
+ */
+public final class Simulation {
+    static final int DISPERSE_INTERVAL = 5;
+    static final int HASH_INTERVAL = 500;
+
+    private final MyAntWorld world;
+    private final List<AntColony> colonies;
+    private final InputLog log;
+    private final Queue<InputLog.Stroke> strokes = new ConcurrentLinkedQueue<>();
+    private long epoch = 1;
+
+    /**
+     * A simulation of an existing world and colony, e.g. restored from a checkpoint, that is not logged.
+     */
+    public Simulation(final MyAntWorld world, final AntColony colony) {
+        this(world, List.of(colony), null);
+    }
+
+    /**
+     * A simulation of an existing world and one colony per colony of the world, in order, that is not logged.
+     *
+     * @throws IllegalArgumentException If the world has another number of colonies.
+     */
+    public Simulation(final MyAntWorld world, final List<AntColony> colonies) {
+        this(world, colonies, null);
+    }
+
+    private Simulation(final MyAntWorld world, final List<AntColony> colonies, final InputLog log) {
+        if (world.getColonies() != colonies.size()) {
+            throw new IllegalArgumentException("A world of " + world.getColonies() +
+                    " colonies can't be simulated with " + colonies.size());
+        }
+        this.world = world;
+        this.colonies = List.copyOf(colonies);
+        this.log = log;
+    }
+
+    /**
+     * Creates the world and colony described by {@code log}.
+     *
+     * @param record Whether strokes and state hashes are added to {@code log} as the simulation runs.
+     */
+    public static Simulation create(final InputLog log, final boolean record) {
+        return create(log, record, null);
+    }
+
+    /**
+     * Creates the world and colony described by {@code log}.
+     *
+     * @param record Whether strokes and state hashes are added to {@code log} as the simulation runs.
+     * @param shared File to keep the world's pheromones and obstacles in, whatever storage the config asks for, or
+     *               {@code null} for the world to keep them itself.
+     */
+    public static Simulation create(final InputLog log, final boolean record, final WorldFile shared) {
+        return create(log.getConfig(), record ? log : null, shared);
+    }
+
+    /**
+     * Creates the world and colony described by {@code config}, without logging.
+     */
+    public static Simulation create(final SimulationConfig config) {
+        return create(config, null, null);
+    }
+
+    private static Simulation create(final SimulationConfig config, final InputLog log, final WorldFile shared) {
+        final MyAntWorld world = null == shared ?
+                new MyAntWorld(config.getWidth(), config.getHeight(), config.getFoodSources(), config.getColonies(),
+                        config.getStorage(), config.getSeed()) :
+                shared.createWorld(config.getFoodSources(), config.getSeed());
+        world.setPheromonePyramid(config.hasPheromonePyramid());
+        world.setObstacleDurability(config.getObstacleDurability());
+        if (config.hasTerrain()) {
+            final TerrainGenerator terrain = new TerrainGenerator(config.getSeed());
+            terrain.apply(world);
+            world.placeFoodSources(terrain.findFoodPositions(world, world.getFoodSources()));
+        }
+        final List<AntColony> colonies = new ArrayList<>(world.getColonies());
+        for (int c = 0; c < world.getColonies(); c++) {
+            final AntColony colony = new AntColony(config.getAntCount(), config.getPheromoneRate(), world.getNest(c),
+                    config.getAntConfig());
+            colony.setRespawn(config.isRespawn());
+            colony.setFoodPerBirth(config.getFoodPerBirth());
+            colonies.add(colony);
+        }
+        return new Simulation(world, colonies, log);
+    }
+
+    public MyAntWorld getWorld() {
+        return this.world;
+    }
+
+    /**
+     * @return The first colony, the only one unless the world has several.
+     */
+    public AntColony getColony() {
+        return this.colonies.get(0);
+    }
+
+    /**
+     * @return Every colony, colony {@code c} living in {@code getWorld().getColonyView(c)}.
+     */
+    public List<AntColony> getColonies() {
+        return this.colonies;
+    }
+
+    /**
+     * @return The epoch the next call to {@code step} runs, counting from 1.
+     */
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Adds, or erases, obstacles within {@code radius} of {@code center} at the start of the next epoch. May be
+     * called from any thread.
+     */
+    public void setObstacles(final Position center, final float radius, final boolean add) {
+        this.strokes.add(new InputLog.Stroke(0, center, radius, add));
+    }
+
+    /**
+     * Applies pending strokes, moves every ant of every colony and, every {@value DISPERSE_INTERVAL} epochs, disperses
+     * pheromones.
+     */
+    public void step() {
+        for (InputLog.Stroke stroke = this.strokes.poll(); null != stroke; stroke = this.strokes.poll()) {
+            this.world.setObstacles(Region.disc(stroke.getPosition(), stroke.getRadius()), stroke.isAdd());
+            if (null != this.log) {
+                this.log.addStroke(new InputLog.Stroke(this.epoch, stroke.getPosition(), stroke.getRadius(),
+                        stroke.isAdd()));
+            }
+        }
+
+        for (int c = 0; c < this.colonies.size(); c++) {
+            final AntColony colony = this.colonies.get(c);
+            synchronized (colony) {
+                colony.updateAnts(this.world.getColonyView(c));
+            }
+        }
+        if (0 == this.epoch % DISPERSE_INTERVAL) {
+            final long disperseStart = System.nanoTime();
+            this.world.dispersePheromones();
+            Metrics.DISPERSE.recordSince(disperseStart);
+        }
+        if (null != this.log && 0 == this.epoch % HASH_INTERVAL) {
+            this.log.addHash(this.epoch, getStateHash());
+        }
+        this.epoch++;
+    }
+
+    /**
+     * Logs the state hash after the last epoch run, so that a replay checks the run all the way to its end.
+     */
+    public void logFinalHash() {
+        if (null != this.log && 1 < this.epoch) {
+            this.log.addHash(this.epoch - 1, getStateHash());
+        }
+    }
+
+    /**
+     * @return A hash of the world and every ant, equal for runs that are in exactly the same state.
+     */
+    public long getStateHash() {
+        long ants = 0;
+        for (final AntColony colony : this.colonies) {
+            synchronized (colony) {
+                for (final Ant ant : colony.getAnts()) {
+                    ants = ants * 31 + Float.floatToRawIntBits(ant.getPosition().getX());
+                    ants = ants * 31 + Float.floatToRawIntBits(ant.getPosition().getY());
+                    ants = ants * 31 + Float.floatToRawIntBits(ant.getDirection());
+                    ants = ants * 31 + (ant.hasFood() ? 1 : 0) + (ant.isDead() ? 2 : 0);
+                }
+            }
+        }
+        return Hasher.hash(this.world.getStateChecksum(), ants);
+    }
+}
@@ -0,0 +1,207 @@
+package org.evensen.ants;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Everything a simulation is created from: the world, the colony and the ants' tunables. Immutable, and together
+ * with the seed it decides a headless run completely.
+ * <p>
+ * Configs can be read from properties, where the keys are {@code seed}, {@code width}, {@code height},
+ * {@code food_sources}, {@code colonies}, {@code ant_count}, {@code pheromone_rate}, {@code storage} ({@code float},
+ * {@code half} or {@code off_heap}), {@code terrain}, {@code pheromone_pyramid}, {@code respawn},
+ * {@code food_per_birth}, {@code obstacle_durability} and the keys of {@code AntConfig.Parameter}.
+ * </p>
+ */
+public final class SimulationConfig {
+    public static final SimulationConfig DEFAULT = new SimulationConfig(0, 400, 200, 4, 1, 10000, 0.7f,
+            PheromoneStorage.FLOAT, false, true, false, 0, 0, AntConfig.DEFAULT);
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final int foodSources;
+    private final int colonies;
+    private final int antCount;
+    private final float pheromoneRate;
+    private final PheromoneStorage storage;
+    private final boolean terrain;
+    private final boolean pheromonePyramid;
+    private final boolean respawn;
+    private final int foodPerBirth;
+    private final int obstacleDurability;
+    private final AntConfig antConfig;
+
+    /**
+     * @param seed Seeds the world's food and, if {@code terrain} is set, the terrain.
+     * @param colonies How many colonies share the world, each with its own home and pheromones.
+     * @param antCount Ants per colony.
+     * @param terrain Whether obstacles are generated by a {@code TerrainGenerator} at the start.
+     * @param pheromonePyramid Whether ants sample distant scent from the pheromone pyramid.
+     * @param respawn Whether every ant that dies is replaced by one born at its colony's nest.
+     * @param foodPerBirth How much food a colony delivers for every ant born, {@code 0} for none.
+     * @param obstacleDurability How many hits from ants an obstacle cell takes before it is worn away, {@code 0} for
+     *                           obstacles that never wear.
+     */
+    public SimulationConfig(final long seed, final int width, final int height, final int foodSources,
+                            final int colonies, final int antCount, final float pheromoneRate,
+                            final PheromoneStorage storage, final boolean terrain, final boolean pheromonePyramid,
+                            final boolean respawn, final int foodPerBirth, final int obstacleDurability,
+                            final AntConfig antConfig) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.foodSources = foodSources;
+        this.colonies = colonies;
+        this.antCount = antCount;
+        this.pheromoneRate = pheromoneRate;
+        this.storage = storage;
+        this.terrain = terrain;
+        this.pheromonePyramid = pheromonePyramid;
+        this.respawn = respawn;
+        this.foodPerBirth = foodPerBirth;
+        this.obstacleDurability = obstacleDurability;
+        this.antConfig = antConfig;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getFoodSources() {
+        return this.foodSources;
+    }
+
+    public int getColonies() {
+        return this.colonies;
+    }
+
+    public int getAntCount() {
+        return this.antCount;
+    }
+
+    public float getPheromoneRate() {
+        return this.pheromoneRate;
+    }
+
+    public PheromoneStorage getStorage() {
+        return this.storage;
+    }
+
+    public boolean hasTerrain() {
+        return this.terrain;
+    }
+
+    public boolean hasPheromonePyramid() {
+        return this.pheromonePyramid;
+    }
+
+    public boolean isRespawn() {
+        return this.respawn;
+    }
+
+    public int getFoodPerBirth() {
+        return this.foodPerBirth;
+    }
+
+    public int getObstacleDurability() {
+        return this.obstacleDurability;
+    }
+
+    public AntConfig getAntConfig() {
+        return this.antConfig;
+    }
+
+    public SimulationConfig withSeed(final long seed) {
+        return new SimulationConfig(seed, this.width, this.height, this.foodSources, this.colonies, this.antCount,
+                this.pheromoneRate, this.storage, this.terrain, this.pheromonePyramid, this.respawn, this.foodPerBirth,
+                this.obstacleDurability, this.antConfig);
+    }
+
+    /**
+     * @return This config with every value whose key, after {@code prefix}, is in {@code properties} replaced.
+     * @throws IllegalArgumentException If a value can't be parsed.
+     */
+    public SimulationConfig with(final Properties properties, final String prefix) {
+        final String storageName = properties.getProperty(prefix + "storage");
+        return new SimulationConfig(
+                Long.parseLong(properties.getProperty(prefix + "seed", Long.toString(this.seed)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "width", Integer.toString(this.width)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "height", Integer.toString(this.height)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "food_sources",
+                        Integer.toString(this.foodSources)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "colonies", Integer.toString(this.colonies)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "ant_count",
+                        Integer.toString(this.antCount)).trim()),
+                Float.parseFloat(properties.getProperty(prefix + "pheromone_rate",
+                        Float.toString(this.pheromoneRate)).trim()),
+                null == storageName ? this.storage :
+                        PheromoneStorage.valueOf(storageName.trim().toUpperCase(Locale.ROOT)),
+                Boolean.parseBoolean(properties.getProperty(prefix + "terrain",
+                        Boolean.toString(this.terrain)).trim()),
+                Boolean.parseBoolean(properties.getProperty(prefix + "pheromone_pyramid",
+                        Boolean.toString(this.pheromonePyramid)).trim()),
+                Boolean.parseBoolean(properties.getProperty(prefix + "respawn",
+                        Boolean.toString(this.respawn)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "food_per_birth",
+                        Integer.toString(this.foodPerBirth)).trim()),
+                Integer.parseInt(properties.getProperty(prefix + "obstacle_durability",
+                        Integer.toString(this.obstacleDurability)).trim()),
+                this.antConfig.with(properties, prefix));
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeLong(this.seed);
+        out.writeInt(this.width);
+        out.writeInt(this.height);
+        out.writeInt(this.foodSources);
+        out.writeInt(this.colonies);
+        out.writeInt(this.antCount);
+        out.writeFloat(this.pheromoneRate);
+        out.writeByte(this.storage.ordinal());
+        out.writeBoolean(this.terrain);
+        out.writeBoolean(this.pheromonePyramid);
+        out.writeBoolean(this.respawn);
+        out.writeInt(this.foodPerBirth);
+        out.writeByte(this.obstacleDurability);
+        final float[] ant = this.antConfig.toArray();
+        out.writeByte(ant.length);
+        for (final float value : ant) {
+            out.writeFloat(value);
+        }
+    }
+
+    static SimulationConfig read(final DataInput in) throws IOException {
+        final long seed = in.readLong();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final int foodSources = in.readInt();
+        final int colonies = in.readInt();
+        final int antCount = in.readInt();
+        final float pheromoneRate = in.readFloat();
+        final PheromoneStorage storage = PheromoneStorage.values()[in.readByte()];
+        final boolean terrain = in.readBoolean();
+        final boolean pheromonePyramid = in.readBoolean();
+        final boolean respawn = in.readBoolean();
+        final int foodPerBirth = in.readInt();
+        final int obstacleDurability = in.readUnsignedByte();
+        final float[] ant = new float[in.readUnsignedByte()];
+        for (int i = 0; i < ant.length; i++) {
+            ant[i] = in.readFloat();
+        }
+        return new SimulationConfig(seed, width, height, foodSources, colonies, antCount, pheromoneRate, storage,
+                terrain, pheromonePyramid, respawn, foodPerBirth, obstacleDurability,
+                AntConfig.fromArray(ant));
+    }
+}
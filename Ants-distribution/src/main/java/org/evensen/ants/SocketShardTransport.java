@@ -0,0 +1,199 @@
+package org.evensen.ants;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Carries messages between shards, possibly in different processes or on different machines, over TCP. Only
+ * neighbouring shards are connected, which is all {@code Shard} needs.
+ * <p>
+ * Shard {@code i} listens on {@code basePort + i} for shard {@code i + 1} and connects to shard {@code i - 1}, so
+ * shards may be started in any order. Messages are framed by their length. Every connection has a thread reading
+ * messages as they come, so that two shards sending large messages to each other at once can't deadlock on full
+ * socket buffers.
+ * </p>
+ */
+public final class SocketShardTransport implements ShardTransport {
+    private static final ByteBuffer CLOSED = ByteBuffer.allocate(0);
+    private static final long CONNECT_RETRY_MILLIS = 100;
+
+    private final int shard;
+    private final int shards;
+    /**
+     * Connections and received messages by shard, {@code null} for shards that aren't neighbours.
+     */
+    private final SocketChannel[] channels;
+    private final BlockingQueue<ByteBuffer>[] inboxes;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private SocketShardTransport(final int shard, final int shards) {
+        this.shard = shard;
+        this.shards = shards;
+        this.channels = new SocketChannel[shards];
+        this.inboxes = new BlockingQueue[shards];
+    }
+
+    /**
+     * Connects shard {@code shard} to its neighbours, waiting for them to come up.
+     *
+     * @param host The host every shard listens on, e.g. {@code localhost} for all shards on one machine.
+     * @param timeoutMillis How long to keep trying to reach the previous shard.
+     * @throws IOException If a neighbour can't be reached, or connects as another shard than expected.
+     */
+    public static SocketShardTransport connect(final int shard, final int shards, final String host,
+                                               final int basePort, final long timeoutMillis) throws IOException {
+        final SocketShardTransport transport = new SocketShardTransport(shard, shards);
+        try (ServerSocketChannel server = shard + 1 < shards ?
+                ServerSocketChannel.open().bind(new InetSocketAddress(host, basePort + shard)) : null) {
+            if (0 < shard) {
+                final SocketChannel channel = connect(new InetSocketAddress(host, basePort + shard - 1),
+                        timeoutMillis);
+                transport.channels[shard - 1] = channel;
+                writeFully(channel, ByteBuffer.allocate(Integer.BYTES).putInt(0, shard));
+            }
+            if (null != server) {
+                final SocketChannel channel = server.accept();
+                transport.channels[shard + 1] = channel;
+                final int next = readFully(channel, ByteBuffer.allocate(Integer.BYTES)).getInt(0);
+                if (shard + 1 != next) {
+                    throw new IOException("Shard " + next + " connected to shard " + shard);
+                }
+            }
+        } catch (final IOException e) {
+            transport.close();
+            throw e;
+        }
+
+        for (int neighbour = 0; neighbour < shards; neighbour++) {
+            final SocketChannel channel = transport.channels[neighbour];
+            if (null != channel) {
+                channel.socket().setTcpNoDelay(true);
+                final BlockingQueue<ByteBuffer> inbox = new LinkedBlockingQueue<>();
+                transport.inboxes[neighbour] = inbox;
+                final Thread reader = new Thread(() -> readMessages(channel, inbox),
+                        "shard-" + shard + "-from-" + neighbour);
+                reader.setDaemon(true);
+                reader.start();
+            }
+        }
+        return transport;
+    }
+
+    private static SocketChannel connect(final InetSocketAddress address, final long timeoutMillis)
+            throws IOException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            try {
+                return SocketChannel.open(address);
+            } catch (final ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted connecting to " + address);
+            }
+        }
+    }
+
+    private static void readMessages(final SocketChannel channel, final BlockingQueue<ByteBuffer> inbox) {
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        try {
+            while (true) {
+                length.clear();
+                readFully(channel, length);
+                inbox.add(readFully(channel, ByteBuffer.allocate(length.getInt(0))).flip());
+            }
+        } catch (final IOException e) {
+            inbox.add(CLOSED);
+        }
+    }
+
+    private static ByteBuffer readFully(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (0 > channel.read(buffer)) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+    private static void writeFully(final SocketChannel channel, final ByteBuffer... buffers) throws IOException {
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    @Override
+    public int getShard() {
+        return this.shard;
+    }
+
+    @Override
+    public int getShards() {
+        return this.shards;
+    }
+
+    private SocketChannel getChannel(final int neighbour) {
+        final SocketChannel channel = 0 <= neighbour && neighbour < this.shards ? this.channels[neighbour] : null;
+        if (null == channel) {
+            throw new IllegalArgumentException("Shard " + neighbour + " is not a neighbour of shard " + this.shard);
+        }
+        return channel;
+    }
+
+    @Override
+    public void send(final int to, final ByteBuffer message) throws IOException {
+        final SocketChannel channel = getChannel(to);
+        synchronized (channel) {
+            writeFully(channel, ByteBuffer.allocate(Integer.BYTES).putInt(0, message.remaining()),
+                    message.duplicate());
+        }
+    }
+
+    @Override
+    public ByteBuffer receive(final int from) throws IOException {
+        getChannel(from);
+        final BlockingQueue<ByteBuffer> inbox = this.inboxes[from];
+        final ByteBuffer message;
+        try {
+            message = inbox.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for shard " + from);
+        }
+        if (CLOSED == message) {
+            inbox.add(CLOSED);
+            throw new IOException("Shard " + from + " closed the connection to shard " + this.shard);
+        }
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final SocketChannel channel : this.channels) {
+            if (null != channel) {
+                try {
+                    channel.close();
+                } catch (final IOException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.evensen.ants;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Fills a world with obstacles wherever thresholded fractal noise is high, and optionally finds places for food in
+ * what is left open.
+ * <p>
+ * The map is generated in bands of {@value BAND_HEIGHT} rows, in parallel, and every band only depends on the seed,
+ * so the same seed gives the same terrain no matter how the bands are scheduled. Bands are then applied to the world
+ * one {@code setObstacles} call each, on the calling thread.
+ * </p>
+ */
+public final class TerrainGenerator {
+    private static final int BAND_HEIGHT = 64;
+    private static final double DEFAULT_FEATURE_SIZE = 256.0;
+    private static final double DEFAULT_THRESHOLD = 0.6;
+    private static final double DEFAULT_PERSISTENCE = 0.5;
+    private static final int DEFAULT_FIRST_OCTAVE = 1;
+    private static final int DEFAULT_LAST_OCTAVE = 5;
+    /**
+     * Food is only placed this far from obstacles, if the world tells obstacle distances.
+     */
+    private static final float FOOD_CLEARANCE = 10.0f;
+    private static final int FOOD_ATTEMPTS = 1000;
+
+    private final long seed;
+    private final double featureSize;
+    private final double threshold;
+    private final double persistence;
+    private final int firstOctave;
+    private final int lastOctave;
+
+    /**
+     * A generator seeded from {@code SeedGenerator} with default settings.
+     */
+    public TerrainGenerator() {
+        this(SeedGenerator.nextSeed());
+    }
+
+    /**
+     * A generator with default settings.
+     */
+    public TerrainGenerator(final long seed) {
+        this(seed, DEFAULT_FEATURE_SIZE, DEFAULT_THRESHOLD, DEFAULT_PERSISTENCE, DEFAULT_FIRST_OCTAVE,
+                DEFAULT_LAST_OCTAVE);
+    }
+
+    /**
+     * @param seed Gives rise to a unique terrain.
+     * @param featureSize Cells per noise unit, larger values give larger obstacles.
+     * @param threshold Noise level on {@code [0, 1]} above which a cell is an obstacle. Lower values give more
+     *                  obstacles.
+     * @param persistence How rapidly the amplitude falls off for each octave, see {@code FractalNoise}.
+     * @param firstOctave First noise octave.
+     * @param lastOctave Last noise octave.
+     */
+    public TerrainGenerator(final long seed, final double featureSize, final double threshold,
+                            final double persistence, final int firstOctave, final int lastOctave) {
+        this.seed = seed;
+        this.featureSize = featureSize;
+        this.threshold = threshold;
+        this.persistence = persistence;
+        this.firstOctave = firstOctave;
+        this.lastOctave = lastOctave;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Adds obstacles to {@code world} according to the noise. Cells within the ants' homes are left free.
+     */
+    public void apply(final AntWorld world) {
+        apply(world, 0);
+    }
+
+    /**
+     * Adds obstacles to {@code world} as if it were the rows from {@code originY} on of a larger world, so that
+     * strips of a map generated with the same seed line up. Cells within the ants' homes are left free.
+     */
+    public void apply(final AntWorld world, final int originY) {
+        final int width = world.getWidth();
+        final int height = world.getHeight();
+        final int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        final double[] xs = new double[width];
+        for (int x = 0; x < width; x++) {
+            xs[x] = x / this.featureSize;
+        }
+        final List<BitSet> masks = IntStream.range(0, bands)
+                .parallel()
+                .mapToObj(b -> generateBand(xs, originY + b * BAND_HEIGHT,
+                        originY + Math.min(height, (b + 1) * BAND_HEIGHT)))
+                .toList();
+
+        for (int b = 0; b < bands; b++) {
+            final int y0 = b * BAND_HEIGHT;
+            final int y1 = Math.min(height, y0 + BAND_HEIGHT);
+            final BitSet mask = masks.get(b);
+            for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+                if (isHome(world, new Position(i % width, y0 + i / width))) {
+                    mask.clear(i);
+                }
+            }
+            world.setObstacles(Region.mask(0, y0, width, y1 - y0, mask), true);
+        }
+    }
+
+    /**
+     * @return The obstacle cells of rows {@code [y0, y1)}, row by row.
+     */
+    private BitSet generateBand(final double[] xs, final int y0, final int y1) {
+        final double[] ys = new double[y1 - y0];
+        for (int y = y0; y < y1; y++) {
+            ys[y - y0] = y / this.featureSize;
+        }
+        final double[] noise = new double[xs.length * ys.length];
+        FractalNoise.getNoise(noise, xs, ys, this.persistence, this.firstOctave, this.lastOctave, this.seed);
+
+        final BitSet mask = new BitSet(noise.length);
+        for (int i = 0; i < noise.length; i++) {
+            if (noise[i] > this.threshold) {
+                mask.set(i);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Picks {@code count} free, reachable-looking places for food in {@code world}, the same ones every time for the
+     * same seed and terrain. Places are at least {@value FOOD_CLEARANCE} from obstacles where the world tells obstacle
+     * distances, and never at home.
+     *
+     * @return The positions found, fewer than {@code count} if the world is too crowded.
+     */
+    public List<Position> findFoodPositions(final AntWorld world, final int count) {
+        return findFoodPositions(world, count, 0, world.getHeight());
+    }
+
+    /**
+     * Like {@code findFoodPositions(world, count)}, but only picks places on rows {@code [y0, y1)}.
+     */
+    public List<Position> findFoodPositions(final AntWorld world, final int count, final int y0, final int y1) {
+        final Konadare192RNG rng = new Konadare192RNG(this.seed ^ 0x5DEECE66DL);
+        final List<Position> positions = new ArrayList<>(count);
+        for (int attempt = 0; attempt < FOOD_ATTEMPTS && positions.size() < count; attempt++) {
+            final Position p = new Position(rng.nextInt(world.getWidth()), y0 + rng.nextInt(y1 - y0));
+            if (!world.isObstacle(p) && !isHome(world, p) &&
+                    (0 == world.getObstacleDistance(p) || FOOD_CLEARANCE <= world.getObstacleDistance(p))) {
+                positions.add(p);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return Whether {@code p} is at the home of any of the colonies in {@code world}.
+     */
+    private static boolean isHome(final AntWorld world, final Position p) {
+        return world instanceof MyAntWorld myWorld ? myWorld.isAnyHome(p) : world.isHome(p);
+    }
+}
@@ -0,0 +1,660 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.DisperseEvent;
+import org.evensen.ants.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@code AntWorld} for very large, sparse maps.
+ * <p>
+ * The world is split into {@value TILE_SIZE} x {@value TILE_SIZE} tiles. Pheromones, food and obstacles are
+ * only allocated for tiles where something has been put, so memory use follows the part of the map the ants
+ * actually visit rather than its total size. Dispersal only visits tiles that carry scent (plus their direct
+ * neighbours, which the scent may spread into) and tiles whose scent has evaporated are given back.
+ * </p>
+ * <p>
+ * Usage: {@code TiledAntWorld <width> <height> <epochs> [ants [seed]]} runs a colony headless in such a world and
+ * prints how many tiles it ended up using.
+ * </p>
+ */
+public class TiledAntWorld implements AntWorld {
+    public static final int TILE_SHIFT = 6;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+    private static final int CHANNELS = 2;
+    private static final int FORAGING = 0;
+    private static final int FOOD = 1;
+    private static final int PADDED_SIZE = TILE_SIZE + 2;
+    private static final int MAX_POOLED_TILES = 256;
+
+    private static final float KEEP = 0.5f;
+    private static final float EVAPORATION = 0.95f;
+    /**
+     * Levels below this are considered evaporated and snapped to zero.
+     */
+    private static final float EPSILON = 1.0E-6f;
+    private static final int HOME_RADIUS = 10;
+    private static final int FOOD_RADIUS = 10;
+    private static final int FOOD_AMOUNT = 2000;
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    private final Tile[] tiles;
+    private final List<FoodSource> foodSources;
+    private final Position homeSource;
+    private final Konadare192RNG random; // Where food sources are placed
+    private final ArrayDeque<float[]> pheromonePool;
+    private final float[] padded;
+    private final LongAdder foodDelivered = new LongAdder();
+    private final List<ObstacleListener> obstacleListeners = new CopyOnWriteArrayList<>();
+
+    private static final class Tile {
+        /**
+         * Both channels back to back, {@code null} while the tile carries no scent.
+         */
+        float[] pheromones;
+        long[] obstacles;
+        long[] food;
+        List<FoodSource> foodSources;
+
+        boolean isEmpty() {
+            return null == this.pheromones && null == this.obstacles && null == this.food &&
+                    null == this.foodSources;
+        }
+    }
+
+    public TiledAntWorld(final int width, final int height, final int foodSourcesCount) {
+        this(width, height, foodSourcesCount, SeedGenerator.nextSeed());
+    }
+
+    /**
+     * @param seed Decides where food sources are placed, the same seed gives the same world every time.
+     */
+    public TiledAntWorld(final int width, final int height, final int foodSourcesCount, final long seed) {
+        this.width = width;
+        this.height = height;
+        this.tilesX = (width + TILE_MASK) >> TILE_SHIFT;
+        this.tilesY = (height + TILE_MASK) >> TILE_SHIFT;
+        this.tiles = new Tile[this.tilesX * this.tilesY];
+        this.foodSources = new ArrayList<>();
+        this.homeSource = new Position(width - 10, height / 2);
+        this.random = new Konadare192RNG(seed);
+        this.pheromonePool = new ArrayDeque<>();
+        this.padded = new float[PADDED_SIZE * PADDED_SIZE];
+
+        for (int i = 0; i < foodSourcesCount; i++) {
+            addFoodSource(new Position(this.random.nextInt(width), this.random.nextInt(height)));
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public int getFoodSources() {
+        return this.foodSources.size();
+    }
+
+    /**
+     * @return The number of tiles that currently hold any data at all.
+     */
+    public int getAllocatedTiles() {
+        int allocated = 0;
+        for (final Tile t : this.tiles) {
+            if (null != t) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+
+    private boolean isWithinBounds(final int x, final int y) {
+        return x >= 0 && x < this.width && y >= 0 && y < this.height;
+    }
+
+    private int tileIndex(final int x, final int y) {
+        return (y >> TILE_SHIFT) * this.tilesX + (x >> TILE_SHIFT);
+    }
+
+    private static int cellIndex(final int x, final int y) {
+        return ((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK);
+    }
+
+    private static boolean testBit(final long[] bits, final int cell) {
+        return null != bits && 0 != (bits[cell >>> 6] & (1L << cell));
+    }
+
+    private static boolean isAllClear(final long[] bits) {
+        for (final long word : bits) {
+            if (0 != word) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Tile tileAt(final int x, final int y) {
+        return this.tiles[tileIndex(x, y)];
+    }
+
+    private Tile getOrCreateTile(final int x, final int y) {
+        final int i = tileIndex(x, y);
+        Tile t = this.tiles[i];
+        if (null == t) {
+            t = new Tile();
+            this.tiles[i] = t;
+        }
+        return t;
+    }
+
+    private void releaseIfEmpty(final int tileIndex) {
+        final Tile t = this.tiles[tileIndex];
+        if (null != t && t.isEmpty()) {
+            this.tiles[tileIndex] = null;
+        }
+    }
+
+    private void releasePheromones(final float[] pheromones) {
+        if (MAX_POOLED_TILES > this.pheromonePool.size()) {
+            this.pheromonePool.push(pheromones);
+        }
+    }
+
+    private float[] allocatePheromones() {
+        final float[] pheromones = this.pheromonePool.poll();
+        return null == pheromones ? new float[CHANNELS * TILE_CELLS] : pheromones;
+    }
+
+    private float getStrength(final Position p, final int channel) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (isWithinBounds(x, y)) {
+            final Tile t = tileAt(x, y);
+            if (null != t && null != t.pheromones) {
+                return t.pheromones[channel * TILE_CELLS + cellIndex(x, y)];
+            }
+        }
+        return 0;
+    }
+
+    private void dropPheromone(final Position p, final float amount, final int channel) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (isWithinBounds(x, y)) {
+            final Tile t = getOrCreateTile(x, y);
+            if (null == t.pheromones) {
+                t.pheromones = allocatePheromones();
+                Arrays.fill(t.pheromones, 0);
+            }
+            final int i = channel * TILE_CELLS + cellIndex(x, y);
+            t.pheromones[i] = Math.min(1.0f, t.pheromones[i] + amount);
+        }
+    }
+
+    @Override
+    public boolean isObstacle(final Position p) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (!isWithinBounds(x, y)) {
+            return true;
+        }
+        final Tile t = tileAt(x, y);
+        return null != t && testBit(t.obstacles, cellIndex(x, y));
+    }
+
+    @Override
+    public void setObstacle(final Position p, final boolean add) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (setObstacleCell(x, y, add)) {
+            notifyObstacleListeners(x, y, 1, 1);
+        }
+    }
+
+    @Override
+    public void setObstacles(final Region region, final boolean add) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int y = Math.max(0, region.getY()); y < Math.min(this.height, region.getY() + region.getHeight()); y++) {
+            for (int x = Math.max(0, region.getX()); x < Math.min(this.width, region.getX() + region.getWidth()); x++) {
+                if (region.contains(x, y) && setObstacleCell(x, y, add)) {
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        if (minX <= maxX) {
+            notifyObstacleListeners(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        }
+    }
+
+    /**
+     * @return {@code true} if the cell changed.
+     */
+    private boolean setObstacleCell(final int x, final int y, final boolean add) {
+        if (!isWithinBounds(x, y)) {
+            return false;
+        }
+        final int cell = cellIndex(x, y);
+        final long mask = 1L << cell;
+        if (add) {
+            final Tile t = getOrCreateTile(x, y);
+            if (null == t.obstacles) {
+                t.obstacles = new long[TILE_CELLS / 64];
+            }
+            final long old = t.obstacles[cell >>> 6];
+            t.obstacles[cell >>> 6] = old | mask;
+            return 0 == (old & mask);
+        }
+        final Tile t = tileAt(x, y);
+        if (null == t || null == t.obstacles || 0 == (t.obstacles[cell >>> 6] & mask)) {
+            return false;
+        }
+        t.obstacles[cell >>> 6] &= ~mask;
+        if (isAllClear(t.obstacles)) {
+            t.obstacles = null;
+            releaseIfEmpty(tileIndex(x, y));
+        }
+        return true;
+    }
+
+    private void notifyObstacleListeners(final int x, final int y, final int width, final int height) {
+        for (final ObstacleListener listener : this.obstacleListeners) {
+            listener.obstaclesChanged(x, y, width, height);
+        }
+    }
+
+    @Override
+    public boolean addObstacleListener(final ObstacleListener listener) {
+        return this.obstacleListeners.add(listener);
+    }
+
+    @Override
+    public void removeObstacleListener(final ObstacleListener listener) {
+        this.obstacleListeners.remove(listener);
+    }
+
+    @Override
+    public void hitObstacle(final Position p, final float strength) {
+    }
+
+    @Override
+    public void dropForagingPheromone(final Position p, final float amount) {
+        dropPheromone(p, amount, FORAGING);
+    }
+
+    @Override
+    public void dropFoodPheromone(final Position p, final float amount) {
+        dropPheromone(p, amount, FOOD);
+    }
+
+    @Override
+    public float getForagingStrength(final Position p) {
+        return getStrength(p, FORAGING);
+    }
+
+    @Override
+    public float getFoodStrength(final Position p) {
+        return getStrength(p, FOOD);
+    }
+
+    @Override
+    public float getDeadAntCount(final Position p) {
+        return 0;
+    }
+
+    @Override
+    public boolean isHome(final Position p) {
+        return this.homeSource.isWithinRadius(p, HOME_RADIUS);
+    }
+
+    @Override
+    public boolean containsFood(final Position p) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (isWithinBounds(x, y)) {
+            final Tile t = tileAt(x, y);
+            return null != t && testBit(t.food, cellIndex(x, y));
+        }
+        return false;
+    }
+
+    @Override
+    public void pickUpFood(final Position p) {
+        final int x = (int) p.getX();
+        final int y = (int) p.getY();
+        if (!isWithinBounds(x, y)) {
+            return;
+        }
+        final Tile t = tileAt(x, y);
+        if (null == t || null == t.foodSources) {
+            return;
+        }
+        for (final FoodSource foodSource : t.foodSources) {
+            if (foodSource.containsFood(p)) {
+                Metrics.FOOD_PICKED.increment();
+                if (!foodSource.takeFood()) {
+                    Metrics.FOOD_SOURCES_DEPLETED.increment();
+                    removeFoodSource(foodSource);
+                    addFoodSource(randomFreePosition());
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void dropFood(final Position p) {
+        this.foodDelivered.increment();
+        Metrics.FOOD_DELIVERED.increment();
+    }
+
+    @Override
+    public long getFoodCount() {
+        return this.foodDelivered.sum();
+    }
+
+    @Override
+    public boolean isRegionEmpty(final int x, final int y, final int width, final int height) {
+        final int x0 = Math.max(0, x);
+        final int y0 = Math.max(0, y);
+        final int x1 = Math.min(this.width, x + width) - 1;
+        final int y1 = Math.min(this.height, y + height) - 1;
+        if (x1 < x0 || y1 < y0) {
+            return true;
+        }
+        final float dx = Math.max(0, Math.max(x0 - this.homeSource.getX(), this.homeSource.getX() - x1));
+        final float dy = Math.max(0, Math.max(y0 - this.homeSource.getY(), this.homeSource.getY() - y1));
+        if (dx * dx + dy * dy <= HOME_RADIUS * HOME_RADIUS) {
+            return false;
+        }
+        for (int ty = y0 >> TILE_SHIFT; ty <= y1 >> TILE_SHIFT; ty++) {
+            for (int tx = x0 >> TILE_SHIFT; tx <= x1 >> TILE_SHIFT; tx++) {
+                if (null != this.tiles[ty * this.tilesX + tx]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Position randomFreePosition() {
+        Position p;
+        do {
+            p = new Position(this.random.nextInt(this.width), this.random.nextInt(this.height));
+        } while (isObstacle(p));
+        return p;
+    }
+
+    private void addFoodSource(final Position p) {
+        final FoodSource foodSource = new FoodSource(p, FOOD_RADIUS, FOOD_AMOUNT);
+        this.foodSources.add(foodSource);
+        forEachCoveredTile(foodSource, (tx, ty) -> {
+            final Tile t = getOrCreateTile(tx << TILE_SHIFT, ty << TILE_SHIFT);
+            if (null == t.foodSources) {
+                t.foodSources = new ArrayList<>(1);
+            }
+            t.foodSources.add(foodSource);
+        });
+        rasterizeFood(foodSource, true);
+    }
+
+    private void removeFoodSource(final FoodSource foodSource) {
+        this.foodSources.remove(foodSource);
+        rasterizeFood(foodSource, false);
+        forEachCoveredTile(foodSource, (tx, ty) -> {
+            final int i = ty * this.tilesX + tx;
+            final Tile t = this.tiles[i];
+            t.foodSources.remove(foodSource);
+            if (t.foodSources.isEmpty()) {
+                t.foodSources = null;
+            } else {
+                // Sources may overlap, so put back whatever the removed source covered.
+                for (final FoodSource other : t.foodSources) {
+                    rasterizeFood(other, true);
+                }
+            }
+            if (null != t.food && isAllClear(t.food)) {
+                t.food = null;
+            }
+            releaseIfEmpty(i);
+        });
+    }
+
+    private interface TileConsumer {
+        void accept(int tx, int ty);
+    }
+
+    private void forEachCoveredTile(final FoodSource foodSource, final TileConsumer consumer) {
+        final int x = (int) foodSource.getPosition().getX();
+        final int y = (int) foodSource.getPosition().getY();
+        final int r = foodSource.getRadius();
+        final int tx0 = Math.max(0, x - r) >> TILE_SHIFT;
+        final int ty0 = Math.max(0, y - r) >> TILE_SHIFT;
+        final int tx1 = Math.min(this.width - 1, x + r) >> TILE_SHIFT;
+        final int ty1 = Math.min(this.height - 1, y + r) >> TILE_SHIFT;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                consumer.accept(tx, ty);
+            }
+        }
+    }
+
+    private void rasterizeFood(final FoodSource foodSource, final boolean hasFood) {
+        final int x = (int) foodSource.getPosition().getX();
+        final int y = (int) foodSource.getPosition().getY();
+        final int radius = foodSource.getRadius();
+        final int limit = (radius - 1) * (radius - 1);
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                final int nx = x + dx;
+                final int ny = y + dy;
+                if (isWithinBounds(nx, ny) && dx * dx + dy * dy <= limit) {
+                    final Tile t = tileAt(nx, ny);
+                    final int cell = cellIndex(nx, ny);
+                    if (hasFood) {
+                        if (null == t.food) {
+                            t.food = new long[TILE_CELLS / 64];
+                        }
+                        t.food[cell >>> 6] |= 1L << cell;
+                    } else if (null != t.food) {
+                        t.food[cell >>> 6] &= ~(1L << cell);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispersePheromones() {
+        final DisperseEvent event = new DisperseEvent();
+        event.begin();
+
+        //
+        // Scent can only spread one cell per pass, so tiles next to scented tiles are all that need a look.
+        //
+        final BitSet candidates = new BitSet(this.tiles.length);
+        for (int ty = 0; ty < this.tilesY; ty++) {
+            for (int tx = 0; tx < this.tilesX; tx++) {
+                final Tile t = this.tiles[ty * this.tilesX + tx];
+                if (null != t && null != t.pheromones) {
+                    for (int ny = Math.max(0, ty - 1); ny <= Math.min(this.tilesY - 1, ty + 1); ny++) {
+                        candidates.set(ny * this.tilesX + Math.max(0, tx - 1),
+                                ny * this.tilesX + Math.min(this.tilesX - 1, tx + 1) + 1);
+                    }
+                }
+            }
+        }
+
+        //
+        // All new values are computed before any tile is updated, since neighbours read the old ones.
+        //
+        final int[] updated = new int[candidates.cardinality()];
+        final float[][] results = new float[updated.length][];
+        int n = 0;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final float[] result = allocatePheromones();
+            if (disperseTile(i % this.tilesX, i / this.tilesX, result)) {
+                updated[n] = i;
+                results[n] = result;
+                n++;
+            } else {
+                releasePheromones(result);
+            }
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final Tile t = this.tiles[i];
+            if (null != t && null != t.pheromones) {
+                releasePheromones(t.pheromones);
+                t.pheromones = null;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            final int tx = updated[i] % this.tilesX;
+            final int ty = updated[i] / this.tilesX;
+            getOrCreateTile(tx << TILE_SHIFT, ty << TILE_SHIFT).pheromones = results[i];
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            releaseIfEmpty(i);
+        }
+
+        for (final FoodSource foodSource : this.foodSources) {
+            dropFoodPheromone(foodSource.getPosition(), 1);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.width = this.width;
+            event.height = this.height;
+            event.channels = CHANNELS;
+            event.foodSources = this.foodSources.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Computes the next pheromone levels for one tile into {@code result}.
+     *
+     * @return {@code false} if every level in the tile evaporated, in which case {@code result} is garbage.
+     */
+    private boolean disperseTile(final int tx, final int ty, final float[] result) {
+        final int x0 = tx << TILE_SHIFT;
+        final int y0 = ty << TILE_SHIFT;
+        final int tileWidth = Math.min(TILE_SIZE, this.width - x0);
+        final int tileHeight = Math.min(TILE_SIZE, this.height - y0);
+        final Tile tile = this.tiles[ty * this.tilesX + tx];
+        final long[] obstacles = null == tile ? null : tile.obstacles;
+        boolean alive = false;
+
+        for (int c = 0; c < CHANNELS; c++) {
+            gatherPadded(x0, y0, c);
+            final int offset = c * TILE_CELLS;
+            for (int y = 0; y < TILE_SIZE; y++) {
+                for (int x = 0; x < TILE_SIZE; x++) {
+                    final int cell = (y << TILE_SHIFT) | x;
+                    if (x >= tileWidth || y >= tileHeight || testBit(obstacles, cell)) {
+                        result[offset + cell] = 0;
+                        continue;
+                    }
+                    final int p = (y + 1) * PADDED_SIZE + x + 1;
+                    final float npl = this.padded[p - PADDED_SIZE - 1] + this.padded[p - PADDED_SIZE] +
+                            this.padded[p - PADDED_SIZE + 1] + this.padded[p - 1] + this.padded[p + 1] +
+                            this.padded[p + PADDED_SIZE - 1] + this.padded[p + PADDED_SIZE] +
+                            this.padded[p + PADDED_SIZE + 1];
+                    float level = (((1 - KEEP) * npl) / 8.0f + KEEP * this.padded[p]) * EVAPORATION;
+                    if (EPSILON > level) {
+                        level = 0;
+                    } else {
+                        alive = true;
+                    }
+                    result[offset + cell] = level;
+                }
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Copies channel {@code c} of the tile at {@code <x0, y0>} into {@code padded}, with a one cell border taken
+     * from the neighbouring tiles. Off-map border cells repeat the edge value.
+     */
+    private void gatherPadded(final int x0, final int y0, final int c) {
+        final boolean fullWidth = this.width - x0 >= TILE_SIZE;
+        for (int py = 0; py < PADDED_SIZE; py++) {
+            final int y = Math.max(0, Math.min(this.height - 1, y0 + py - 1));
+            final int row = py * PADDED_SIZE;
+            final Tile rowTile = tileAt(x0, y);
+            if (!fullWidth) {
+                for (int px = 1; px <= TILE_SIZE; px++) {
+                    this.padded[row + px] = levelAt(Math.min(this.width - 1, x0 + px - 1), y, c);
+                }
+            } else if (null != rowTile && null != rowTile.pheromones) {
+                System.arraycopy(rowTile.pheromones, c * TILE_CELLS + ((y & TILE_MASK) << TILE_SHIFT),
+                        this.padded, row + 1, TILE_SIZE);
+            } else {
+                Arrays.fill(this.padded, row + 1, row + 1 + TILE_SIZE, 0);
+            }
+            this.padded[row] = levelAt(Math.max(0, x0 - 1), y, c);
+            this.padded[row + PADDED_SIZE - 1] = levelAt(Math.min(this.width - 1, x0 + TILE_SIZE), y, c);
+        }
+    }
+
+    private float levelAt(final int x, final int y, final int c) {
+        final Tile t = tileAt(x, y);
+        return null == t || null == t.pheromones ? 0 : t.pheromones[c * TILE_CELLS + cellIndex(x, y)];
+    }
+
+    public static void main(final String[] args) {
+        if (3 > args.length || 5 < args.length) {
+            System.err.println("Usage: TiledAntWorld <width> <height> <epochs> [ants [seed]]");
+            System.exit(2);
+        }
+        final int width = Integer.parseInt(args[0]);
+        final int height = Integer.parseInt(args[1]);
+        final long epochs = Long.parseLong(args[2]);
+        final SimulationConfig config = SimulationConfig.DEFAULT;
+        final int ants = 3 < args.length ? Integer.parseInt(args[3]) : config.getAntCount();
+        final long seed = 4 < args.length ? Long.parseLong(args[4]) : SeedGenerator.nextSeed();
+        final TiledAntWorld world = new TiledAntWorld(width, height, config.getFoodSources(), seed);
+        final AntColony colony = new AntColony(ants, config.getPheromoneRate(), world, config.getAntConfig());
+
+        //
+        // Same schedule as Simulation: ants move every epoch, pheromones disperse every few.
+        //
+        final long start = System.nanoTime();
+        for (long epoch = 1; epoch <= epochs; epoch++) {
+            colony.updateAnts(world);
+            if (0 == epoch % Simulation.DISPERSE_INTERVAL) {
+                world.dispersePheromones();
+            }
+        }
+        final double seconds = (System.nanoTime() - start) / 1.0e9;
+        System.out.printf(Locale.ROOT, "%d x %d, seed %d: %d epochs in %.3f s (%.1f epochs/s), %d ants, " +
+                        "%d food delivered%n", width, height, seed, epochs, seconds, epochs / seconds,
+                colony.getAnts().size(), world.getFoodCount());
+        System.out.printf(Locale.ROOT, "%d of %d tiles allocated (%.2f%%)%n", world.getAllocatedTiles(),
+                world.tiles.length, 100.0 * world.getAllocatedTiles() / world.tiles.length);
+    }
+}
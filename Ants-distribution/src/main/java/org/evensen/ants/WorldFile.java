@@ -0,0 +1,199 @@
+package org.evensen.ants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * A world's pheromone levels and obstacles kept in a memory mapped file, updated live by the simulation and readable
+ * by other processes, e.g. a viewer, straight from the page cache without going through the simulating process.
+ * <p>
+ * The file holds a {@value HEADER_BYTES} byte header, the obstacle bitmap and two buffers of pheromone levels, all
+ * little endian and each mapped on its own, so that only a single buffer is limited to 2 GB. The simulation disperses
+ * from one level buffer into the other, then records in the header which one is current and counts the dispersal.
+ * Obstacles are copied into the file as they change. Readers don't synchronise with the simulation, so what they
+ * read while a dispersal is under way may be from either side of it.
+ * </p>
+ * <p>
+ * Usage: {@code WorldFile <file>} prints a summary of the world in the file.
+ * </p>
+ */
+public final class WorldFile {
+    private static final int MAGIC = 0x57544E41; // "ANTW" in little endian.
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CURRENT_OFFSET = 20;
+    private static final int DISPERSALS_OFFSET = 24;
+
+    private final int width;
+    private final int height;
+    private final int channels;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private final LongBuffer obstacles;
+    private final MappedByteBuffer[] levels;
+    private MyAntWorld world;
+
+    private WorldFile(final FileChannel channel, final int width, final int height, final int channels,
+                      final boolean writable) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.writable = writable;
+        final FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        final long obstacleBytes = (long) Long.BYTES * (((long) width * height + 63) >>> 6);
+        final long levelBytes = (long) Float.BYTES * width * height * channels;
+        if (Integer.MAX_VALUE < levelBytes) {
+            throw new IllegalArgumentException("Pheromone buffers of " + levelBytes + " bytes are too large to map");
+        }
+        this.header = map(channel, mode, 0, HEADER_BYTES);
+        this.obstacles = map(channel, mode, HEADER_BYTES, obstacleBytes).asLongBuffer();
+        this.levels = new MappedByteBuffer[]{
+                map(channel, mode, HEADER_BYTES + obstacleBytes, levelBytes),
+                map(channel, mode, HEADER_BYTES + obstacleBytes + levelBytes, levelBytes)};
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel, final FileChannel.MapMode mode, final long offset,
+                                        final long size) throws IOException {
+        final MappedByteBuffer buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Creates, or replaces, a file for a world of the given size. The world itself is made by {@code createWorld}.
+     */
+    public static WorldFile create(final Path path, final int width, final int height) throws IOException {
+        return create(path, width, height, 1);
+    }
+
+    /**
+     * Creates, or replaces, a file for a world of the given size shared by {@code colonies} colonies.
+     */
+    public static WorldFile create(final Path path, final int width, final int height, final int colonies)
+            throws IOException {
+        final int channels = colonies * MyAntWorld.CHANNELS;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final WorldFile file = new WorldFile(channel, width, height, channels, true);
+            file.header.putInt(4, VERSION)
+                    .putInt(8, width)
+                    .putInt(12, height)
+                    .putInt(16, channels)
+                    .putInt(CURRENT_OFFSET, 0)
+                    .putLong(DISPERSALS_OFFSET, 0)
+                    .putInt(0, MAGIC);
+            return file;
+        }
+    }
+
+    /**
+     * Opens a file written by another process for reading.
+     *
+     * @throws IOException If {@code path} can't be read or isn't a world file of this version.
+     */
+    public static WorldFile open(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && 0 <= channel.read(header)) {
+                // Read the whole header.
+            }
+            if (header.hasRemaining() || MAGIC != header.getInt(0)) {
+                throw new IOException(path + " is not a world file");
+            }
+            if (VERSION != header.getInt(4)) {
+                throw new IOException(path + " is a version " + header.getInt(4) + " world file, expected " +
+                        VERSION);
+            }
+            return new WorldFile(channel, header.getInt(8), header.getInt(12), header.getInt(16), false);
+        }
+    }
+
+    /**
+     * Creates the world kept in this file, with the pheromones in the file and the obstacles copied to it as they
+     * change.
+     *
+     * @throws IllegalStateException If the file was opened for reading or already has a world.
+     */
+    public MyAntWorld createWorld(final int foodSources, final long seed) {
+        if (!this.writable || null != this.world) {
+            throw new IllegalStateException("The world file is " + (this.writable ? "already in use" : "read only"));
+        }
+        final OffHeapPheromoneGrid pheromones = new OffHeapPheromoneGrid(this.width, this.height, this.channels,
+                this.levels[0], this.levels[1], current -> {
+                    this.header.putInt(CURRENT_OFFSET, current);
+                    this.header.putLong(DISPERSALS_OFFSET, this.header.getLong(DISPERSALS_OFFSET) + 1);
+                });
+        final MyAntWorld created = new MyAntWorld(this.width, this.height, foodSources, pheromones, seed);
+        final ObstacleGrid grid = created.getObstacleGrid();
+        grid.copyWords(this.obstacles, 0, this.width * this.height);
+        created.addObstacleListener((x, y, w, h) ->
+                grid.copyWords(this.obstacles, y * this.width + x, (y + h - 1) * this.width + x + w));
+        this.world = created;
+        return created;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getChannels() {
+        return this.channels;
+    }
+
+    /**
+     * @return How many times the pheromones have been dispersed, a new value means new levels.
+     */
+    public long getDispersals() {
+        return this.header.getLong(DISPERSALS_OFFSET);
+    }
+
+    public boolean isObstacle(final int x, final int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            return true;
+        }
+        final int i = y * this.width + x;
+        return 0 != (this.obstacles.get(i >>> 6) & (1L << i));
+    }
+
+    /**
+     * @return The current level of {@code channel} at {@code <x, y>}, 0 is foraging and 1 food scent.
+     */
+    public float getLevel(final int x, final int y, final int channel) {
+        final int current = this.header.getInt(CURRENT_OFFSET);
+        return this.levels[current].getFloat(Float.BYTES * ((y * this.width + x) * this.channels + channel));
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (1 != args.length) {
+            System.err.println("Usage: WorldFile <file>");
+            System.exit(2);
+        }
+        final WorldFile file = open(Path.of(args[0]));
+        long obstacles = 0;
+        final double[] scent = new double[file.getChannels()];
+        for (int y = 0; y < file.getHeight(); y++) {
+            for (int x = 0; x < file.getWidth(); x++) {
+                obstacles += file.isObstacle(x, y) ? 1 : 0;
+                for (int channel = 0; channel < scent.length; channel++) {
+                    scent[channel] += file.getLevel(x, y, channel);
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "%d x %d, %d dispersals, %d obstacle cells%n", file.getWidth(),
+                file.getHeight(), file.getDispersals(), obstacles);
+        for (int channel = 0; channel < scent.length; channel++) {
+            System.out.printf(Locale.ROOT, "Channel %d: total level %.3f%n", channel, scent[channel]);
+        }
+    }
+}
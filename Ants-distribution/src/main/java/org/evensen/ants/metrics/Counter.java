@@ -0,0 +1,32 @@
+package org.evensen.ants.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing, contention friendly counter.
+ */
+public final class Counter {
+    private final String name;
+    private final LongAdder adder;
+
+    Counter(final String name) {
+        this.name = name;
+        this.adder = new LongAdder();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void increment() {
+        this.adder.increment();
+    }
+
+    public void add(final long amount) {
+        this.adder.add(amount);
+    }
+
+    public long get() {
+        return this.adder.sum();
+    }
+}
@@ -0,0 +1,30 @@
+package org.evensen.ants.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning one pheromone dispersal pass.
+ */
+@Name("org.evensen.ants.Disperse")
+@Label("Pheromone Dispersal")
+@Category({"Ants", "Model"})
+@Description("Evaporation and diffusion of all pheromone channels")
+public class DisperseEvent extends jdk.jfr.Event {
+    @Label("Grid Width")
+    public int width;
+
+    @Label("Grid Height")
+    public int height;
+
+    @Label("Channels")
+    public int channels;
+
+    @Label("Food Sources")
+    public int foodSources;
+
+    public DisperseEvent() {
+    }
+}
@@ -0,0 +1,31 @@
+package org.evensen.ants.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning one call to {@code AntColony.updateAnts}.
+ */
+@Name("org.evensen.ants.Epoch")
+@Label("Ant Epoch")
+@Category({"Ants", "Model"})
+@Description("One update of every ant in a colony")
+public class EpochEvent extends jdk.jfr.Event {
+    @Label("Ants")
+    public int ants;
+
+    @Label("Moved Ants")
+    @Description("Ants that were alive and got to move")
+    public int movedAnts;
+
+    @Label("World Width")
+    public int worldWidth;
+
+    @Label("World Height")
+    public int worldHeight;
+
+    public EpochEvent() {
+    }
+}
@@ -0,0 +1,33 @@
+package org.evensen.ants.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a single food pickup. There are many of these, so it's disabled unless asked for.
+ */
+@Name("org.evensen.ants.FoodPickup")
+@Label("Food Pickup")
+@Category({"Ants", "Food"})
+@Description("An ant picked up a unit of food")
+@Enabled(false)
+public class FoodPickupEvent extends jdk.jfr.Event {
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Food Left")
+    @Description("Food left in the source after the pickup")
+    public int foodLeft;
+
+    @Label("Depleted")
+    public boolean depleted;
+
+    public FoodPickupEvent() {
+    }
+}
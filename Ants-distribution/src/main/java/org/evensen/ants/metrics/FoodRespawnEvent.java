@@ -0,0 +1,30 @@
+package org.evensen.ants.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning the creation of a new food source after an old one ran out.
+ */
+@Name("org.evensen.ants.FoodRespawn")
+@Label("Food Respawn")
+@Category({"Ants", "Food"})
+@Description("A depleted food source was replaced by a new one")
+public class FoodRespawnEvent extends jdk.jfr.Event {
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Food Amount")
+    public int foodAmount;
+
+    @Label("Food Sources")
+    public int foodSources;
+
+    public FoodRespawnEvent() {
+    }
+}
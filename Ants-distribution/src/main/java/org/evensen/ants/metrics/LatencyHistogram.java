@@ -0,0 +1,136 @@
+package org.evensen.ants.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram in the spirit of HdrHistogram.
+ * <p>
+ * Values (nanoseconds) are put in log-linear buckets: every power of two is split into {@code 2^SUB_BITS}
+ * linear sub-buckets, which bounds the relative error of any reported percentile to {@code 2^-SUB_BITS}
+ * (about 1.6%) while covering the whole positive {@code long} range with a few thousand counters.
+ * </p>
+ * <p>
+ * Recording is wait free and does not allocate, so it is safe to call from the simulation loop.
+ * </p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SUB_MASK = SUB_COUNT - 1;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount;
+    private final AtomicLong totalNanos;
+    private final AtomicLong maxNanos;
+
+    LatencyHistogram(final String name) {
+        this.name = name;
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.totalCount = new AtomicLong();
+        this.totalNanos = new AtomicLong();
+        this.maxNanos = new AtomicLong();
+    }
+
+    private static int indexOf(final long value) {
+        if (SUB_COUNT > value) {
+            return (int) Math.max(0, value);
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) | (int) ((value >>> shift) & SUB_MASK);
+    }
+
+    private static long lowestValueAt(final int index) {
+        if (SUB_COUNT > index) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BITS) - 1;
+        return ((long) (index & SUB_MASK) | SUB_COUNT) << shift;
+    }
+
+    private static long midpointValueAt(final int index) {
+        if (SUB_COUNT > index) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BITS) - 1;
+        return lowestValueAt(index) + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * @return The name this histogram was registered with.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records one observation.
+     *
+     * @param nanos The observed latency, in nanoseconds. Negative values are recorded as zero.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(indexOf(value));
+        this.totalCount.incrementAndGet();
+        this.totalNanos.addAndGet(value);
+        this.maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Convenience for {@code record(System.nanoTime() - startNanos)}.
+     *
+     * @param startNanos A value previously obtained from {@code System.nanoTime()}.
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return this.totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        final long count = this.totalCount.get();
+        return 0 == count ? 0.0 : this.totalNanos.get() / (double) count;
+    }
+
+    /**
+     * Gives the value at a certain percentile, e.g. {@code 99.0} for p99.
+     *
+     * @param percentile Percentile on {@code [0, 100]}.
+     * @return The (approximate) latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long count = this.totalCount.get();
+        if (0 == count) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+        long acc = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acc += this.counts.get(i);
+            if (acc >= rank) {
+                return Math.min(midpointValueAt(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Clears all recorded values. Concurrent recordings may or may not survive a reset.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.totalCount.set(0);
+        this.totalNanos.set(0);
+        this.maxNanos.set(0);
+    }
+}
@@ -0,0 +1,54 @@
+package org.evensen.ants.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The process wide registry together with the instruments the simulation and its renderers report to.
+ */
+public enum Metrics {
+    ;
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static final LatencyHistogram MODEL_TICK = REGISTRY.histogram("model.tick");
+    public static final LatencyHistogram ANT_UPDATE = REGISTRY.histogram("model.ants.update");
+    public static final LatencyHistogram DISPERSE = REGISTRY.histogram("model.world.disperse");
+    public static final LatencyHistogram RENDER_FRAME = REGISTRY.histogram("render.frame");
+    public static final LatencyHistogram RENDER_OBSTACLES = REGISTRY.histogram("render.obstacles");
+    public static final LatencyHistogram RENDER_WORLD = REGISTRY.histogram("render.world");
+    public static final LatencyHistogram RENDER_FOOD = REGISTRY.histogram("render.food");
+    public static final LatencyHistogram RENDER_COLONY = REGISTRY.histogram("render.colony");
+    public static final LatencyHistogram RENDER_SNAPSHOT = REGISTRY.histogram("render.colony.snapshot");
+
+    public static final Counter ANTS_MOVED = REGISTRY.counter("model.ants.moved");
+    public static final Counter ANTS_DIED = REGISTRY.counter("model.ants.died");
+    public static final Counter ANTS_BORN = REGISTRY.counter("model.ants.born");
+    public static final Counter FOOD_DELIVERED = REGISTRY.counter("model.food.delivered");
+    public static final Counter FOOD_PICKED = REGISTRY.counter("model.food.picked");
+    public static final Counter FOOD_SOURCES_DEPLETED = REGISTRY.counter("model.food.sources.depleted");
+    public static final Counter OBSTACLES_WORN = REGISTRY.counter("model.obstacles.worn");
+    public static final Counter MODEL_ALLOCATED_BYTES = REGISTRY.counter("model.allocated.bytes");
+    public static final Counter RECORDER_FRAMES_WRITTEN = REGISTRY.counter("recorder.frames.written");
+    public static final Counter RECORDER_FRAMES_DROPPED = REGISTRY.counter("recorder.frames.dropped");
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_COUNTING = initAllocationCounting();
+
+    private static boolean initAllocationCounting() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean t && t.isThreadAllocatedMemorySupported()) {
+            t.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Bytes allocated so far by the calling thread, or -1 if the JVM can't tell.
+     */
+    public static long currentThreadAllocatedBytes() {
+        if (ALLOCATION_COUNTING) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,153 @@
+package org.evensen.ants.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named histograms and counters. Instruments are created on first use and live as long as the registry.
+ */
+public final class MetricsRegistry {
+    private static final String JMX_DOMAIN = "org.evensen.ants";
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry without any instruments.
+     */
+    public MetricsRegistry() {
+    }
+
+    /**
+     * Gives the histogram registered as {@code name}, creating it if needed.
+     */
+    public LatencyHistogram histogram(final String name) {
+        return this.histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Gives the counter registered as {@code name}, creating it if needed.
+     */
+    public Counter counter(final String name) {
+        return this.counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * @return All histograms, sorted by name.
+     */
+    public List<LatencyHistogram> getHistograms() {
+        return sorted(this.histograms.values(), Comparator.comparing(LatencyHistogram::getName));
+    }
+
+    /**
+     * @return All counters, sorted by name.
+     */
+    public List<Counter> getCounters() {
+        return sorted(this.counters.values(), Comparator.comparing(Counter::getName));
+    }
+
+    private static <T> List<T> sorted(final Collection<T> values, final Comparator<T> order) {
+        final List<T> list = new ArrayList<>(values);
+        list.sort(order);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Exposes every instrument created so far on the platform MBean server, under the domain
+     * {@value JMX_DOMAIN}. Instruments that are already registered are left alone, so it is fine to call this
+     * again after new instruments have been created.
+     */
+    public void registerMBeans() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (final LatencyHistogram h : getHistograms()) {
+                final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Histogram,name=" + h.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new StandardMBean(new HistogramView(h), HistogramMXBean.class, true), name);
+                }
+            }
+            for (final Counter c : getCounters()) {
+                final ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Counter,name=" + c.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new StandardMBean(c::get, CounterMXBean.class, true), name);
+                }
+            }
+        } catch (final JMException e) {
+            throw new IllegalStateException("Could not register metrics with JMX", e);
+        }
+    }
+
+    public interface HistogramMXBean {
+        long getCount();
+
+        double getMeanNanos();
+
+        long getP50Nanos();
+
+        long getP90Nanos();
+
+        long getP99Nanos();
+
+        long getP999Nanos();
+
+        long getMaxNanos();
+    }
+
+    @FunctionalInterface
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    private static final class HistogramView implements HistogramMXBean {
+        private final LatencyHistogram histogram;
+
+        private HistogramView(final LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return this.histogram.getCount();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return this.histogram.getMeanNanos();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return this.histogram.getValueAtPercentile(50.0);
+        }
+
+        @Override
+        public long getP90Nanos() {
+            return this.histogram.getValueAtPercentile(90.0);
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return this.histogram.getValueAtPercentile(99.0);
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return this.histogram.getValueAtPercentile(99.9);
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return this.histogram.getMaxNanos();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.evensen.ants.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically appends the state of a {@code MetricsRegistry} to a file, either as CSV (one row per instrument
+ * and dump) or as JSON lines (one object per dump). Dumping is done on a daemon thread of its own.
+ * <p>
+ * Counters are reported together with their rate per second since the previous dump.
+ * </p>
+ */
+public final class MetricsReporter implements AutoCloseable {
+    private static final String CSV_HEADER =
+            "timestamp_ms,type,name,count,mean_ns,p50_ns,p90_ns,p99_ns,p999_ns,max_ns,rate_per_s";
+
+    public enum Format {
+        CSV,
+        JSON;
+
+        /**
+         * @return {@code JSON} if the file name ends with {@code .json}, otherwise {@code CSV}.
+         */
+        public static Format forPath(final Path path) {
+            return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    private final MetricsRegistry registry;
+    private final Path path;
+    private final Format format;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Long> lastCounts = new HashMap<>();
+    private long lastDump;
+
+    /**
+     * Starts reporting {@code registry} to {@code path} every {@code periodMillis} milliseconds.
+     */
+    public MetricsReporter(final MetricsRegistry registry, final Path path, final Format format,
+                           final long periodMillis) {
+        this.registry = registry;
+        this.path = path;
+        this.format = format;
+        this.lastDump = System.currentTimeMillis();
+        //
+        // Rates are since the reporter started, so the first dump doesn't report what was counted before it.
+        // Counters created later start from zero.
+        //
+        for (final Counter c : registry.getCounters()) {
+            this.lastCounts.put(c.getName(), c.get());
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.scheduleAtFixedRate(this::dumpQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (final UncheckedIOException e) {
+            System.err.println("Could not write metrics to " + this.path + ": " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Appends the current state of all instruments to the file.
+     */
+    public synchronized void dump() {
+        final long now = System.currentTimeMillis();
+        final boolean writeHeader = Format.CSV == this.format && !Files.exists(this.path);
+        try (BufferedWriter out = Files.newBufferedWriter(this.path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (Format.CSV == this.format) {
+                if (writeHeader) {
+                    out.write(CSV_HEADER);
+                    out.newLine();
+                }
+                writeCsv(out, now);
+            } else {
+                writeJson(out, now);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.lastDump = now;
+        }
+    }
+
+    /**
+     * @return Increase of {@code c} per second since the last dump, remembering its current value for the next.
+     */
+    private double rate(final Counter c, final long count, final long now) {
+        final long previous = this.lastCounts.getOrDefault(c.getName(), 0L);
+        this.lastCounts.put(c.getName(), count);
+        return (count - previous) * 1000.0 / Math.max(1L, now - this.lastDump);
+    }
+
+    private void writeCsv(final BufferedWriter out, final long now) throws IOException {
+        for (final LatencyHistogram h : this.registry.getHistograms()) {
+            out.write(String.format(Locale.ROOT, "%d,histogram,%s,%d,%.1f,%d,%d,%d,%d,%d",
+                    now, h.getName(), h.getCount(), h.getMeanNanos(),
+                    h.getValueAtPercentile(50.0), h.getValueAtPercentile(90.0),
+                    h.getValueAtPercentile(99.0), h.getValueAtPercentile(99.9), h.getMaxNanos()));
+            out.write(',');
+            out.newLine();
+        }
+        for (final Counter c : this.registry.getCounters()) {
+            final long count = c.get();
+            out.write(String.format(Locale.ROOT, "%d,counter,%s,%d,,,,,,,%.1f", now, c.getName(), count,
+                    rate(c, count, now)));
+            out.newLine();
+        }
+    }
+
+    private void writeJson(final BufferedWriter out, final long now) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"timestamp_ms\":").append(now).append(",\"histograms\":{");
+        String separator = "";
+        for (final LatencyHistogram h : this.registry.getHistograms()) {
+            sb.append(separator).append('"').append(h.getName()).append("\":");
+            sb.append(String.format(Locale.ROOT,
+                    "{\"count\":%d,\"mean_ns\":%.1f,\"p50_ns\":%d,\"p90_ns\":%d,\"p99_ns\":%d,\"p999_ns\":%d,\"max_ns\":%d}",
+                    h.getCount(), h.getMeanNanos(), h.getValueAtPercentile(50.0), h.getValueAtPercentile(90.0),
+                    h.getValueAtPercentile(99.0), h.getValueAtPercentile(99.9), h.getMaxNanos()));
+            separator = ",";
+        }
+        sb.append("},\"counters\":{");
+        separator = "";
+        for (final Counter c : this.registry.getCounters()) {
+            final long count = c.get();
+            sb.append(separator).append('"').append(c.getName()).append("\":");
+            sb.append(String.format(Locale.ROOT, "{\"count\":%d,\"rate_per_s\":%.1f}", count, rate(c, count, now)));
+            separator = ",";
+        }
+        sb.append("}}");
+        out.write(sb.toString());
+        out.newLine();
+    }
+
+    /**
+     * Stops the reporting thread after writing a final dump.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+        dumpQuietly();
+    }
+}
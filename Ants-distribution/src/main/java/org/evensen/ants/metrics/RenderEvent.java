@@ -0,0 +1,34 @@
+package org.evensen.ants.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning one call to a renderer.
+ */
+@Name("org.evensen.ants.Render")
+@Label("Render")
+@Category({"Ants", "Rendering"})
+@Description("One pass of a renderer")
+public class RenderEvent extends jdk.jfr.Event {
+    @Label("Renderer")
+    public String renderer;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Ants")
+    public int ants;
+
+    @Label("Cached")
+    @Description("The renderer reused its cached image")
+    public boolean cached;
+
+    public RenderEvent() {
+    }
+}
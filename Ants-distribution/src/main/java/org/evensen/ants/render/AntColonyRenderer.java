@@ -4,6 +4,8 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import org.evensen.ants.AntColony;
 import org.evensen.ants.Ant;
+import org.evensen.ants.metrics.Metrics;
+import org.evensen.ants.metrics.RenderEvent;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -14,17 +16,18 @@ public enum AntColonyRenderer {
     private static final Color FORAGING_ANT_COLOR = Color.color(0.4, 0.4, 1.0, 0.5);
     private static final Color FOOD_CARRYING_ANT_COLOR = Color.color(0.7, 0.7, 0.0, 0.5);
     private static final Color DEAD_ANT_COLOR = Color.color(0.8, 0.0, 0.0, 0.5);
-    private static long renderingTime = 0;
-    private static long renders = 0;
 
     public static void render(final GraphicsContext g, final AntColony colony) {
-        long startTime = System.nanoTime();
-        renders++;
+        final RenderEvent event = new RenderEvent();
+        event.begin();
+        final long startTime = System.nanoTime();
         g.save();
 
         g.setLineWidth(0.5);
         g.setFill(Color.BLACK);
-        List<Ant> colonyView = new ArrayList<>(colony.getAnts());
+        final long snapshotStartTime = System.nanoTime();
+        final List<Ant> colonyView = new ArrayList<>(colony.getAnts());
+        Metrics.RENDER_SNAPSHOT.recordSince(snapshotStartTime);
 
         for (final Ant ant : colonyView) {
             final float antX1 = (float) (Math.cos(ant.getDirection()) + ant.getPosition().getX());
@@ -42,13 +45,12 @@ public enum AntColonyRenderer {
             g.fillOval((antX1 - 0.5f), (antY1 - 0.5f), 1, 1);
         }
         g.restore();
-        long lastRenderingTime = (System.nanoTime() - startTime);
-        renderingTime += lastRenderingTime;
-        /*
-        System.out.println(
-                "Mean ant rendering time: " + renderingTime / 1_000_000_000.0 / renders + "\tlast render time: " +
-                        lastRenderingTime / 1_000_000_000.0);
-
-         */
+        Metrics.RENDER_COLONY.recordSince(startTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.renderer = "colony";
+            event.ants = colonyView.size();
+            event.commit();
+        }
     }
 }
@@ -5,14 +5,67 @@ import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
+import org.evensen.ants.metrics.Metrics;
+import org.evensen.ants.metrics.RenderEvent;
 
-import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+/**
+ * Renders an {@code AntWorld} as layers of images: per colony its foraging scent at the bottom, its food scent and its
+ * home, and once for the whole world the dead ants on top.
+ * <p>
+ * Each world keeps its layer images between frames. Only {@value BLOCK_SIZE} x {@value BLOCK_SIZE} blocks with
+ * anything in them are drawn, one at a time through a block sized buffer, and blocks that have emptied are cleared,
+ * so nothing the size of the world is allocated per frame. Must be called from the JavaFX application thread.
+ * </p>
+ */
 public enum AntWorldRenderer {
     ;
     private static final int HOME_COLOR = convertToARGB(Color.color(1.0, 0.2, 0.1, 0.8));
     private static final int BASE_FOOD_CARRYING_SCENT_COLOR = convertToBaseRGB(Color.color(0.8, 0.8, 0.0));
     private static final int BASE_FORAGING_SCENT_COLOR = convertToBaseRGB(Color.color(0.0, 0.4, 0.7));
+    private static final int BASE_DEAD_ANT_COLOR = convertToBaseRGB(Color.color(0.5, 0.0, 0.0));
+    private static final int BLOCK_SIZE = 64;
+    private static final int FORAGING_LAYER = 0;
+    private static final int FOOD_LAYER = 1;
+    private static final int HOME_LAYER = 2;
+    private static final int COLONY_LAYERS = 3;
+
+    private static final int[][] BLOCK_PIXELS = new int[COLONY_LAYERS][BLOCK_SIZE * BLOCK_SIZE];
+    private static final int[] EMPTY_BLOCK = new int[BLOCK_SIZE * BLOCK_SIZE];
+    private static final int[][] EMPTY_PIXELS = {EMPTY_BLOCK, EMPTY_BLOCK, EMPTY_BLOCK};
+    private static final Map<org.evensen.ants.AntWorld, Layers> COLONY_LAYERS_BY_WORLD = new WeakHashMap<>();
+    private static final Map<org.evensen.ants.AntWorld, Layers> DEAD_ANT_LAYERS_BY_WORLD = new WeakHashMap<>();
+
+    /**
+     * The layer images of one world, and which of their blocks have been drawn into.
+     */
+    private static final class Layers {
+        final int width;
+        final int height;
+        final int blocksX;
+        final WritableImage[] images;
+        final boolean[] drawn;
+
+        Layers(final int width, final int height, final int layers) {
+            this.width = width;
+            this.height = height;
+            this.blocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.images = new WritableImage[layers];
+            for (int l = 0; l < layers; l++) {
+                this.images[l] = new WritableImage(width, height);
+            }
+            this.drawn = new boolean[this.blocksX * ((height + BLOCK_SIZE - 1) / BLOCK_SIZE)];
+        }
+    }
+
+    /**
+     * Fills {@code BLOCK_PIXELS}, row by row without gaps, with the layers of cells {@code [x0, x1) x [y0, y1)}.
+     */
+    private interface BlockFiller {
+        void fill(org.evensen.ants.AntWorld world, int x0, int y0, int x1, int y1);
+    }
 
     private static int convertToBaseRGB(Color color) {
         return ((int) Math.round(255.0 * color.getRed()) << 16)
@@ -31,16 +84,33 @@ public enum AntWorldRenderer {
         return Math.min(255, (Math.round(org.evensen.ants.GraphicsMath.bias(strength * 15f, 0.97f) * 255.0f))) << 24;
     }
 
+    private static int deadAntAlpha(float count) {
+        return Math.min(255, Math.round(count * 255.0f)) << 24;
+    }
+
+    /**
+     * Draws the scent and home of the colony living in {@code world}, e.g. a colony view of a world shared by several
+     * colonies. Dead ants are drawn by {@code renderDeadAnts}, once for the whole world.
+     */
     public static void render(GraphicsContext g, org.evensen.ants.AntWorld world) {
-        g.save();
-     //   g.setGlobalBlendMode(BlendMode.ADD);
+        renderLayers(g, world, COLONY_LAYERS_BY_WORLD, COLONY_LAYERS, AntWorldRenderer::fillColonyBlock, "world");
+    }
 
-        final int[] foodPheromonePixels = new int[world.getWidth() * world.getHeight()];
-        final int[] foragingPheromonePixels = new int[world.getWidth() * world.getHeight()];
-        final int[] homePixels = new int[world.getWidth() * world.getHeight()];
+    /**
+     * Draws the dead ants of {@code world}. Their density is shared by every colony, so call this once per frame
+     * rather than once per colony view.
+     */
+    public static void renderDeadAnts(GraphicsContext g, org.evensen.ants.AntWorld world) {
+        renderLayers(g, world, DEAD_ANT_LAYERS_BY_WORLD, 1, AntWorldRenderer::fillDeadAntBlock, "dead ants");
+    }
+
+    private static void fillColonyBlock(org.evensen.ants.AntWorld world, int x0, int y0, int x1, int y1) {
+        final int[] foragingPheromonePixels = BLOCK_PIXELS[FORAGING_LAYER];
+        final int[] foodPheromonePixels = BLOCK_PIXELS[FOOD_LAYER];
+        final int[] homePixels = BLOCK_PIXELS[HOME_LAYER];
         int i = 0;
-        for (int y = 0; y < world.getHeight(); y++) {
-            for (int x = 0; x < world.getWidth(); x++) {
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
                 final org.evensen.ants.Position p = new org.evensen.ants.Position(x, y);
                 foodPheromonePixels[i] = BASE_FOOD_CARRYING_SCENT_COLOR | pheromoneAlpha(world.getFoodStrength(p));
                 foragingPheromonePixels[i] = BASE_FORAGING_SCENT_COLOR | pheromoneAlpha(world.getForagingStrength(p));
@@ -48,25 +118,76 @@ public enum AntWorldRenderer {
                 ++i;
             }
         }
+    }
+
+    private static void fillDeadAntBlock(org.evensen.ants.AntWorld world, int x0, int y0, int x1, int y1) {
+        final int[] deadAntPixels = BLOCK_PIXELS[0];
+        int i = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                final org.evensen.ants.Position p = new org.evensen.ants.Position(x, y);
+                deadAntPixels[i] = BASE_DEAD_ANT_COLOR | deadAntAlpha(world.getDeadAntCount(p));
+                ++i;
+            }
+        }
+    }
+
+    private static void renderLayers(final GraphicsContext g, final org.evensen.ants.AntWorld world,
+                                     final Map<org.evensen.ants.AntWorld, Layers> layersByWorld, final int count,
+                                     final BlockFiller filler, final String renderer) {
+        final RenderEvent event = new RenderEvent();
+        event.begin();
+        final long startTime = System.nanoTime();
+        g.save();
+     //   g.setGlobalBlendMode(BlendMode.ADD);
 
-        for (int[] pixels : List.of(
-                foragingPheromonePixels,
-                foodPheromonePixels,
-                homePixels)) {
-            WritableImage raster = new WritableImage(world.getWidth(), world.getHeight());
-            PixelWriter pixelWriter = raster.getPixelWriter();
-            pixelWriter.setPixels(
-                    0,
-                    0,
-                    world.getWidth(),
-                    world.getHeight(),
-                    PixelFormat.getIntArgbInstance(),
-                    pixels,
-                    0,
-                    world.getWidth());
+        Layers layers = layersByWorld.get(world);
+        if (null == layers || layers.width != world.getWidth() || layers.height != world.getHeight()) {
+            layers = new Layers(world.getWidth(), world.getHeight(), count);
+            layersByWorld.put(world, layers);
+        }
+        for (int blockY = 0; blockY < world.getHeight(); blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < world.getWidth(); blockX += BLOCK_SIZE) {
+                final int block = blockY / BLOCK_SIZE * layers.blocksX + blockX / BLOCK_SIZE;
+                final int maxY = Math.min(world.getHeight(), blockY + BLOCK_SIZE);
+                final int maxX = Math.min(world.getWidth(), blockX + BLOCK_SIZE);
+                if (world.isRegionEmpty(blockX, blockY, BLOCK_SIZE, BLOCK_SIZE)) {
+                    if (layers.drawn[block]) {
+                        writeBlock(layers, EMPTY_PIXELS, blockX, blockY, maxX, maxY);
+                        layers.drawn[block] = false;
+                    }
+                    continue;
+                }
+                filler.fill(world, blockX, blockY, maxX, maxY);
+                writeBlock(layers, BLOCK_PIXELS, blockX, blockY, maxX, maxY);
+                layers.drawn[block] = true;
+            }
+        }
+
+        for (final WritableImage raster : layers.images) {
             g.drawImage(raster, 0, 0);
         }
 
         g.restore();
+        Metrics.RENDER_WORLD.recordSince(startTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.renderer = renderer;
+            event.width = world.getWidth();
+            event.height = world.getHeight();
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes the pixels of block {@code [x0, x1) x [y0, y1)}, row by row without gaps and by layer, into the layer
+     * images.
+     */
+    private static void writeBlock(final Layers layers, final int[][] pixels, final int x0, final int y0,
+                                   final int x1, final int y1) {
+        for (int l = 0; l < layers.images.length; l++) {
+            final PixelWriter pixelWriter = layers.images[l].getPixelWriter();
+            pixelWriter.setPixels(x0, y0, x1 - x0, y1 - y0, PixelFormat.getIntArgbInstance(), pixels[l], 0, x1 - x0);
+        }
     }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package org.evensen.ants.render;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import org.evensen.ants.metrics.Metrics;
+import org.evensen.ants.metrics.RenderEvent;
 import org.evensen.ants.AntWorld;
 import org.evensen.ants.Position;
 
@@ -13,6 +15,7 @@ public class FoodRenderer {
     private static final int HIGHLIGHT_HEIGHT = 2;
     private static final int COLOR_WEIGHT = 5;
     private static final int BLUR_WEIGHT = 3;
+    private static final int BLOCK_SIZE = 64;
 
     private boolean dirtyFlag;
     private WritableImage cachedImage;
@@ -27,6 +30,10 @@ public class FoodRenderer {
     }
 
     public void render(final GraphicsContext g, final AntWorld world) {
+        final RenderEvent event = new RenderEvent();
+        event.begin();
+        final long startTime = System.nanoTime();
+        final boolean cached = !this.dirtyFlag;
         if (this.dirtyFlag) {
             final int discreteScaleX = (int) g.getCanvas().getWidth() / world.getWidth() + 1;
             final int discreteScaleY = (int) g.getCanvas().getHeight() / world.getHeight() + 1;
@@ -37,10 +44,16 @@ public class FoodRenderer {
             this.cachedImage = new WritableImage(width, height);
 
             final int[] buffer = new int[width * height];
+            final boolean[] emptyBlocks = new boolean[(world.getWidth() + BLOCK_SIZE - 1) / BLOCK_SIZE];
             int i = 0;
             for (int y = 0; y < world.getHeight(); y++) {
+                if (0 == y % BLOCK_SIZE) {
+                    for (int b = 0; b < emptyBlocks.length; b++) {
+                        emptyBlocks[b] = world.isRegionEmpty(b * BLOCK_SIZE, y, BLOCK_SIZE, BLOCK_SIZE);
+                    }
+                }
                 for (int k = 0; k < discreteScaleY; k++) {
-                    renderScanlineIntoCachedImage(world, buffer, i, discreteScaleX, y);
+                    renderScanlineIntoCachedImage(world, buffer, i, discreteScaleX, y, emptyBlocks);
                     i += width;
                 }
             }
@@ -130,15 +143,29 @@ public class FoodRenderer {
         }
 
         g.drawImage(this.cachedImage, 0.0, 0.0, world.getWidth(), world.getHeight());
+        Metrics.RENDER_FOOD.recordSince(startTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.renderer = "food";
+            event.width = world.getWidth();
+            event.height = world.getHeight();
+            event.cached = cached;
+            event.commit();
+        }
     }
 
     private void renderScanlineIntoCachedImage(final AntWorld world,
                                                final int[] buffer,
                                                final int i,
                                                final int scale,
-                                               final int y) {
+                                               final int y,
+                                               final boolean[] emptyBlocks) {
         int j = i;
         for (int x = 0; x < world.getWidth(); x++) {
+            if (emptyBlocks[x / BLOCK_SIZE]) {
+                j += scale;
+                continue;
+            }
             for (int k = 0; k < scale; k++) {
                 final Position p = new Position(x, y);
                 if (world.containsFood(p)) {
@@ -3,11 +3,20 @@ package org.evensen.ants.render;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import org.evensen.ants.metrics.Metrics;
+import org.evensen.ants.metrics.RenderEvent;
+
+import java.util.Arrays;
 
 /**
  * Renders obstacles provided by an {@code AntWorld}.
+ * <p>
+ * The rendered image is cached. Once {@code listenTo} a world that reports obstacle changes, only the part of the
+ * image around changed obstacles is redrawn, {@code dirty()} redraws everything. Otherwise, the whole image is
+ * redrawn every frame.
+ * </p>
  */
-public class ObstacleRenderer {
+public class ObstacleRenderer implements org.evensen.ants.ObstacleListener {
     private static final int COLOR_PRIMARY = 0xF0202020;
     private static final int COLOR_HIGHLIGHT = 0xF0353030;
     private static final int COLOR_SPECULAR = 0xFF696665;
@@ -17,9 +26,21 @@ public class ObstacleRenderer {
     private static final int SPECULAR_HEIGHT = 1;
     private static final int COLOR_WEIGHT = 5;
     private static final int BLUR_WEIGHT = 3;
+    private static final int BLUR_RADIUS = 4;
+    private static final int BLOCK_SIZE = 64;
 
     private boolean dirtyFlag;
+    private boolean notified;
     private WritableImage cachedImage;
+    private int[] buffer;
+    private int[] blurred;
+    private int scaleX;
+    private int scaleY;
+    /**
+     * Union of the changed rectangles reported since the last render, as {@code x0, y0, x1, y1} (exclusive), or
+     * empty if {@code x0 >= x1}.
+     */
+    private final int[] changed = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
 
     public ObstacleRenderer() {
         this.dirtyFlag = true;
@@ -30,29 +51,149 @@ public class ObstacleRenderer {
         this.dirtyFlag = true;
     }
 
-    public void render(final GraphicsContext g, final org.evensen.ants.AntWorld world) {
-        if (this.dirtyFlag) {
-            final int discreteScaleX = (int) g.getCanvas().getWidth() / world.getWidth() + 1;
-            final int discreteScaleY = (int) g.getCanvas().getHeight() / world.getHeight() + 1;
+    /**
+     * Registers this renderer as an obstacle listener of {@code world}, if the world reports obstacle changes.
+     *
+     * @param world The world that will be rendered.
+     */
+    public void listenTo(final org.evensen.ants.AntWorld world) {
+        this.notified = world.addObstacleListener(this);
+    }
+
+    @Override
+    public void obstaclesChanged(final int x, final int y, final int width, final int height) {
+        synchronized (this.changed) {
+            this.changed[0] = Math.min(this.changed[0], x);
+            this.changed[1] = Math.min(this.changed[1], y);
+            this.changed[2] = Math.max(this.changed[2], x + width);
+            this.changed[3] = Math.max(this.changed[3], y + height);
+        }
+    }
+
+    /**
+     * @return The changed rectangle since the last call, or {@code null} if nothing changed.
+     */
+    private int[] takeChanged() {
+        synchronized (this.changed) {
+            if (this.changed[0] >= this.changed[2]) {
+                return null;
+            }
+            final int[] result = this.changed.clone();
+            this.changed[0] = Integer.MAX_VALUE;
+            this.changed[1] = Integer.MAX_VALUE;
+            this.changed[2] = Integer.MIN_VALUE;
+            this.changed[3] = Integer.MIN_VALUE;
+            return result;
+        }
+    }
 
+    public void render(final GraphicsContext g, final org.evensen.ants.AntWorld world) {
+        final RenderEvent event = new RenderEvent();
+        event.begin();
+        final long startTime = System.nanoTime();
+        final int discreteScaleX = (int) g.getCanvas().getWidth() / world.getWidth() + 1;
+        final int discreteScaleY = (int) g.getCanvas().getHeight() / world.getHeight() + 1;
+        final int[] changedCells = takeChanged();
+        if (!this.notified) {
+            //
+            // Nothing tells us what changed, so anything might have.
+            //
+            this.dirtyFlag = true;
+        }
+        final boolean cached = !this.dirtyFlag && null == changedCells &&
+                discreteScaleX == this.scaleX && discreteScaleY == this.scaleY;
+        if (this.dirtyFlag || null == this.cachedImage || discreteScaleX != this.scaleX ||
+                discreteScaleY != this.scaleY) {
+            this.scaleX = discreteScaleX;
+            this.scaleY = discreteScaleY;
             final int width = world.getWidth() * discreteScaleX;
             final int height = world.getHeight() * discreteScaleY;
 
             this.cachedImage = new WritableImage(width, height);
+            this.buffer = new int[width * height];
+            this.blurred = new int[width * height];
+            renderCells(world, 0, 0, world.getWidth(), world.getHeight());
+            blur(0, 0, width, height, width);
+            this.cachedImage.getPixelWriter().setPixels(
+                    0, 0, width, height, PixelFormat.getIntArgbInstance(), this.blurred, 0, width);
+
+            this.dirtyFlag = false;
+        } else if (null != changedCells) {
+            //
+            // A cell's colour depends on the cells up to HIGHLIGHT_WIDTH/SPECULAR_WIDTH to its sides and
+            // HIGHLIGHT_HEIGHT below it, and the blur reaches BLUR_RADIUS pixels further.
+            //
+            final int x0 = Math.max(0, changedCells[0] - Math.max(HIGHLIGHT_WIDTH, SPECULAR_WIDTH));
+            final int y0 = Math.max(0, changedCells[1] - Math.max(HIGHLIGHT_HEIGHT, SPECULAR_HEIGHT));
+            final int x1 = Math.min(world.getWidth(), changedCells[2] + Math.max(HIGHLIGHT_WIDTH, SPECULAR_WIDTH));
+            final int y1 = Math.min(world.getHeight(), changedCells[3]);
+            if (x0 < x1 && y0 < y1) {
+                renderCells(world, x0, y0, x1, y1);
 
-            final int[] buffer = new int[width * height];
-            int i = 0;
-            for (int y = 0; y < world.getHeight(); y++) {
-                for (int k = 0; k < discreteScaleY; k++) {
-                    renderScanlineIntoCachedImage(world, buffer, i, discreteScaleX, y);
-                    i += width;
+                final int width = world.getWidth() * discreteScaleX;
+                final int height = world.getHeight() * discreteScaleY;
+                int px0 = x0 * discreteScaleX - BLUR_RADIUS;
+                int px1 = x1 * discreteScaleX + BLUR_RADIUS;
+                int py0 = Math.max(0, y0 * discreteScaleY - BLUR_RADIUS);
+                int py1 = Math.min(height, y1 * discreteScaleY + BLUR_RADIUS);
+                if (px0 < 0 || px1 > width) {
+                    //
+                    // The blur wraps around row ends, so pixels at the far end of the neighbouring rows are affected.
+                    //
+                    px0 = 0;
+                    px1 = width;
+                    py0 = Math.max(0, py0 - 1);
+                    py1 = Math.min(height, py1 + 1);
                 }
+                blur(px0, py0, px1, py1, width);
+                this.cachedImage.getPixelWriter().setPixels(px0, py0, px1 - px0, py1 - py0,
+                        PixelFormat.getIntArgbInstance(), this.blurred, py0 * width + px0, width);
             }
+        }
 
-            final int[] src = buffer;
-            final int[] des = new int[src.length];
+        g.drawImage(this.cachedImage, 0.0, 0.0, world.getWidth(), world.getHeight());
+        Metrics.RENDER_OBSTACLES.recordSince(startTime);
+        event.end();
+        if (event.shouldCommit()) {
+            event.renderer = "obstacles";
+            event.width = world.getWidth();
+            event.height = world.getHeight();
+            event.cached = cached;
+            event.commit();
+        }
+    }
+
+    /**
+     * Renders the unblurred colours of cells {@code [x0, x1) x [y0, y1)} into {@code buffer}.
+     */
+    private void renderCells(final org.evensen.ants.AntWorld world, final int x0, final int y0, final int x1,
+                             final int y1) {
+        final int width = world.getWidth() * this.scaleX;
+        final boolean[] emptyBlocks = new boolean[(world.getWidth() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        int i = y0 * this.scaleY * width;
+        for (int y = y0; y < y1; y++) {
+            if (y == y0 || 0 == y % BLOCK_SIZE) {
+                final int blockY = y - y % BLOCK_SIZE;
+                for (int b = 0; b < emptyBlocks.length; b++) {
+                    emptyBlocks[b] = world.isRegionEmpty(b * BLOCK_SIZE, blockY, BLOCK_SIZE, BLOCK_SIZE);
+                }
+            }
+            for (int k = 0; k < this.scaleY; k++) {
+                renderScanlineIntoCachedImage(world, this.buffer, i, this.scaleX, y, x0, x1, emptyBlocks);
+                i += width;
+            }
+        }
+    }
 
-            for(int j = 0; j < des.length; j++) {
+    /**
+     * Blurs pixels {@code [px0, px1) x [py0, py1)} of {@code buffer} into {@code blurred}.
+     */
+    private void blur(final int px0, final int py0, final int px1, final int py1, final int width) {
+        final int[] src = this.buffer;
+        final int[] des = this.blurred;
+        for (int py = py0; py < py1; py++) {
+            for (int j = py * width + px0; j < py * width + px1; j++) {
+                des[j] = 0x00000000;
                 if (src[j] != 0X00000000) {
                     int avgR = 0;
                     int avgG = 0;
@@ -132,24 +273,26 @@ public class ObstacleRenderer {
                     }
                 }
             }
-
-            this.cachedImage.getPixelWriter().setPixels(
-                    0, 0, width, height, PixelFormat.getIntArgbInstance(), des, 0, width);
-
-            this.dirtyFlag = false;
         }
-
-        g.drawImage(this.cachedImage, 0.0, 0.0, world.getWidth(), world.getHeight());
     }
 
     private void renderScanlineIntoCachedImage(final org.evensen.ants.AntWorld world,
                                                final int[] buffer,
                                                final int i,
                                                final int scale,
-                                               final int y) {
-        int j = i;
-        for (int x = 0; x < world.getWidth(); x++) {
+                                               final int y,
+                                               final int x0,
+                                               final int x1,
+                                               final boolean[] emptyBlocks) {
+        int j = i + x0 * scale;
+        for (int x = x0; x < x1; x++) {
+            if (emptyBlocks[x / BLOCK_SIZE]) {
+                Arrays.fill(buffer, j, j + scale, 0x00000000);
+                j += scale;
+                continue;
+            }
             for (int k = 0; k < scale; k++) {
+                buffer[j] = 0x00000000;
                 final org.evensen.ants.Position p = new org.evensen.ants.Position(x, y);
                 if (world.isObstacle(p)) {
                     for (int offsetX = 1; offsetX <= HIGHLIGHT_WIDTH; offsetX++) {
@@ -0,0 +1,108 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A simulation restored from a checkpoint continues exactly like the one it was taken from.
+ */
+class CheckpointTest {
+    private static SimulationConfig lifecycleConfig(final PheromoneStorage storage) {
+        final Properties properties = new Properties();
+        properties.setProperty("colonies", "2");
+        properties.setProperty("respawn", "true");
+        properties.setProperty("food_per_birth", "20");
+        properties.setProperty("terrain", "true");
+        properties.setProperty("obstacle_durability", "3");
+        properties.setProperty("storage", storage.name());
+        return ReplayTest.smallConfig(13).with(properties, "");
+    }
+
+    /**
+     * Kills every {@code n}th ant of every colony.
+     */
+    private static int kill(final Simulation simulation, final int n) {
+        int killed = 0;
+        for (final AntColony colony : simulation.getColonies()) {
+            final List<Ant> ants = colony.getAnts();
+            for (int i = 0; i < ants.size(); i += n) {
+                ants.get(i).damage(Integer.MAX_VALUE / 2);
+                killed++;
+            }
+        }
+        return killed;
+    }
+
+    private static void assertContinuesExactly(final PheromoneStorage storage, final Path dir) throws IOException {
+        final Simulation original = Simulation.create(lifecycleConfig(storage));
+        final long born = Metrics.ANTS_BORN.get();
+        final long worn = Metrics.OBSTACLES_WORN.get();
+        //
+        // A restored simulation starts over at epoch 1, so checkpoint where the dispersal schedule lines up.
+        //
+        while (original.getEpoch() <= 300) {
+            if (100 == original.getEpoch() || 250 == original.getEpoch()) {
+                assertTrue(0 < kill(original, 7));
+            }
+            original.step();
+        }
+        assertTrue(born < Metrics.ANTS_BORN.get(), "No ants were born");
+        assertTrue(worn < Metrics.OBSTACLES_WORN.get(), "No obstacles wore down");
+        assertEquals(1, original.getEpoch() % Simulation.DISPERSE_INTERVAL);
+        final Path path = dir.resolve(storage + ".checkpoint");
+        Checkpoint.write(path, original.getWorld(), original.getColonies());
+        final Checkpoint checkpoint = Checkpoint.read(path);
+        final Simulation restored = new Simulation(checkpoint.getWorld(), checkpoint.getColonies());
+        assertEquals(original.getStateHash(), restored.getStateHash());
+
+        for (int i = 0; i < 200; i++) {
+            if (50 == i) {
+                kill(original, 5);
+                kill(restored, 5);
+            }
+            original.step();
+            restored.step();
+        }
+        assertEquals(original.getStateHash(), restored.getStateHash());
+        for (int c = 0; c < original.getColonies().size(); c++) {
+            assertEquals(original.getColonies().get(c).getAnts().size(),
+                    restored.getColonies().get(c).getAnts().size());
+        }
+    }
+
+    @Test
+    void floatCheckpointContinuesExactly(@TempDir final Path dir) throws IOException {
+        assertContinuesExactly(PheromoneStorage.FLOAT, dir);
+    }
+
+    @Test
+    void halfCheckpointContinuesExactly(@TempDir final Path dir) throws IOException {
+        assertContinuesExactly(PheromoneStorage.HALF, dir);
+    }
+
+    @Test
+    void otherVersionsAreRejected(@TempDir final Path dir) throws IOException {
+        final Simulation simulation = Simulation.create(ReplayTest.smallConfig(17));
+        final Path path = dir.resolve("old.checkpoint");
+        Checkpoint.write(path, simulation.getWorld(), simulation.getColonies());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 5), 4);
+        }
+        final IOException e = assertThrows(IOException.class, () -> Checkpoint.read(path));
+        assertTrue(e.getMessage().contains("version 5"), e.getMessage());
+    }
+}
@@ -0,0 +1,80 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The bulk {@code getNoise} must give exactly what the scalar one does, bit for bit, whichever way it gets there.
+ */
+class FractalNoiseTest {
+    private static final double PERSISTENCE = 0.6;
+
+    private static double[] sorted(final Random random, final int n, final double from, final double to) {
+        final double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = from + random.nextDouble() * (to - from);
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static void assertBulkMatchesScalar(final double[] xs, final double[] ys, final int firstOctave,
+                                                final int lastOctave, final long seed) {
+        final double[] out = new double[xs.length * ys.length];
+        FractalNoise.getNoise(out, xs, ys, PERSISTENCE, firstOctave, lastOctave, seed);
+        for (int j = 0; j < ys.length; j++) {
+            for (int i = 0; i < xs.length; i++) {
+                final double expected = FractalNoise.getNoise(xs[i], ys[j], PERSISTENCE, firstOctave, lastOctave, seed);
+                assertEquals(expected, out[j * xs.length + i], "at <" + xs[i] + ", " + ys[j] + ">");
+            }
+        }
+    }
+
+    @Test
+    void denseSamplesMatchScalar() {
+        //
+        // Many samples per lattice cell, so the gradients are tabulated.
+        //
+        final Random random = new Random(1);
+        for (int k = 0; k < 10; k++) {
+            assertBulkMatchesScalar(sorted(random, 50, 0, 1), sorted(random, 30, 0, 1), 1, 5, random.nextLong());
+        }
+    }
+
+    @Test
+    void negativeCoordinatesMatchScalar() {
+        final Random random = new Random(2);
+        for (int k = 0; k < 10; k++) {
+            assertBulkMatchesScalar(sorted(random, 50, -1, 0.5), sorted(random, 30, -0.75, 0.25), 1, 5,
+                    random.nextLong());
+        }
+    }
+
+    @Test
+    void sparseSamplesMatchScalar() {
+        //
+        // Fewer samples than lattice corners at the finer octaves, so those compute every corner directly.
+        //
+        final Random random = new Random(3);
+        for (int k = 0; k < 10; k++) {
+            assertBulkMatchesScalar(sorted(random, 8, -4, 4), sorted(random, 5, -4, 4), 1, 10, random.nextLong());
+        }
+    }
+
+    @Test
+    void gridLikeTerrainMatchesScalar() {
+        final double[] xs = new double[200];
+        final double[] ys = new double[16];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i / 512.0;
+        }
+        for (int j = 0; j < ys.length; j++) {
+            ys[j] = (j - 8) / 512.0;
+        }
+        assertBulkMatchesScalar(xs, ys, 1, 8, 42);
+    }
+}
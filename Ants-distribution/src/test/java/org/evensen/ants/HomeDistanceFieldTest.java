@@ -0,0 +1,117 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applying obstacle strokes incrementally gives the field a fresh one computes, and the way home never leads into an
+ * obstacle.
+ */
+class HomeDistanceFieldTest {
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 100;
+    private static final Position HOME = new Position(75, 50);
+    private static final float HOME_RADIUS = 6;
+    /**
+     * Sums of the same steps taken in another order may round differently.
+     */
+    private static final float TOLERANCE = 1.0e-3f;
+
+    private static HomeDistanceField fresh(final ObstacleGrid obstacles) {
+        final HomeDistanceField field = new HomeDistanceField(obstacles, HOME, HOME_RADIUS);
+        field.recomputeAll(obstacles);
+        return field;
+    }
+
+    /**
+     * Paints or erases a disc, like {@code setObstacles}, queuing every cell that changed.
+     */
+    private static void stroke(final ObstacleGrid obstacles, final HomeDistanceField field, final int cx, final int cy,
+                               final int radius, final boolean add) {
+        for (int y = cy - radius; y <= cy + radius; y++) {
+            for (int x = cx - radius; x <= cx + radius; x++) {
+                if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius && obstacles.set(x, y, add)) {
+                    field.obstacleChanged(x, y);
+                }
+            }
+        }
+    }
+
+    private static void assertSameDistances(final HomeDistanceField expected, final HomeDistanceField actual) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final float e = expected.getDistance(x, y);
+                final float a = actual.getDistance(x, y);
+                if (Float.POSITIVE_INFINITY == e) {
+                    assertEquals(e, a, "at <" + x + ", " + y + ">");
+                } else {
+                    assertEquals(e, a, TOLERANCE, "at <" + x + ", " + y + ">");
+                }
+            }
+        }
+    }
+
+    private static void assertNeverPointsIntoObstacle(final ObstacleGrid obstacles, final HomeDistanceField field) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (obstacles.isObstacle(x, y)) {
+                    continue;
+                }
+                final Position p = new Position(x + 0.5f, y + 0.5f);
+                final float direction = field.getDirection(obstacles, p);
+                if (field.isHome(x, y) || Float.POSITIVE_INFINITY == field.getDistance(x, y)) {
+                    assertEquals(-1.0f, direction, "at <" + x + ", " + y + ">");
+                    continue;
+                }
+                assertTrue(0 <= direction && GraphicsMath.TAU > direction, "at <" + x + ", " + y + ">");
+                final int nx = (int) Math.floor(p.getX() + Math.cos(direction));
+                final int ny = (int) Math.floor(p.getY() + Math.sin(direction));
+                assertFalse(obstacles.isObstacle(nx, ny), "from <" + x + ", " + y + "> towards " + direction);
+            }
+        }
+    }
+
+    @Test
+    void incrementalStrokesMatchFreshField() {
+        final Random random = new Random(7);
+        final ObstacleGrid obstacles = new ObstacleGrid(WIDTH, HEIGHT);
+        final HomeDistanceField field = fresh(obstacles);
+        for (int i = 0; i < 80; i++) {
+            final boolean add = random.nextInt(3) != 0;
+            stroke(obstacles, field, random.nextInt(WIDTH + 10) - 5, random.nextInt(HEIGHT + 10) - 5,
+                    1 + random.nextInt(6), add);
+            field.update(obstacles);
+            final HomeDistanceField expected = fresh(obstacles);
+            assertSameDistances(expected, field);
+            assertNeverPointsIntoObstacle(obstacles, field);
+        }
+    }
+
+    @Test
+    void wallAroundHomeIsWalkedAround() {
+        final ObstacleGrid obstacles = new ObstacleGrid(WIDTH, HEIGHT);
+        final HomeDistanceField field = fresh(obstacles);
+        //
+        // A wall right of home, with a gap at the bottom, stroke by stroke.
+        //
+        for (int y = 10; y < HEIGHT - 5; y += 2) {
+            stroke(obstacles, field, 100, y, 2, true);
+            field.update(obstacles);
+        }
+        assertSameDistances(fresh(obstacles), field);
+        assertNeverPointsIntoObstacle(obstacles, field);
+        assertTrue(field.getDistance(110, 50) > 2 * 45, "Went through the wall");
+
+        for (int y = 10; y < HEIGHT - 5; y += 4) {
+            stroke(obstacles, field, 100, y, 1, false);
+            field.update(obstacles);
+        }
+        assertSameDistances(fresh(obstacles), field);
+        assertNeverPointsIntoObstacle(obstacles, field);
+    }
+}
@@ -0,0 +1,71 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Updating the distances around a change gives what recomputing the whole field does.
+ */
+class ObstacleDistanceFieldTest {
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 100;
+
+    private static ObstacleDistanceField full(final ObstacleGrid obstacles) {
+        final ObstacleDistanceField field = new ObstacleDistanceField(obstacles);
+        field.update(obstacles, 0, 0, WIDTH, HEIGHT);
+        return field;
+    }
+
+    private static void assertSameDistances(final ObstacleDistanceField expected, final ObstacleDistanceField actual) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected.get(x, y), actual.get(x, y), "at <" + x + ", " + y + ">");
+            }
+        }
+    }
+
+    @Test
+    void incrementalUpdatesMatchFullUpdate() {
+        final Random random = new Random(5);
+        final ObstacleGrid obstacles = new ObstacleGrid(WIDTH, HEIGHT);
+        for (int i = 0; i < 40; i++) {
+            obstacles.set(random.nextInt(WIDTH), random.nextInt(HEIGHT), true);
+        }
+        final ObstacleDistanceField field = full(obstacles);
+
+        //
+        // Paint and erase rectangles, some reaching off the map, and update only around each of them.
+        //
+        for (int i = 0; i < 60; i++) {
+            final int x0 = random.nextInt(WIDTH + 10) - 10;
+            final int y0 = random.nextInt(HEIGHT + 10) - 10;
+            final int x1 = Math.min(WIDTH, x0 + 1 + random.nextInt(20));
+            final int y1 = Math.min(HEIGHT, y0 + 1 + random.nextInt(20));
+            final boolean add = random.nextInt(3) != 0;
+            for (int y = Math.max(0, y0); y < y1; y++) {
+                for (int x = Math.max(0, x0); x < x1; x++) {
+                    obstacles.set(x, y, add);
+                }
+            }
+            field.update(obstacles, Math.max(0, x0), Math.max(0, y0), x1, y1);
+            assertSameDistances(full(obstacles), field);
+        }
+    }
+
+    @Test
+    void singleCellChangesMatchFullUpdate() {
+        final Random random = new Random(6);
+        final ObstacleGrid obstacles = new ObstacleGrid(WIDTH, HEIGHT);
+        final ObstacleDistanceField field = full(obstacles);
+        for (int i = 0; i < 200; i++) {
+            final int x = random.nextInt(WIDTH);
+            final int y = random.nextInt(HEIGHT);
+            obstacles.set(x, y, random.nextInt(4) != 0);
+            field.update(obstacles, x, y, x + 1, y + 1);
+        }
+        assertSameDistances(full(obstacles), field);
+    }
+}
@@ -0,0 +1,182 @@
+package org.evensen.ants;
+
+import org.evensen.ants.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What a {@code PheromoneRecorder} writes, a {@code PheromoneRecording} reads back, even when frames were dropped or
+ * the file was cut short.
+ */
+class PheromoneRecorderTest {
+    private static final int INTERVAL = 3;
+    private static final int STRIDE = 7;
+    private static final float TOLERANCE = 1 / PheromoneRecorder.QUANTUM;
+
+    /**
+     * The levels of every {@value STRIDE}th cell, foraging then food, after one recorded dispersal.
+     */
+    private static final class Snapshot {
+        private final long index;
+        private final float[] levels;
+
+        private Snapshot(final long index, final float[] levels) {
+            this.index = index;
+            this.levels = levels;
+        }
+    }
+
+    private static float[] sample(final AntWorld world) {
+        final float[] levels = new float[2 * ((world.getWidth() + STRIDE - 1) / STRIDE) *
+                ((world.getHeight() + STRIDE - 1) / STRIDE)];
+        int i = 0;
+        for (int y = 0; y < world.getHeight(); y += STRIDE) {
+            for (int x = 0; x < world.getWidth(); x += STRIDE) {
+                final Position p = new Position(x, y);
+                levels[i++] = world.getForagingStrength(p);
+                levels[i++] = world.getFoodStrength(p);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Records {@code dispersals} dispersals of a small simulation to {@code path}, every {@value INTERVAL}th of them
+     * with enough room in the queue that none are dropped.
+     *
+     * @return What the world held at every recorded dispersal.
+     */
+    private static List<Snapshot> record(final Path path, final int dispersals) throws IOException {
+        final Simulation simulation = Simulation.create(ReplayTest.smallConfig(23));
+        final List<Snapshot> snapshots = new ArrayList<>();
+        final long dropped = Metrics.RECORDER_FRAMES_DROPPED.get();
+        try (PheromoneRecorder recorder = new PheromoneRecorder(path, INTERVAL, dispersals / INTERVAL + 1)) {
+            simulation.getWorld().setPheromoneRecorder(recorder);
+            long dispersal = 0;
+            while (dispersal < dispersals) {
+                final boolean disperses = 0 == simulation.getEpoch() % Simulation.DISPERSE_INTERVAL;
+                simulation.step();
+                if (disperses && 0 == ++dispersal % INTERVAL) {
+                    snapshots.add(new Snapshot(dispersal, sample(simulation.getWorld())));
+                }
+            }
+        }
+        assertEquals(dropped, Metrics.RECORDER_FRAMES_DROPPED.get());
+        return snapshots;
+    }
+
+    private static void assertFrameMatches(final Snapshot expected, final PheromoneRecording.Frame frame,
+                                           final PheromoneRecording recording) {
+        assertEquals(expected.index, frame.getIndex());
+        int i = 0;
+        for (int y = 0; y < recording.getHeight(); y += STRIDE) {
+            for (int x = 0; x < recording.getWidth(); x += STRIDE) {
+                for (int channel = 0; channel < MyAntWorld.CHANNELS; channel++) {
+                    assertEquals(expected.levels[i++], frame.get(x, y, channel), TOLERANCE,
+                            "at <" + x + ", " + y + "> in channel " + channel + " of frame " + frame.getIndex());
+                }
+            }
+        }
+    }
+
+    @Test
+    void recordingReadsBackWhatWasRecorded(@TempDir final Path dir) throws IOException {
+        final Path path = dir.resolve("run.pheromones");
+        final List<Snapshot> snapshots = record(path, 40);
+        assertEquals(40 / INTERVAL, snapshots.size());
+        float strongest = 0;
+        for (final float level : snapshots.get(snapshots.size() - 1).levels) {
+            strongest = Math.max(strongest, level);
+        }
+        assertTrue(0.01f < strongest, "Nothing to record");
+
+        try (PheromoneRecording recording = new PheromoneRecording(path)) {
+            assertEquals(400, recording.getWidth());
+            assertEquals(300, recording.getHeight());
+            assertEquals(MyAntWorld.CHANNELS, recording.getChannels());
+            int frames = 0;
+            for (final PheromoneRecording.Frame frame : recording) {
+                assertFrameMatches(snapshots.get(frames++), frame, recording);
+            }
+            assertEquals(snapshots.size(), frames);
+        }
+    }
+
+    @Test
+    void truncatedRecordingStopsAtLastWholeFrame(@TempDir final Path dir) throws IOException {
+        final Path path = dir.resolve("cut.pheromones");
+        final List<Snapshot> snapshots = record(path, 30);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 5);
+        }
+
+        try (PheromoneRecording recording = new PheromoneRecording(path)) {
+            int frames = 0;
+            for (final PheromoneRecording.Frame frame : recording) {
+                assertFrameMatches(snapshots.get(frames++), frame, recording);
+            }
+            assertEquals(snapshots.size() - 1, frames);
+        }
+    }
+
+    @Test
+    void framesAreDroppedRatherThanWaitedFor(@TempDir final Path dir) throws IOException {
+        //
+        // Noisy levels on a large grid take the writer far longer to compress than they take to hand over.
+        //
+        final PheromoneGrid grid = PheromoneGrid.create(PheromoneStorage.FLOAT, 1024, 1024, 2);
+        final Random random = new Random(29);
+        for (int y = 0; y < 1024; y++) {
+            for (int x = 0; x < 1024; x++) {
+                grid.add(x, y, random.nextInt(2), random.nextFloat());
+            }
+        }
+        final Path path = dir.resolve("dropped.pheromones");
+        final long dropped = Metrics.RECORDER_FRAMES_DROPPED.get();
+        final long written = Metrics.RECORDER_FRAMES_WRITTEN.get();
+        final int records = 100;
+        try (PheromoneRecorder recorder = new PheromoneRecorder(path, INTERVAL, 1)) {
+            for (int i = 0; i < records; i++) {
+                recorder.record(grid);
+            }
+        }
+        final long droppedNow = Metrics.RECORDER_FRAMES_DROPPED.get() - dropped;
+        final long writtenNow = Metrics.RECORDER_FRAMES_WRITTEN.get() - written;
+        assertTrue(0 < droppedNow, "No frames were dropped");
+        assertEquals(records / INTERVAL, droppedNow + writtenNow);
+
+        //
+        // The frames that made it are whole, in order and, as the levels never changed, all the same.
+        //
+        try (PheromoneRecording recording = new PheromoneRecording(path)) {
+            long previous = 0;
+            int frames = 0;
+            for (final PheromoneRecording.Frame frame : recording) {
+                assertTrue(frame.getIndex() > previous);
+                assertEquals(0, frame.getIndex() % INTERVAL);
+                previous = frame.getIndex();
+                for (int y = 0; y < 1024; y += 97) {
+                    for (int x = 0; x < 1024; x += 89) {
+                        for (int channel = 0; channel < 2; channel++) {
+                            assertEquals(grid.get(x, y, channel), frame.get(x, y, channel), TOLERANCE);
+                        }
+                    }
+                }
+                frames++;
+            }
+            assertEquals(writtenNow, frames);
+        }
+    }
+}
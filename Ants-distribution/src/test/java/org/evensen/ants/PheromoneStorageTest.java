@@ -0,0 +1,70 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Storage that keeps levels as 32 bit floats, wherever it keeps them, runs exactly like {@code FLOAT}.
+ */
+class PheromoneStorageTest {
+    private static final int EPOCHS = 400;
+
+    private static SimulationConfig config(final PheromoneStorage storage) {
+        final Properties properties = new Properties();
+        properties.setProperty("colonies", "2");
+        properties.setProperty("storage", storage.name());
+        return ReplayTest.smallConfig(19).with(properties, "");
+    }
+
+    private static long run(final Simulation simulation) {
+        for (int i = 0; i < EPOCHS; i++) {
+            if (150 == i) {
+                simulation.setObstacles(new Position(200, 150), 20, true);
+            }
+            simulation.step();
+        }
+        return simulation.getStateHash();
+    }
+
+    @Test
+    void offHeapMatchesFloat() {
+        assertEquals(run(Simulation.create(config(PheromoneStorage.FLOAT))),
+                run(Simulation.create(config(PheromoneStorage.OFF_HEAP))));
+    }
+
+    @Test
+    void worldFileMatchesFloat(@TempDir final Path dir) throws IOException {
+        final SimulationConfig config = config(PheromoneStorage.FLOAT);
+        final long expected = run(Simulation.create(config));
+
+        final WorldFile file = WorldFile.create(dir.resolve("world"), config.getWidth(), config.getHeight(),
+                config.getColonies());
+        final Simulation shared = Simulation.create(new InputLog(config), false, file);
+        assertEquals(expected, run(shared));
+
+        //
+        // What another process sees in the file is what the world holds.
+        //
+        final WorldFile view = WorldFile.open(dir.resolve("world"));
+        assertEquals(EPOCHS / Simulation.DISPERSE_INTERVAL, view.getDispersals());
+        final MyAntWorld world = shared.getWorld();
+        assertEquals(config.getColonies() * MyAntWorld.CHANNELS, view.getChannels());
+        for (int y = 0; y < config.getHeight(); y += 7) {
+            for (int x = 0; x < config.getWidth(); x += 7) {
+                final Position p = new Position(x, y);
+                assertEquals(world.isObstacle(p), view.isObstacle(x, y));
+                for (int c = 0; c < config.getColonies(); c++) {
+                    final AntWorld colony = world.getColonyView(c);
+                    assertEquals(colony.getForagingStrength(p), view.getLevel(x, y, c * MyAntWorld.CHANNELS));
+                    assertEquals(colony.getFoodStrength(p), view.getLevel(x, y, c * MyAntWorld.CHANNELS + 1));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A recorded run, strokes and all, replays to the same state hashes after going through a file.
+ */
+class ReplayTest {
+    static SimulationConfig smallConfig(final long seed) {
+        final Properties properties = new Properties();
+        properties.setProperty("width", "400");
+        properties.setProperty("height", "300");
+        properties.setProperty("ant_count", "1000");
+        properties.setProperty("food_sources", "4");
+        return SimulationConfig.DEFAULT.withSeed(seed).with(properties, "");
+    }
+
+    @Test
+    void replayMatchesRecordedHashes(@TempDir final Path dir) throws IOException {
+        final InputLog log = new InputLog(smallConfig(11));
+        final Simulation simulation = Simulation.create(log, true);
+        final long epochs = 2 * Simulation.HASH_INTERVAL + 120;
+        while (simulation.getEpoch() <= epochs) {
+            if (0 == simulation.getEpoch() % 97) {
+                simulation.setObstacles(new Position(simulation.getEpoch() % 400, 150), 8,
+                        0 != simulation.getEpoch() % 3);
+            }
+            simulation.step();
+        }
+        simulation.logFinalHash();
+        final Path path = dir.resolve("run.log");
+        log.write(path);
+
+        final InputLog read = InputLog.read(path);
+        assertEquals(log.getStrokes().size(), read.getStrokes().size());
+        assertTrue(read.getStrokes().size() > 10);
+        final Replay.Result result = Replay.run(read);
+        assertEquals(epochs, result.getEpochs());
+        assertEquals(3, result.getHashesChecked());
+        assertTrue(result.getMismatches().isEmpty(), () -> "Hashes differ after " + result.getMismatches());
+        assertEquals(simulation.getStateHash(), read.getHashes().get(epochs));
+    }
+}
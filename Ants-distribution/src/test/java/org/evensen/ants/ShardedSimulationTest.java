@@ -0,0 +1,146 @@
+package org.evensen.ants;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Shards trade ants without losing any, run the same whichever transport connects them, and fail rather than hang
+ * when a neighbour goes away.
+ */
+class ShardedSimulationTest {
+    private static final int SHARDS = 3;
+    private static final long EPOCHS = 400;
+    private static final long CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * The end point of a shard that crashes, closing its connections, when it is about to receive for the
+     * {@code receives + 1}th time.
+     */
+    private static final class CrashingTransport implements ShardTransport {
+        private final ShardTransport transport;
+        private int receives;
+
+        private CrashingTransport(final ShardTransport transport, final int receives) {
+            this.transport = transport;
+            this.receives = receives;
+        }
+
+        @Override
+        public int getShard() {
+            return this.transport.getShard();
+        }
+
+        @Override
+        public int getShards() {
+            return this.transport.getShards();
+        }
+
+        @Override
+        public void send(final int to, final ByteBuffer message) throws IOException {
+            this.transport.send(to, message);
+        }
+
+        @Override
+        public ByteBuffer receive(final int from) throws IOException {
+            if (0 == this.receives--) {
+                this.transport.close();
+                throw new IOException("Shard " + getShard() + " crashed");
+            }
+            return this.transport.receive(from);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.transport.close();
+        }
+    }
+
+    private static int freeBasePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static ShardedSimulation.TransportFactory sockets() throws IOException {
+        final int basePort = freeBasePort();
+        return shard -> SocketShardTransport.connect(shard, SHARDS, "localhost", basePort, CONNECT_TIMEOUT_MILLIS);
+    }
+
+    private static int countAnts(final List<Shard> shards) {
+        int ants = 0;
+        for (final Shard shard : shards) {
+            ants += shard.getColony().getAnts().size();
+        }
+        return ants;
+    }
+
+    @Test
+    void migratingAntsAreNeitherLostNorDuplicated() throws IOException, InterruptedException {
+        final SimulationConfig config = ReplayTest.smallConfig(31);
+        final List<Shard> shards = ShardedSimulation.run(config, SHARDS, EPOCHS,
+                LocalShardTransport.create(SHARDS)::get);
+        assertEquals(config.getAntCount(), countAnts(shards));
+        //
+        // The colony starts out in the middle shard, so ants in the others got there by migrating.
+        //
+        assertTrue(0 < shards.get(0).getColony().getAnts().size() + shards.get(2).getColony().getAnts().size(),
+                "No ants migrated");
+        for (final Shard shard : shards) {
+            assertEquals(EPOCHS + 1, shard.getEpoch());
+        }
+    }
+
+    @Test
+    void socketsRunLikeLocalQueues() throws IOException, InterruptedException {
+        final SimulationConfig config = ReplayTest.smallConfig(37);
+        final List<Shard> local = ShardedSimulation.run(config, SHARDS, EPOCHS,
+                LocalShardTransport.create(SHARDS)::get);
+        final List<Shard> socket = ShardedSimulation.run(config, SHARDS, EPOCHS, sockets());
+        assertEquals(config.getAntCount(), countAnts(socket));
+        for (int s = 0; s < SHARDS; s++) {
+            final List<Ant> expected = local.get(s).getColony().getAnts();
+            final List<Ant> actual = socket.get(s).getColony().getAnts();
+            assertEquals(expected.size(), actual.size(), "ants in shard " + s);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getPosition().getX(), actual.get(i).getPosition().getX());
+                assertEquals(expected.get(i).getPosition().getY(), actual.get(i).getPosition().getY());
+                assertEquals(expected.get(i).getDirection(), actual.get(i).getDirection());
+            }
+            assertEquals(local.get(s).getWorld().getFoodCount(), socket.get(s).getWorld().getFoodCount(),
+                    "food delivered in shard " + s);
+        }
+    }
+
+    private static void assertNeighboursFail(final ShardedSimulation.TransportFactory transports) {
+        //
+        // The last shard crashes, its neighbour fails in turn, and that closes the first shard's connection too.
+        //
+        final IOException e = assertTimeoutPreemptively(Duration.ofSeconds(60), () ->
+                assertThrows(IOException.class, () -> ShardedSimulation.run(ReplayTest.smallConfig(41), SHARDS,
+                        EPOCHS, shard -> SHARDS - 1 == shard ?
+                                new CrashingTransport(transports.create(shard), 50) : transports.create(shard))));
+        assertEquals("Shard 0 failed", e.getMessage());
+        assertTrue(e.getCause().getMessage().contains("closed the connection"), e.getCause().getMessage());
+    }
+
+    @Test
+    void closedLocalTransportFailsNeighbours() {
+        final List<ShardTransport> transports = LocalShardTransport.create(SHARDS);
+        assertNeighboursFail(transports::get);
+    }
+
+    @Test
+    void closedSocketTransportFailsNeighbours() throws IOException {
+        assertNeighboursFail(sockets());
+    }
+}